@@ -2,12 +2,14 @@ package com.minigit;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Mini Git Server application.
  * Provides Git Smart HTTP over HTTP.
  */
 @SpringBootApplication
+@EnableScheduling
 public class MiniGitServerApplication {
 
     public static void main(String[] args) {
@@ -1,10 +1,23 @@
 package com.minigit.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.minigit.git.CustomRepositoryResolver;
+import com.minigit.git.GitLfsFilter;
+import com.minigit.git.GitReceivePackFactory;
+import com.minigit.git.GitUploadPackFactory;
+import com.minigit.service.LfsObjectStore;
+import com.minigit.service.RepositoryService;
 import org.eclipse.jgit.http.server.GitServlet;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
 
 /**
  * Git HTTP service configuration.
@@ -12,10 +25,52 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class GitConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(GitConfig.class);
+
     private final CustomRepositoryResolver repositoryResolver;
+    private final GitReceivePackFactory receivePackFactory;
+    private final GitUploadPackFactory uploadPackFactory;
+    private final VcsProperties vcsProperties;
 
-    public GitConfig(CustomRepositoryResolver repositoryResolver) {
+    public GitConfig(CustomRepositoryResolver repositoryResolver,
+                     GitReceivePackFactory receivePackFactory,
+                     GitUploadPackFactory uploadPackFactory,
+                     VcsProperties vcsProperties) {
         this.repositoryResolver = repositoryResolver;
+        this.receivePackFactory = receivePackFactory;
+        this.uploadPackFactory = uploadPackFactory;
+        this.vcsProperties = vcsProperties;
+    }
+
+    /**
+     * Size JGit's process-wide pack caches. Receive-pack reads through them while
+     * completing thin packs and resolving deltas against existing objects.
+     */
+    @PostConstruct
+    public void configureWindowCache() {
+        VcsProperties.Pack pack = vcsProperties.getPack();
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit(pack.getPackedGitLimit().toBytes());
+        config.setPackedGitWindowSize(intBytes("vcs.pack.packed-git-window-size", pack.getPackedGitWindowSize()));
+        config.setPackedGitMMAP(pack.isPackedGitMmap());
+        config.setDeltaBaseCacheLimit(intBytes("vcs.pack.delta-base-cache-limit", pack.getDeltaBaseCacheLimit()));
+        config.setStreamFileThreshold(intBytes("vcs.pack.stream-file-threshold", pack.getStreamFileThreshold()));
+        config.install();
+        logger.info("JGit window cache: packedGitLimit={} windowSize={} mmap={} deltaBaseCacheLimit={} streamFileThreshold={}",
+                pack.getPackedGitLimit(), pack.getPackedGitWindowSize(), pack.isPackedGitMmap(),
+                pack.getDeltaBaseCacheLimit(), pack.getStreamFileThreshold());
+    }
+
+    /**
+     * JGit takes these sizes as an int; refuse to start rather than let a larger value wrap.
+     */
+    static int intBytes(String property, DataSize size) {
+        long bytes = size.toBytes();
+        if (bytes < 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException(property + " must be between 0 and " + Integer.MAX_VALUE
+                    + " bytes, but is " + size);
+        }
+        return (int) bytes;
     }
 
     /**
@@ -29,16 +84,10 @@ public class GitConfig {
         gitServlet.setRepositoryResolver(repositoryResolver);
         
         // Enable receive-pack (push).
-        gitServlet.setReceivePackFactory((req, db) -> {
-            // Add push authorization checks here if needed.
-            return new org.eclipse.jgit.transport.ReceivePack(db);
-        });
+        gitServlet.setReceivePackFactory(receivePackFactory);
         
         // Enable upload-pack (fetch/clone).
-        gitServlet.setUploadPackFactory((req, db) -> {
-            // Add fetch authorization checks here if needed.
-            return new org.eclipse.jgit.transport.UploadPack(db);
-        });
+        gitServlet.setUploadPackFactory(uploadPackFactory);
 
         ServletRegistrationBean<GitServlet> registration = new ServletRegistrationBean<>(gitServlet, "/git/*");
         registration.setName("GitServlet");
@@ -46,4 +95,20 @@ public class GitConfig {
         
         return registration;
     }
+
+    /**
+     * Register the Git LFS endpoints in front of the Git servlet. The default
+     * filter order places it after the Spring Security chain, so LFS requests
+     * use the same HTTP Basic authentication as push and fetch.
+     */
+    @Bean
+    public FilterRegistrationBean<GitLfsFilter> gitLfsFilterRegistration(RepositoryService repositoryService,
+                                                                         LfsObjectStore lfsObjectStore,
+                                                                         ObjectMapper objectMapper) {
+        FilterRegistrationBean<GitLfsFilter> registration = new FilterRegistrationBean<>(
+                new GitLfsFilter(repositoryService, lfsObjectStore, objectMapper, vcsProperties));
+        registration.addUrlPatterns("/git/*");
+        registration.setName("GitLfsFilter");
+        return registration;
+    }
 }
@@ -2,6 +2,12 @@ package com.minigit.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * VCS configuration properties.
@@ -25,6 +31,58 @@ public class VcsProperties {
      */
     private Lang lang = new Lang();
 
+    /**
+     * JGit pack cache configuration.
+     */
+    private Pack pack = new Pack();
+
+    /**
+     * git:// daemon configuration.
+     */
+    private Daemon daemon = new Daemon();
+
+    /**
+     * Push (receive-pack) limits.
+     */
+    private Receive receive = new Receive();
+
+    /**
+     * Snapshot archive (zip / tar.gz) download configuration.
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * Blob-store configuration of the DFS storage backend.
+     */
+    private Dfs dfs = new Dfs();
+
+    /**
+     * Warmup of busy repositories and eviction of idle ones.
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Share link persistence.
+     */
+    private Share share = new Share();
+    /**
+     * JSON browse API.
+     */
+    private Api api = new Api();
+
+    /**
+     * Resolve a data file or directory setting. When it is not set, {@code name} in the parent of the
+     * storage directory is used, so with the default storage directory data lands in {@code ./data}.
+     */
+    public File dataPath(String configured, String name) {
+        if (configured != null && !configured.isEmpty()) {
+            return new File(configured);
+        }
+        File storageDir = new File(storage.getDir()).getAbsoluteFile();
+        File parent = storageDir.getParentFile();
+        return new File(parent != null ? parent : storageDir, name);
+    }
+
     public Storage getStorage() {
         return storage;
     }
@@ -49,12 +107,141 @@ public class VcsProperties {
         this.lang = lang;
     }
 
+    public Pack getPack() {
+        return pack;
+    }
+
+    public void setPack(Pack pack) {
+        this.pack = pack;
+    }
+
+    public Daemon getDaemon() {
+        return daemon;
+    }
+
+    public void setDaemon(Daemon daemon) {
+        this.daemon = daemon;
+    }
+
+    public Receive getReceive() {
+        return receive;
+    }
+
+    public void setReceive(Receive receive) {
+        this.receive = receive;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    public void setArchive(Archive archive) {
+        this.archive = archive;
+    }
+
+    public Dfs getDfs() {
+        return dfs;
+    }
+
+    public void setDfs(Dfs dfs) {
+        this.dfs = dfs;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Share getShare() {
+        return share;
+    }
+
+    public void setShare(Share share) {
+        this.share = share;
+    }
+
+    public Api getApi() {
+        return api;
+    }
+
+    public void setApi(Api api) {
+        this.api = api;
+    }
+
     public static class Storage {
         /**
          * Repository storage directory, defaults to ./data/repos.
          */
         private String dir = "./data/repos";
 
+        /**
+         * Interval of the full storage re-scan that corrects the in-memory repository catalog.
+         */
+        private Duration reconcileInterval = Duration.ofMinutes(5);
+
+        /**
+         * Directory layout: flat ({@code <name>.git}) or sharded ({@code ab/cd/<name>.git} by SHA-1 of the name).
+         */
+        private Layout layout = Layout.FLAT;
+
+        /**
+         * Pause between repositories while migrating to the configured layout.
+         */
+        private Duration migrationPause = Duration.ofMillis(200);
+
+        /**
+         * Interval of the background re-measurement of repository sizes.
+         */
+        private Duration sizeReconcileInterval = Duration.ofMinutes(30);
+
+        /**
+         * How long a deleted repository stays in the trash and can be restored.
+         */
+        private Duration trashRetention = Duration.ofMinutes(10);
+
+        /**
+         * Interval at which the trash is checked for repositories to reclaim.
+         */
+        private Duration reaperInterval = Duration.ofMinutes(1);
+
+        /**
+         * Upper bound on files removed per second while reclaiming the trash, to keep disk I/O available for git traffic.
+         */
+        private int reaperMaxFilesPerSecond = 5000;
+
+        /**
+         * Interval of the maintenance that moves objects shared by forks into their object pool.
+         */
+        private Duration poolMaintenanceInterval = Duration.ofHours(6);
+
+        /**
+         * Where new repositories keep their objects and refs: local git directories, or JGit DFS on a blob store.
+         */
+        private Backend backend = Backend.FILE;
+
+        /**
+         * Ref storage of new file repositories: loose refs with packed-refs, or reftable (for very large ref counts).
+         */
+        private RefFormat refFormat = RefFormat.FILES;
+
+        public enum Layout {
+            FLAT,
+            SHARDED
+        }
+
+        public enum Backend {
+            FILE,
+            DFS
+        }
+
+        public enum RefFormat {
+            FILES,
+            REFTABLE
+        }
+
         public String getDir() {
             return dir;
         }
@@ -62,6 +249,86 @@ public class VcsProperties {
         public void setDir(String dir) {
             this.dir = dir;
         }
+
+        public Duration getReconcileInterval() {
+            return reconcileInterval;
+        }
+
+        public void setReconcileInterval(Duration reconcileInterval) {
+            this.reconcileInterval = reconcileInterval;
+        }
+
+        public Layout getLayout() {
+            return layout;
+        }
+
+        public void setLayout(Layout layout) {
+            this.layout = layout;
+        }
+
+        public Duration getMigrationPause() {
+            return migrationPause;
+        }
+
+        public void setMigrationPause(Duration migrationPause) {
+            this.migrationPause = migrationPause;
+        }
+
+        public Duration getSizeReconcileInterval() {
+            return sizeReconcileInterval;
+        }
+
+        public void setSizeReconcileInterval(Duration sizeReconcileInterval) {
+            this.sizeReconcileInterval = sizeReconcileInterval;
+        }
+
+        public Duration getTrashRetention() {
+            return trashRetention;
+        }
+
+        public void setTrashRetention(Duration trashRetention) {
+            this.trashRetention = trashRetention;
+        }
+
+        public Duration getReaperInterval() {
+            return reaperInterval;
+        }
+
+        public void setReaperInterval(Duration reaperInterval) {
+            this.reaperInterval = reaperInterval;
+        }
+
+        public int getReaperMaxFilesPerSecond() {
+            return reaperMaxFilesPerSecond;
+        }
+
+        public void setReaperMaxFilesPerSecond(int reaperMaxFilesPerSecond) {
+            this.reaperMaxFilesPerSecond = reaperMaxFilesPerSecond;
+        }
+
+        public Duration getPoolMaintenanceInterval() {
+            return poolMaintenanceInterval;
+        }
+
+        public void setPoolMaintenanceInterval(Duration poolMaintenanceInterval) {
+            this.poolMaintenanceInterval = poolMaintenanceInterval;
+        }
+
+        public Backend getBackend() {
+            return backend;
+        }
+
+        public void setBackend(Backend backend) {
+            this.backend = backend;
+        }
+
+        public RefFormat getRefFormat() {
+            return refFormat;
+        }
+
+        public void setRefFormat(RefFormat refFormat) {
+            this.refFormat = refFormat;
+        }
     }
 
     public static class Auth {
@@ -106,4 +373,537 @@ public class VcsProperties {
             this.defaultLang = defaultLang;
         }
     }
+
+    public static class Pack {
+        /**
+         * Total memory JGit may use for cached pack windows.
+         */
+        private DataSize packedGitLimit = DataSize.ofMegabytes(128);
+
+        /**
+         * Size of a single pack window, must be a power of 2.
+         */
+        private DataSize packedGitWindowSize = DataSize.ofKilobytes(8);
+
+        /**
+         * Use memory-mapped I/O for pack windows.
+         */
+        private boolean packedGitMmap = false;
+
+        /**
+         * Memory reserved for inflated delta bases.
+         */
+        private DataSize deltaBaseCacheLimit = DataSize.ofMegabytes(32);
+
+        /**
+         * Objects larger than this are streamed instead of loaded into memory.
+         */
+        private DataSize streamFileThreshold = DataSize.ofMegabytes(50);
+
+        public DataSize getPackedGitLimit() {
+            return packedGitLimit;
+        }
+
+        public void setPackedGitLimit(DataSize packedGitLimit) {
+            this.packedGitLimit = packedGitLimit;
+        }
+
+        public DataSize getPackedGitWindowSize() {
+            return packedGitWindowSize;
+        }
+
+        public void setPackedGitWindowSize(DataSize packedGitWindowSize) {
+            this.packedGitWindowSize = packedGitWindowSize;
+        }
+
+        public boolean isPackedGitMmap() {
+            return packedGitMmap;
+        }
+
+        public void setPackedGitMmap(boolean packedGitMmap) {
+            this.packedGitMmap = packedGitMmap;
+        }
+
+        public DataSize getDeltaBaseCacheLimit() {
+            return deltaBaseCacheLimit;
+        }
+
+        public void setDeltaBaseCacheLimit(DataSize deltaBaseCacheLimit) {
+            this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+        }
+
+        public DataSize getStreamFileThreshold() {
+            return streamFileThreshold;
+        }
+
+        public void setStreamFileThreshold(DataSize streamFileThreshold) {
+            this.streamFileThreshold = streamFileThreshold;
+        }
+    }
+
+    public static class Daemon {
+        /**
+         * Start the anonymous, read-only git:// listener.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Listen port, 9418 is the git:// default.
+         */
+        private int port = 9418;
+
+        /**
+         * Listen address, all interfaces when empty.
+         */
+        private String bindAddress;
+
+        /**
+         * Maximum number of open git:// connections; further clients are turned away.
+         */
+        private int maxConnections = 32;
+
+        /**
+         * Idle timeout of a git:// connection.
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public void setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class Receive extends ReceiveLimits {
+        /**
+         * Per-repository overrides keyed by repository name (without .git).
+         */
+        private Map<String, ReceiveLimits> repositories = new HashMap<>();
+
+        public Receive() {
+            setMaxPackSize(DataSize.ofGigabytes(2));
+            setMaxObjectSize(DataSize.ofMegabytes(512));
+        }
+
+        public Map<String, ReceiveLimits> getRepositories() {
+            return repositories;
+        }
+
+        public void setRepositories(Map<String, ReceiveLimits> repositories) {
+            this.repositories = repositories;
+        }
+
+        /**
+         * Largest pack accepted for a repository (name without .git): its override, otherwise the global limit.
+         */
+        public DataSize maxPackSizeFor(String repoName) {
+            ReceiveLimits override = repositories.get(repoName);
+            return override != null && override.getMaxPackSize() != null ? override.getMaxPackSize() : getMaxPackSize();
+        }
+
+        /**
+         * Largest object accepted for a repository (name without .git), in pushes and LFS uploads alike.
+         */
+        public DataSize maxObjectSizeFor(String repoName) {
+            ReceiveLimits override = repositories.get(repoName);
+            return override != null && override.getMaxObjectSize() != null ? override.getMaxObjectSize() : getMaxObjectSize();
+        }
+    }
+
+    public static class ReceiveLimits {
+        /**
+         * Largest pack accepted in a single push; the push is rejected as soon as it is crossed.
+         */
+        private DataSize maxPackSize;
+
+        /**
+         * Largest single object accepted in a push or a Git LFS upload.
+         */
+        private DataSize maxObjectSize;
+
+        public DataSize getMaxPackSize() {
+            return maxPackSize;
+        }
+
+        public void setMaxPackSize(DataSize maxPackSize) {
+            this.maxPackSize = maxPackSize;
+        }
+
+        public DataSize getMaxObjectSize() {
+            return maxObjectSize;
+        }
+
+        public void setMaxObjectSize(DataSize maxObjectSize) {
+            this.maxObjectSize = maxObjectSize;
+        }
+    }
+
+    public static class Archive {
+        /**
+         * Directory of generated archives, reused for later downloads of the same tree; defaults to
+         * {@code archive-cache} next to the storage directory.
+         */
+        private String cacheDir;
+
+        /**
+         * Total size of the archive cache; least recently used archives are removed beyond it.
+         */
+        private DataSize cacheMaxSize = DataSize.ofGigabytes(1);
+
+        public String getCacheDir() {
+            return cacheDir;
+        }
+
+        public void setCacheDir(String cacheDir) {
+            this.cacheDir = cacheDir;
+        }
+
+        public DataSize getCacheMaxSize() {
+            return cacheMaxSize;
+        }
+
+        public void setCacheMaxSize(DataSize cacheMaxSize) {
+            this.cacheMaxSize = cacheMaxSize;
+        }
+    }
+
+    public static class Cache {
+        /**
+         * Number of repositories with the most recent Git traffic to preload at startup; 0 disables warmup.
+         */
+        private int warmupCount = 20;
+
+        /**
+         * File the per-repository traffic ranking is kept in across restarts; defaults to
+         * {@code repository-activity} next to the storage directory.
+         */
+        private String activityFile;
+
+        /**
+         * Repositories nobody has opened for this long are dropped from the repository caches; 0 keeps them.
+         */
+        private Duration idleAfter = Duration.ofHours(1);
+
+        /**
+         * Interval of the idle sweep, which also saves the traffic ranking.
+         */
+        private Duration idleCheckInterval = Duration.ofMinutes(10);
+
+        public int getWarmupCount() {
+            return warmupCount;
+        }
+
+        public void setWarmupCount(int warmupCount) {
+            this.warmupCount = warmupCount;
+        }
+
+        public String getActivityFile() {
+            return activityFile;
+        }
+
+        public void setActivityFile(String activityFile) {
+            this.activityFile = activityFile;
+        }
+
+        public Duration getIdleAfter() {
+            return idleAfter;
+        }
+
+        public void setIdleAfter(Duration idleAfter) {
+            this.idleAfter = idleAfter;
+        }
+
+        public Duration getIdleCheckInterval() {
+            return idleCheckInterval;
+        }
+
+        public void setIdleCheckInterval(Duration idleCheckInterval) {
+            this.idleCheckInterval = idleCheckInterval;
+        }
+    }
+
+    public static class Share {
+        /**
+         * Journal file share links are recorded in, so they survive restarts; defaults to
+         * {@code share-links.journal} next to the storage directory.
+         */
+        private String journalFile;
+
+        /**
+         * How often appended journal records are forced to disk.
+         */
+        private Duration syncInterval = Duration.ofSeconds(1);
+
+        /**
+         * How often the journal is checked for compaction (rewritten once most of its records are superseded).
+         */
+        private Duration compactInterval = Duration.ofHours(1);
+
+        /**
+         * How often the access counters of used share links are saved to the journal.
+         */
+        private Duration statsFlushInterval = Duration.ofMinutes(1);
+
+        /**
+         * Secret for signed share tokens; when set, new links are self-contained signed tokens that
+         * any instance with the same secret accepts. Empty = random tokens known only to this instance.
+         */
+        private String signingKey;
+
+        /**
+         * File signed tokens revoked before their expiry are listed in; share it between instances.
+         * Defaults to {@code share-revocations} next to the storage directory.
+         */
+        private String revocationFile;
+
+        public String getJournalFile() {
+            return journalFile;
+        }
+
+        public void setJournalFile(String journalFile) {
+            this.journalFile = journalFile;
+        }
+
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+
+        public Duration getCompactInterval() {
+            return compactInterval;
+        }
+
+        public void setCompactInterval(Duration compactInterval) {
+            this.compactInterval = compactInterval;
+        }
+
+        public Duration getStatsFlushInterval() {
+            return statsFlushInterval;
+        }
+
+        public void setStatsFlushInterval(Duration statsFlushInterval) {
+            this.statsFlushInterval = statsFlushInterval;
+        }
+
+        public String getSigningKey() {
+            return signingKey;
+        }
+
+        public void setSigningKey(String signingKey) {
+            this.signingKey = signingKey;
+        }
+
+        public String getRevocationFile() {
+            return revocationFile;
+        }
+
+        public void setRevocationFile(String revocationFile) {
+            this.revocationFile = revocationFile;
+        }
+    }
+
+    public static class Api {
+        /**
+         * How long a repository's refs are trusted for ETags without re-reading them; ref updates made
+         * through this server are seen at once, this only bounds the delay for changes made elsewhere.
+         */
+        private Duration refSnapshotTtl = Duration.ofSeconds(2);
+
+        public Duration getRefSnapshotTtl() {
+            return refSnapshotTtl;
+        }
+
+        public void setRefSnapshotTtl(Duration refSnapshotTtl) {
+            this.refSnapshotTtl = refSnapshotTtl;
+        }
+    }
+
+    public static class Dfs {
+        /**
+         * Blob store holding packs and reftables: a local (or mounted) directory, or an S3-compatible service.
+         */
+        private BlobStoreType blobStore = BlobStoreType.LOCAL;
+
+        /**
+         * Directory of the local blob store; defaults to {@code blobs} next to the storage directory.
+         */
+        private String localDir;
+
+        /**
+         * S3-compatible blob store settings.
+         */
+        private S3 s3 = new S3();
+
+        /**
+         * Size of the block cache shared by all DFS repositories.
+         */
+        private DataSize blockCacheSize = DataSize.ofMegabytes(256);
+
+        /**
+         * Unit in which pack data is read from the blob store and cached.
+         */
+        private DataSize blockSize = DataSize.ofKilobytes(64);
+
+        /**
+         * Compact the small packs of a repository into one once a push leaves it with this many; 0 disables.
+         */
+        private int compactPackCount = 8;
+
+        public enum BlobStoreType {
+            LOCAL,
+            S3
+        }
+
+        public BlobStoreType getBlobStore() {
+            return blobStore;
+        }
+
+        public void setBlobStore(BlobStoreType blobStore) {
+            this.blobStore = blobStore;
+        }
+
+        public String getLocalDir() {
+            return localDir;
+        }
+
+        public void setLocalDir(String localDir) {
+            this.localDir = localDir;
+        }
+
+        public S3 getS3() {
+            return s3;
+        }
+
+        public void setS3(S3 s3) {
+            this.s3 = s3;
+        }
+
+        public DataSize getBlockCacheSize() {
+            return blockCacheSize;
+        }
+
+        public void setBlockCacheSize(DataSize blockCacheSize) {
+            this.blockCacheSize = blockCacheSize;
+        }
+
+        public DataSize getBlockSize() {
+            return blockSize;
+        }
+
+        public void setBlockSize(DataSize blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        public int getCompactPackCount() {
+            return compactPackCount;
+        }
+
+        public void setCompactPackCount(int compactPackCount) {
+            this.compactPackCount = compactPackCount;
+        }
+    }
+
+    public static class S3 {
+        /**
+         * Service endpoint, e.g. https://s3.eu-west-1.amazonaws.com or http://minio:9000.
+         */
+        private String endpoint;
+
+        /**
+         * Bucket holding the blobs; requests use path-style addressing.
+         */
+        private String bucket;
+
+        /**
+         * Signing region.
+         */
+        private String region = "us-east-1";
+
+        /**
+         * Access key id.
+         */
+        private String accessKey;
+
+        /**
+         * Secret access key.
+         */
+        private String secretKey;
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public String getAccessKey() {
+            return accessKey;
+        }
+
+        public void setAccessKey(String accessKey) {
+            this.accessKey = accessKey;
+        }
+
+        public String getSecretKey() {
+            return secretKey;
+        }
+
+        public void setSecretKey(String secretKey) {
+            this.secretKey = secretKey;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package com.minigit.controller;
+
+import com.minigit.service.ArchiveService;
+import com.minigit.service.RepositoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Snapshot downloads: {@code /admin/repo/{name}/archive/{ref}.zip} or {@code .tar.gz},
+ * optionally limited to a directory with {@code ?path=}. The ref may contain slashes.
+ */
+@Controller
+public class ArchiveController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveController.class);
+
+    private final RepositoryService repositoryService;
+    private final ArchiveService archiveService;
+
+    public ArchiveController(RepositoryService repositoryService, ArchiveService archiveService) {
+        this.repositoryService = repositoryService;
+        this.archiveService = archiveService;
+    }
+
+    @GetMapping("/admin/repo/{name}/archive/**")
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable String name,
+                                                          @RequestParam(value = "path", required = false) String path,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                                  String ifNoneMatch,
+                                                          HttpServletRequest request) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return ResponseEntity.notFound().build();
+        }
+        String target = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String refAndFormat = target.substring(target.indexOf("/archive/") + "/archive/".length());
+        ArchiveService.Format format = null;
+        String ref = null;
+        for (ArchiveService.Format candidate : ArchiveService.Format.values()) {
+            String suffix = "." + candidate.getExtension();
+            if (refAndFormat.endsWith(suffix) && refAndFormat.length() > suffix.length()) {
+                format = candidate;
+                ref = refAndFormat.substring(0, refAndFormat.length() - suffix.length());
+            }
+        }
+        if (format == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        try {
+            ArchiveService.Archive archive = archiveService.resolve(normalizedName, ref, path, format);
+            if (archive == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return archiveResponse(archiveService, archive, ifNoneMatch);
+        } catch (Exception e) {
+            logger.error("Failed to prepare archive of {} at {}", normalizedName, ref, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Stream an archive as an attachment; the length is known only when it is already cached.
+     * A client that already has this archive gets 304 without a body.
+     */
+    static ResponseEntity<StreamingResponseBody> archiveResponse(ArchiveService archiveService,
+                                                                 ArchiveService.Archive archive,
+                                                                 String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        // The tree id pins the content, whatever ref was used to reach it.
+        headers.setETag("\"" + archive.getTreeId().name() + "-" + archive.getFormat().getExtension() + "\"");
+        if (ShareController.etagMatches(ifNoneMatch, headers.getETag())) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(MediaType.parseMediaType(archive.getFormat().getContentType()));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archive.getFileName() + "\"");
+        long size = archiveService.cachedSize(archive);
+        if (size >= 0) {
+            headers.setContentLength(size);
+        }
+        return new ResponseEntity<>(out -> archiveService.write(archive, out), headers, HttpStatus.OK);
+    }
+}
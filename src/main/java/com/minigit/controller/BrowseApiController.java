@@ -0,0 +1,355 @@
+package com.minigit.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.minigit.dto.ErrorResponse;
+import com.minigit.service.GitRepositoryService;
+import com.minigit.service.RefSnapshotCache;
+import com.minigit.service.RepositoryService;
+import org.eclipse.jgit.errors.AmbiguousObjectException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only JSON API over a repository's refs, trees, blobs and commits.
+ * <p>
+ * Every response carries an ETag and honours If-None-Match. For requests naming a
+ * branch or tag the ETag is derived from the commit the ref points to, which is looked
+ * up in {@link RefSnapshotCache}, so a poller whose ref has not moved gets its 304
+ * without the repository being opened. Responses for a full commit id never change and
+ * may be cached for good. {@code fields} selects a subset of each item's properties.
+ */
+@RestController
+@RequestMapping("/api/repos/{name}")
+public class BrowseApiController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrowseApiController.class);
+
+    private static final long IMMUTABLE_MAX_AGE_SECONDS = 365L * 24 * 60 * 60;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final RepositoryService repositoryService;
+    private final GitRepositoryService gitRepositoryService;
+    private final RefSnapshotCache refSnapshotCache;
+    private final ObjectMapper objectMapper;
+    private final MessageSource messageSource;
+
+    public BrowseApiController(RepositoryService repositoryService, GitRepositoryService gitRepositoryService,
+                               RefSnapshotCache refSnapshotCache, ObjectMapper objectMapper,
+                               MessageSource messageSource) {
+        this.repositoryService = repositoryService;
+        this.gitRepositoryService = gitRepositoryService;
+        this.refSnapshotCache = refSnapshotCache;
+        this.objectMapper = objectMapper;
+        this.messageSource = messageSource;
+    }
+
+    /**
+     * Branches, tags and other refs, with the ref HEAD points to.
+     */
+    @GetMapping("/refs")
+    public ResponseEntity<?> refs(@PathVariable String name,
+                                  @RequestParam(value = "fields", required = false) String fields,
+                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, normalizedName);
+        }
+        try {
+            RefSnapshotCache.Snapshot snapshot = refSnapshotCache.get(normalizedName);
+            String etag = etag("refs", snapshot.getEtag(), fields);
+            if (ShareController.etagMatches(ifNoneMatch, etag)) {
+                return notModified(etag, false);
+            }
+            List<Map<String, Object>> refs = new ArrayList<>();
+            for (Map.Entry<String, ObjectId> ref : snapshot.getRefs().entrySet()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                String refName = ref.getKey();
+                item.put("name", refName);
+                item.put("shortName", Repository.shortenRefName(refName));
+                item.put("type", refName.startsWith(Constants.R_HEADS) ? "branch"
+                        : refName.startsWith(Constants.R_TAGS) ? "tag" : "other");
+                item.put("id", ref.getValue().name());
+                ObjectId peeled = snapshot.getPeeled(refName);
+                item.put("peeledId", peeled != null ? peeled.name() : null);
+                item.put("head", refName.equals(snapshot.getHead()));
+                refs.add(item);
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("head", snapshot.getHead());
+            body.put("refs", select(refs, fields));
+            return ok(body, etag, false);
+        } catch (Exception e) {
+            logger.error("Failed to list refs of {}", normalizedName, e);
+            return createErrorResponse("INTERNAL_ERROR", "internal.error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Entries of a directory at a revision, directories first, in pages.
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<?> tree(@PathVariable String name,
+                                  @RequestParam(value = "ref", required = false) String ref,
+                                  @RequestParam(value = "path", required = false) String path,
+                                  @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                  @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                  @RequestParam(value = "fields", required = false) String fields,
+                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, normalizedName);
+        }
+        try {
+            ObjectId commitId = resolve(normalizedName, ref);
+            if (commitId == null) {
+                return createErrorResponse("REF_NOT_FOUND", "ref.not.found", HttpStatus.NOT_FOUND, ref);
+            }
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            boolean immutable = isFullId(ref);
+            String etag = etag("tree", commitId.name(), path, offset, pageSize, fields);
+            if (ShareController.etagMatches(ifNoneMatch, etag)) {
+                return notModified(etag, immutable);
+            }
+            File repoDir = repositoryService.getRepositoryPath(normalizedName);
+            GitRepositoryService.FilePage page = gitRepositoryService.getFilePage(
+                    repoDir, commitId.name(), path, null, offset, pageSize);
+            if (page.getTotal() == 0 && path != null && !path.trim().isEmpty() && !"/".equals(path.trim())) {
+                // Git has no empty directories: nothing listed means no directory there.
+                return createErrorResponse("PATH_NOT_FOUND", "path.not.found", HttpStatus.NOT_FOUND, path);
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("commitId", commitId.name());
+            body.put("path", path != null ? path : "");
+            body.put("offset", page.getOffset());
+            body.put("total", page.getTotal());
+            body.put("hasMore", page.isHasMore());
+            body.put("entries", select(toMaps(page.getFiles()), fields));
+            return ok(body, etag, immutable);
+        } catch (Exception e) {
+            logger.error("Failed to list tree {} of {} at {}", path, normalizedName, ref, e);
+            return createErrorResponse("INTERNAL_ERROR", "internal.error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Metadata of a file at a revision: blob id and size, without its content.
+     */
+    @GetMapping("/blob")
+    public ResponseEntity<?> blob(@PathVariable String name,
+                                  @RequestParam(value = "ref", required = false) String ref,
+                                  @RequestParam("path") String path,
+                                  @RequestParam(value = "fields", required = false) String fields,
+                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, normalizedName);
+        }
+        try {
+            ObjectId commitId = resolve(normalizedName, ref);
+            if (commitId == null) {
+                return createErrorResponse("REF_NOT_FOUND", "ref.not.found", HttpStatus.NOT_FOUND, ref);
+            }
+            boolean immutable = isFullId(ref);
+            String etag = etag("blob", commitId.name(), path, fields);
+            if (ShareController.etagMatches(ifNoneMatch, etag)) {
+                return notModified(etag, immutable);
+            }
+            File repoDir = repositoryService.getRepositoryPath(normalizedName);
+            GitRepositoryService.FileInfo file = gitRepositoryService.getFileInfo(repoDir, commitId.name(), path);
+            if (!"file".equals(file.getType())) {
+                return createErrorResponse("PATH_NOT_FOUND", "path.not.found", HttpStatus.NOT_FOUND, path);
+            }
+            Map<String, Object> item = toMaps(Collections.singletonList(file)).get(0);
+            item.put("commitId", commitId.name());
+            return ok(select(Collections.singletonList(item), fields).get(0), etag, immutable);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse("PATH_NOT_FOUND", "path.not.found", HttpStatus.NOT_FOUND, path);
+        } catch (Exception e) {
+            logger.error("Failed to read blob {} of {} at {}", path, normalizedName, ref, e);
+            return createErrorResponse("INTERNAL_ERROR", "internal.error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Commits reachable from a revision, newest first, optionally only those changing a path.
+     */
+    @GetMapping("/commits")
+    public ResponseEntity<?> commits(@PathVariable String name,
+                                     @RequestParam(value = "ref", required = false) String ref,
+                                     @RequestParam(value = "path", required = false) String path,
+                                     @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                     @RequestParam(value = "limit", defaultValue = "30") int limit,
+                                     @RequestParam(value = "fields", required = false) String fields,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, normalizedName);
+        }
+        try {
+            ObjectId commitId = resolve(normalizedName, ref);
+            if (commitId == null) {
+                return createErrorResponse("REF_NOT_FOUND", "ref.not.found", HttpStatus.NOT_FOUND, ref);
+            }
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            int skip = Math.max(0, offset);
+            boolean immutable = isFullId(ref);
+            String etag = etag("commits", commitId.name(), path, skip, pageSize, fields);
+            if (ShareController.etagMatches(ifNoneMatch, etag)) {
+                return notModified(etag, immutable);
+            }
+            File repoDir = repositoryService.getRepositoryPath(normalizedName);
+            List<GitRepositoryService.CommitInfo> commits = gitRepositoryService.getCommitLog(
+                    repoDir, commitId.name(), path, skip, pageSize);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("commitId", commitId.name());
+            body.put("offset", skip);
+            body.put("commits", select(toMaps(commits), fields));
+            return ok(body, etag, immutable);
+        } catch (Exception e) {
+            logger.error("Failed to list commits of {} at {}", normalizedName, ref, e);
+            return createErrorResponse("INTERNAL_ERROR", "internal.error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * One commit with the files it changed.
+     */
+    @GetMapping("/commits/{id}")
+    public ResponseEntity<?> commit(@PathVariable String name,
+                                    @PathVariable String id,
+                                    @RequestParam(value = "fields", required = false) String fields,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, normalizedName);
+        }
+        // A full id names the same commit forever; an abbreviated one is resolved first.
+        boolean immutable = ObjectId.isId(id);
+        if (immutable && ShareController.etagMatches(ifNoneMatch, etag("commit", id, fields))) {
+            return notModified(etag("commit", id, fields), true);
+        }
+        try {
+            File repoDir = repositoryService.getRepositoryPath(normalizedName);
+            GitRepositoryService.CommitDetail detail = gitRepositoryService.getCommitDetail(repoDir, id);
+            Map<String, Object> item = toMaps(Collections.singletonList(detail.getCommit())).get(0);
+            item.put("changedFiles", detail.getChangedFiles());
+            String etag = etag("commit", detail.getCommit().getId(), fields);
+            if (ShareController.etagMatches(ifNoneMatch, etag)) {
+                return notModified(etag, immutable);
+            }
+            return ok(select(Collections.singletonList(item), fields).get(0), etag, immutable);
+        } catch (IllegalArgumentException | MissingObjectException | IncorrectObjectTypeException e) {
+            return createErrorResponse("COMMIT_NOT_FOUND", "commit.not.found", HttpStatus.NOT_FOUND, id);
+        } catch (Exception e) {
+            logger.error("Failed to read commit {} of {}", id, normalizedName, e);
+            return createErrorResponse("INTERNAL_ERROR", "internal.error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Commit a revision names, or null if it names none. Branches, tags and the ids they
+     * point to come from the ref snapshot; anything else (another full or abbreviated id,
+     * {@code main~2}) is resolved in the repository, which also checks that it is a commit.
+     */
+    private ObjectId resolve(String normalizedName, String revision) throws IOException {
+        ObjectId id = refSnapshotCache.get(normalizedName).resolve(revision);
+        if (id != null || revision == null || revision.trim().isEmpty()) {
+            return id;
+        }
+        try (Repository repository = repositoryService.openRepository(normalizedName)) {
+            return repository.resolve(revision + "^{commit}");
+        } catch (IllegalArgumentException | MissingObjectException | IncorrectObjectTypeException
+                 | AmbiguousObjectException e) {
+            // Not a valid revision expression, no such object, or not a commit.
+            return null;
+        }
+    }
+
+    private static boolean isFullId(String revision) {
+        return revision != null && ObjectId.isId(revision);
+    }
+
+    private List<Map<String, Object>> toMaps(List<?> items) {
+        List<Map<String, Object>> maps = new ArrayList<>(items.size());
+        for (Object item : items) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = objectMapper.convertValue(item, LinkedHashMap.class);
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    /**
+     * Keep only the requested properties of each item; all of them if none are requested.
+     */
+    private static List<Map<String, Object>> select(List<Map<String, Object>> items, String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return items;
+        }
+        Set<String> wanted = new HashSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                wanted.add(field.trim());
+            }
+        }
+        for (Map<String, Object> item : items) {
+            item.keySet().retainAll(wanted);
+        }
+        return items;
+    }
+
+    /**
+     * Quoted digest of everything that determines a response body.
+     */
+    private static String etag(Object... parts) {
+        StringBuilder text = new StringBuilder();
+        for (Object part : parts) {
+            text.append(part).append('\n');
+        }
+        return "\"" + RefSnapshotCache.digest(text.toString()) + "\"";
+    }
+
+    private static HttpHeaders cacheHeaders(String etag, boolean immutable) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        if (immutable) {
+            headers.setCacheControl(CacheControl.maxAge(IMMUTABLE_MAX_AGE_SECONDS, TimeUnit.SECONDS)
+                    .cachePrivate().getHeaderValue() + ", immutable");
+        } else {
+            // Cacheable, but revalidated on every use; the revalidation is the cheap part.
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        }
+        return headers;
+    }
+
+    private static ResponseEntity<Object> ok(Object body, String etag, boolean immutable) {
+        return new ResponseEntity<>(body, cacheHeaders(etag, immutable), HttpStatus.OK);
+    }
+
+    private static ResponseEntity<Object> notModified(String etag, boolean immutable) {
+        return new ResponseEntity<>(cacheHeaders(etag, immutable), HttpStatus.NOT_MODIFIED);
+    }
+
+    private ResponseEntity<ErrorResponse> createErrorResponse(String errorCode, String messageKey, HttpStatus status, Object... args) {
+        Locale locale = LocaleContextHolder.getLocale();
+        String message = messageSource.getMessage(messageKey, args, messageKey, locale);
+        return ResponseEntity.status(status).body(new ErrorResponse(errorCode, message));
+    }
+}
@@ -150,7 +150,7 @@ class VcsHealthIndicator implements HealthIndicator {
             }
 
             // Count repositories.
-            int repoCount = repositoryService.listRepositories().size();
+            int repoCount = repositoryService.getRepositoryCount();
             
             return Health.up()
                 .withDetail("storage", storageDir.getAbsolutePath())
@@ -2,7 +2,10 @@ package com.minigit.controller;
 
 import com.minigit.dto.ErrorResponse;
 import com.minigit.dto.RepositoryResponse;
+import com.minigit.service.ObjectPoolService;
+import com.minigit.service.PathIndexService;
 import com.minigit.service.RepositoryService;
+import com.minigit.service.RepositorySizeTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
@@ -11,7 +14,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.File;
 import java.util.List;
 import java.util.Locale;
 
@@ -26,17 +28,26 @@ public class RepositoryController {
 
     private final RepositoryService repositoryService;
     private final MessageSource messageSource;
+    private final RepositorySizeTracker sizeTracker;
+    private final ObjectPoolService objectPoolService;
+    private final PathIndexService pathIndexService;
 
-    public RepositoryController(RepositoryService repositoryService, MessageSource messageSource) {
+    public RepositoryController(RepositoryService repositoryService, MessageSource messageSource,
+                                RepositorySizeTracker sizeTracker, ObjectPoolService objectPoolService,
+                                PathIndexService pathIndexService) {
         this.repositoryService = repositoryService;
         this.messageSource = messageSource;
+        this.sizeTracker = sizeTracker;
+        this.objectPoolService = objectPoolService;
+        this.pathIndexService = pathIndexService;
     }
 
     /**
-     * Create repository.
+     * Create repository, optionally from a template repository whose objects it shares.
      */
     @PostMapping
-    public ResponseEntity<?> createRepository(@RequestParam String name) {
+    public ResponseEntity<?> createRepository(@RequestParam String name,
+                                              @RequestParam(required = false) String template) {
         try {
             logger.info("Creating repository: {}", name);
             
@@ -56,7 +67,16 @@ public class RepositoryController {
             }
             
             // Create repository.
-            File repoDir = repositoryService.createRepository(name);
+            if (template != null && !template.trim().isEmpty()) {
+                String templateName = repositoryService.normalizeRepositoryName(template);
+                if (!repositoryService.repositoryExists(templateName)) {
+                    return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, templateName);
+                }
+                objectPoolService.createFromTemplate(templateName, name);
+            } else {
+                repositoryService.createRepository(name);
+                sizeTracker.refresh(normalizedName);
+            }
             
             logger.info("Repository created successfully: {}", normalizedName);
             return ResponseEntity.ok(new RepositoryResponse(normalizedName));
@@ -70,6 +90,35 @@ public class RepositoryController {
         }
     }
 
+    /**
+     * Fork a repository: the fork gets all branches and tags and shares the source's objects.
+     */
+    @PostMapping("/{name}/fork")
+    public ResponseEntity<?> forkRepository(@PathVariable String name, @RequestParam String target) {
+        try {
+            String sourceName = repositoryService.normalizeRepositoryName(name);
+            if (!repositoryService.repositoryExists(sourceName)) {
+                return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, sourceName);
+            }
+            if (!repositoryService.isValidRepositoryName(target)) {
+                return createErrorResponse("INVALID_NAME", "validation.name.invalid", HttpStatus.BAD_REQUEST);
+            }
+            String targetName = repositoryService.normalizeRepositoryName(target);
+            if (repositoryService.repositoryExists(targetName)) {
+                return createErrorResponse("REPO_ALREADY_EXISTS", "repo.exists", HttpStatus.BAD_REQUEST, targetName);
+            }
+            objectPoolService.fork(sourceName, target);
+            logger.info("Repository {} forked to {}", sourceName, targetName);
+            return ResponseEntity.ok(new RepositoryResponse(targetName));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid fork request: {}", e.getMessage());
+            return createErrorResponse("INVALID_REQUEST", "repo.invalid", HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            logger.error("Failed to fork repository {} to {}", name, target, e);
+            return createErrorResponse("INTERNAL_ERROR", "internal.error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * List repositories.
      */
@@ -85,6 +134,20 @@ public class RepositoryController {
         }
     }
 
+    /**
+     * Repository details.
+     */
+    @GetMapping("/{name}")
+    public ResponseEntity<?> getRepository(@PathVariable String name) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return createErrorResponse("REPO_NOT_FOUND", "repo.not.found", HttpStatus.NOT_FOUND, normalizedName);
+        }
+        long size = sizeTracker.getSize(normalizedName);
+        return ResponseEntity.ok(new RepositoryResponse(normalizedName,
+                size == RepositorySizeTracker.UNKNOWN ? null : size));
+    }
+
     /**
      * Delete repository.
      */
@@ -99,6 +162,8 @@ public class RepositoryController {
             }
 
             repositoryService.deleteRepository(name);
+            sizeTracker.forget(normalizedName);
+            pathIndexService.forget(normalizedName);
             logger.info("Repository deleted successfully: {}", normalizedName);
             return ResponseEntity.noContent().build();
 
@@ -1,14 +1,17 @@
 package com.minigit.controller;
 
 import com.minigit.dto.ShareLink;
+import com.minigit.service.ArchiveService;
 import com.minigit.service.GitRepositoryService;
 import com.minigit.service.RepositoryService;
 import com.minigit.service.ShareLinkService;
 import com.vladsch.flexmark.html.HtmlRenderer;
 import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.util.ast.Node;
+import org.eclipse.jgit.util.io.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -18,8 +21,10 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.File;
@@ -28,14 +33,17 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles public file share links (/share/**) and authenticated share management (/admin/share/**).
@@ -47,6 +55,7 @@ public class ShareController {
 
     private static final int MAX_INLINE_PREVIEW_BYTES = 1_048_576;
     private static final int UTF8_VALIDATION_BUFFER_SIZE = 65536;
+    private static final long PINNED_MAX_AGE_SECONDS = 365L * 24 * 60 * 60;
 
     private static final Set<String> MARKDOWN_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
             "md", "markdown", "mdown", "mkd")));
@@ -86,13 +95,16 @@ public class ShareController {
     private final ShareLinkService shareLinkService;
     private final RepositoryService repositoryService;
     private final GitRepositoryService gitRepositoryService;
+    private final ArchiveService archiveService;
 
     public ShareController(ShareLinkService shareLinkService,
                            RepositoryService repositoryService,
-                           GitRepositoryService gitRepositoryService) {
+                           GitRepositoryService gitRepositoryService,
+                           ArchiveService archiveService) {
         this.shareLinkService = shareLinkService;
         this.repositoryService = repositoryService;
         this.gitRepositoryService = gitRepositoryService;
+        this.archiveService = archiveService;
     }
 
     // ── Public share viewer ───────────────────────────────────────────────────
@@ -103,6 +115,7 @@ public class ShareController {
     @GetMapping("/share/{token}")
     public String showShare(@PathVariable String token,
                             @RequestParam(value = "pw", required = false) String pw,
+                            @RequestParam(value = "path", required = false) String path,
                             Model model) {
         ShareLink link = shareLinkService.getByToken(token);
         if (link == null || !link.isActive()) {
@@ -132,10 +145,71 @@ public class ShareController {
             }
         }
 
+        link.getStats().recordView();
+
+        if (link.isArchive()) {
+            String subPath = normalizeSharedSubPath(path);
+            if (subPath == null) {
+                model.addAttribute("shareError", "share.invalid");
+                return "share-viewer";
+            }
+            String pwQuery = (hasPassword && pw != null && !pw.isEmpty()) ? "pw=" + encodeUrlParam(pw) : "";
+            String pwParam = pwQuery.isEmpty() ? "" : "?" + pwQuery;
+            String dirParam = subPath.isEmpty() ? "" : "path=" + encodeUrlParam(subPath);
+            model.addAttribute("token", token);
+            model.addAttribute("fileName", link.getFileName());
+            model.addAttribute("filePath", link.getFilePath().isEmpty() ? null : link.getFilePath());
+            model.addAttribute("fileSizeFormatted", link.getArchiveFormat());
+            model.addAttribute("previewAvailable", false);
+            model.addAttribute("inlinePreview", false);
+            model.addAttribute("tooLargeForInline", false);
+            model.addAttribute("binaryDetected", false);
+            model.addAttribute("clientRenderOffice", false);
+            model.addAttribute("downloadUrl", "/share/" + token + "/archive" + query(dirParam, pwQuery));
+            model.addAttribute("rawUrl", "/share/" + token + "/archive" + pwParam);
+            if (link.getExpiresAt() != null) {
+                model.addAttribute("expiresAt",
+                        link.getExpiresAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+            }
+            try {
+                File repoDir = repositoryService.getRepositoryPath(link.getRepoName());
+                String base = link.getFilePath();
+                List<GitRepositoryService.FileInfo> entries = gitRepositoryService.getFileList(
+                        repoDir, link.getBranch(), joinSharedPath(base, subPath));
+                if (entries.isEmpty() && !subPath.isEmpty()) {
+                    model.addAttribute("shareError", "share.invalid");
+                    return "share-viewer";
+                }
+                List<Map<String, String>> treeEntries = new ArrayList<>(entries.size());
+                for (GitRepositoryService.FileInfo entry : entries) {
+                    String relative = subPath.isEmpty() ? entry.getName() : subPath + "/" + entry.getName();
+                    String pathParam = "path=" + encodeUrlParam(relative);
+                    Map<String, String> item = new HashMap<>();
+                    item.put("name", entry.getName());
+                    item.put("type", entry.getType());
+                    item.put("size", entry.getSizeFormatted());
+                    item.put("url", "directory".equals(entry.getType())
+                            ? "/share/" + token + query(pathParam, pwQuery)
+                            : "/share/" + token + "/file" + query(pathParam, pwQuery));
+                    treeEntries.add(item);
+                }
+                model.addAttribute("treeEntries", treeEntries);
+                model.addAttribute("treePath", subPath);
+                if (!subPath.isEmpty()) {
+                    int slash = subPath.lastIndexOf('/');
+                    String parentParam = slash < 0 ? "" : "path=" + encodeUrlParam(subPath.substring(0, slash));
+                    model.addAttribute("parentUrl", "/share/" + token + query(parentParam, pwQuery));
+                }
+            } catch (Exception e) {
+                logger.error("Error listing shared directory for token {}", token, e);
+                model.addAttribute("shareError", "share.file.error");
+            }
+            return "share-viewer";
+        }
+
         // Build preview model
         try {
-            File repoDir = repositoryService.getRepositoryPath(link.getRepoName());
-            byte[] content = gitRepositoryService.getFileContent(repoDir, link.getBranch(), link.getFilePath());
+            byte[] content = loadSharedContent(link);
             String detectedMime = detectMimeType(link.getFileName());
             String previewType = determinePreviewTypeWithContentDetection(link.getFileName(), detectedMime, content);
             String mimeType = guessMimeType(link.getFileName(), previewType, detectedMime);
@@ -199,8 +273,10 @@ public class ShareController {
      */
     @GetMapping("/share/{token}/raw")
     public ResponseEntity<byte[]> shareRaw(@PathVariable String token,
-                                           @RequestParam(value = "pw", required = false) String pw) {
-        return serveSharedFile(token, pw, false);
+                                           @RequestParam(value = "pw", required = false) String pw,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                   String ifNoneMatch) {
+        return serveSharedFile(token, pw, false, ifNoneMatch);
     }
 
     /**
@@ -208,49 +284,246 @@ public class ShareController {
      */
     @GetMapping("/share/{token}/download")
     public ResponseEntity<byte[]> shareDownload(@PathVariable String token,
-                                                @RequestParam(value = "pw", required = false) String pw) {
-        return serveSharedFile(token, pw, true);
+                                                @RequestParam(value = "pw", required = false) String pw,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                        String ifNoneMatch) {
+        return serveSharedFile(token, pw, true, ifNoneMatch);
     }
 
-    private ResponseEntity<byte[]> serveSharedFile(String token, String pw, boolean attachment) {
+    /**
+     * Stream the archive of an archive share link.
+     */
+    @GetMapping("/share/{token}/archive")
+    public ResponseEntity<StreamingResponseBody> shareArchive(@PathVariable String token,
+                                                              @RequestParam(value = "pw", required = false) String pw,
+                                                              @RequestParam(value = "path", required = false) String path,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                                      String ifNoneMatch) {
         ShareLink link = shareLinkService.getByToken(token);
-        if (link == null || !link.isAccessible()) {
+        if (link == null || !link.isAccessible() || !link.isArchive()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
         if (link.getPasswordHash() != null && !shareLinkService.validateAccess(token, pw)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
+        String subPath = normalizeSharedSubPath(path);
+        if (subPath == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
         try {
-            File repoDir = repositoryService.getRepositoryPath(link.getRepoName());
-            byte[] content = gitRepositoryService.getFileContent(repoDir, link.getBranch(), link.getFilePath());
-            String detectedMime = detectMimeType(link.getFileName());
-            String previewType = determinePreviewType(link.getFileName(), detectedMime);
-            String mimeType = guessMimeType(link.getFileName(), previewType, detectedMime);
+            ArchiveService.Archive archive = archiveService.resolve(link.getRepoName(),
+                    link.getBranch() != null ? link.getBranch() : "HEAD", joinSharedPath(link.getFilePath(), subPath),
+                    ArchiveService.Format.fromExtension(link.getArchiveFormat()));
+            if (archive == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            ResponseEntity<StreamingResponseBody> response =
+                    ArchiveController.archiveResponse(archiveService, archive, ifNoneMatch);
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                link.getStats().recordDownload(0);
+                return response;
+            }
+            StreamingResponseBody body = response.getBody();
+            return new ResponseEntity<>(out -> {
+                CountingOutputStream counting = new CountingOutputStream(out);
+                try {
+                    body.writeTo(counting);
+                    // Only a completed archive counts as a download; bytes count either way.
+                    link.getStats().recordDownload(0);
+                } finally {
+                    link.getStats().addBytes(counting.getCount());
+                }
+            }, response.getHeaders(), response.getStatusCode());
+        } catch (Exception e) {
+            logger.error("Error serving shared archive for token {}", token, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(mimeType != null ? MediaType.parseMediaType(mimeType) : MediaType.APPLICATION_OCTET_STREAM);
-            headers.set(HttpHeaders.CONTENT_DISPOSITION, buildContentDisposition(attachment, link.getFileName()));
-            headers.setContentLength(content.length);
-            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+    private ResponseEntity<byte[]> serveSharedFile(String token, String pw, boolean attachment, String ifNoneMatch) {
+        ShareLink link = shareLinkService.getByToken(token);
+        if (link == null || !link.isAccessible()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (link.getPasswordHash() != null && !shareLinkService.validateAccess(token, pw)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (link.isPinned()) {
+            addPinnedCacheHeaders(link, headers);
+            if (etagMatches(ifNoneMatch, headers.getETag())) {
+                recordAccess(link, attachment, 0);
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+        }
+        try {
+            byte[] content = loadSharedContent(link);
+            recordAccess(link, attachment, content.length);
+            return fileResponse(headers, link.getFileName(), content, attachment);
         } catch (Exception e) {
             logger.error("Error serving shared file for token {}", token, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Serve one file from the tree of a directory share link; {@code path} is relative to
+     * the shared directory.
+     */
+    @GetMapping("/share/{token}/file")
+    public ResponseEntity<byte[]> shareTreeFile(@PathVariable String token,
+                                                @RequestParam(value = "pw", required = false) String pw,
+                                                @RequestParam String path,
+                                                @RequestParam(defaultValue = "true") boolean download) {
+        ShareLink link = shareLinkService.getByToken(token);
+        if (link == null || !link.isAccessible() || !link.isArchive()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (link.getPasswordHash() != null && !shareLinkService.validateAccess(token, pw)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String subPath = normalizeSharedSubPath(path);
+        if (subPath == null || subPath.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        try {
+            File repoDir = repositoryService.getRepositoryPath(link.getRepoName());
+            byte[] content = gitRepositoryService.getFileContent(repoDir, link.getBranch(),
+                    joinSharedPath(link.getFilePath(), subPath));
+            recordAccess(link, download, content.length);
+            return fileResponse(new HttpHeaders(), subPath.substring(subPath.lastIndexOf('/') + 1), content, download);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (Exception e) {
+            logger.error("Error serving file {} of shared directory for token {}", subPath, token, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private ResponseEntity<byte[]> fileResponse(HttpHeaders headers, String fileName, byte[] content,
+                                                boolean attachment) {
+        String detectedMime = detectMimeType(fileName);
+        String previewType = determinePreviewType(fileName, detectedMime);
+        String mimeType = guessMimeType(fileName, previewType, detectedMime);
+
+        headers.setContentType(mimeType != null ? MediaType.parseMediaType(mimeType) : MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, buildContentDisposition(attachment, fileName));
+        headers.setContentLength(content.length);
+        return new ResponseEntity<>(content, headers, HttpStatus.OK);
+    }
+
+    /**
+     * A path below a shared directory, without leading or trailing slashes; empty for the
+     * directory itself, null if it would step outside it.
+     */
+    private static String normalizeSharedSubPath(String path) {
+        if (path == null) {
+            return "";
+        }
+        String trimmed = path.trim();
+        while (trimmed.startsWith("/")) {
+            trimmed = trimmed.substring(1);
+        }
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        if (trimmed.isEmpty()) {
+            return "";
+        }
+        for (String segment : trimmed.split("/", -1)) {
+            if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment) || segment.contains("\\")) {
+                return null;
+            }
+        }
+        return trimmed;
+    }
+
+    private static String joinSharedPath(String base, String subPath) {
+        if (base == null || base.isEmpty()) {
+            return subPath;
+        }
+        return subPath.isEmpty() ? base : base + "/" + subPath;
+    }
+
+    private static String query(String first, String second) {
+        if (first.isEmpty()) {
+            return second.isEmpty() ? "" : "?" + second;
+        }
+        return second.isEmpty() ? "?" + first : "?" + first + "&" + second;
+    }
+
+    private static void recordAccess(ShareLink link, boolean attachment, long bytes) {
+        if (attachment) {
+            link.getStats().recordDownload(bytes);
+        } else {
+            link.getStats().recordRaw(bytes);
+        }
+    }
+
+    /**
+     * Content of a file share link: the pinned blob, or the file as it is now on the link's branch.
+     */
+    private byte[] loadSharedContent(ShareLink link) throws Exception {
+        File repoDir = repositoryService.getRepositoryPath(link.getRepoName());
+        if (link.isPinned()) {
+            return gitRepositoryService.getBlobContent(repoDir, link.getObjectId());
+        }
+        return gitRepositoryService.getFileContent(repoDir, link.getBranch(), link.getFilePath());
+    }
+
+    /**
+     * A pinned link's content never changes, so browsers and proxies may keep it until the
+     * link expires, at most a year; a revoked link can live on in those caches until then.
+     * Password-protected links are kept out of shared caches.
+     */
+    private static void addPinnedCacheHeaders(ShareLink link, HttpHeaders headers) {
+        long maxAge = PINNED_MAX_AGE_SECONDS;
+        if (link.getExpiresAt() != null) {
+            maxAge = Math.max(0, Math.min(maxAge,
+                    TimeUnit.MILLISECONDS.toSeconds(link.getExpiresAtMillis() - System.currentTimeMillis())));
+        }
+        CacheControl cacheControl = CacheControl.maxAge(maxAge, TimeUnit.SECONDS);
+        cacheControl = link.getPasswordHash() != null ? cacheControl.cachePrivate() : cacheControl.cachePublic();
+        headers.setCacheControl(cacheControl.getHeaderValue() + ", immutable");
+        headers.setETag("\"" + link.getObjectId() + "\"");
+    }
+
+    /**
+     * Whether an If-None-Match header names the ETag; weak tags compare by value.
+     */
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // ── Authenticated admin endpoints ─────────────────────────────────────────
 
     /**
-     * Create a new share link. Returns JSON.
+     * Create a new share link. Returns JSON. With {@code archiveFormat} ("zip" or "tar.gz")
+     * the link shares an archive of the directory {@code filePath} (empty = whole tree).
+     * With {@code pin} a file link keeps serving the file's current version.
      */
     @PostMapping("/admin/share/create")
     @ResponseBody
     public Map<String, Object> createShare(
             @RequestParam String repoName,
-            @RequestParam String filePath,
+            @RequestParam(defaultValue = "") String filePath,
             @RequestParam(required = false) String branch,
             @RequestParam(defaultValue = "0") long expiresInHours,
             @RequestParam(required = false) String password,
+            @RequestParam(required = false) String archiveFormat,
+            @RequestParam(defaultValue = "false") boolean pin,
             HttpServletRequest request) {
         Map<String, Object> result = new HashMap<>();
         try {
@@ -259,14 +532,44 @@ public class ShareController {
                 result.put("error", "Repository not found");
                 return result;
             }
-            String fileName = filePath.contains("/")
-                    ? filePath.substring(filePath.lastIndexOf('/') + 1) : filePath;
-            ShareLink link = shareLinkService.createShareLink(
-                    normalizedName, filePath, branch, fileName, expiresInHours, password);
+            ShareLink link;
+            if (archiveFormat != null && !archiveFormat.isEmpty()) {
+                ArchiveService.Format format = ArchiveService.Format.fromExtension(archiveFormat);
+                if (format == null) {
+                    result.put("error", "Unsupported archive format");
+                    return result;
+                }
+                ArchiveService.Archive archive = archiveService.resolve(normalizedName,
+                        branch != null && !branch.isEmpty() ? branch : "HEAD", filePath, format);
+                if (archive == null) {
+                    result.put("error", "Directory not found");
+                    return result;
+                }
+                link = shareLinkService.createArchiveShareLink(normalizedName, filePath,
+                        branch != null && !branch.isEmpty() ? branch : null,
+                        archive.getFileName(), format.getExtension(), expiresInHours, password);
+            } else {
+                if (filePath.isEmpty()) {
+                    result.put("error", "File path is required");
+                    return result;
+                }
+                String fileName = filePath.contains("/")
+                        ? filePath.substring(filePath.lastIndexOf('/') + 1) : filePath;
+                if (pin) {
+                    String objectId = gitRepositoryService.getFileObjectId(
+                            repositoryService.getRepositoryPath(normalizedName), branch, filePath);
+                    link = shareLinkService.createPinnedShareLink(
+                            normalizedName, filePath, branch, fileName, objectId, expiresInHours, password);
+                } else {
+                    link = shareLinkService.createShareLink(
+                            normalizedName, filePath, branch, fileName, expiresInHours, password);
+                }
+            }
             String base = getBaseUrl(request);
             result.put("token", link.getToken());
             result.put("shareUrl", base + "/share/" + link.getToken());
             result.put("hasPassword", link.getPasswordHash() != null);
+            result.put("objectId", link.getObjectId());
             result.put("expiresAt", link.getExpiresAt() != null
                     ? link.getExpiresAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : null);
         } catch (Exception e) {
@@ -289,12 +592,14 @@ public class ShareController {
     }
 
     /**
-     * List all share links. Returns JSON.
+     * List share links, newest first, one page at a time. Returns JSON with the links, each
+     * with its access counters, and the cursor of the next page.
      */
     @GetMapping("/admin/share/list")
     @ResponseBody
-    public Object listShares() {
-        return shareLinkService.listAll();
+    public Object listShares(@RequestParam(required = false) String cursor,
+                             @RequestParam(defaultValue = "50") int limit) {
+        return shareLinkService.list(cursor, limit);
     }
 
     // ── File preview helper methods ───────────────────────────────────────────
@@ -1,15 +1,26 @@
 package com.minigit.controller;
 
+import com.minigit.config.VcsProperties;
 import com.minigit.service.GitRepositoryService;
+import com.minigit.service.LfsObjectStore;
+import com.minigit.service.ObjectPoolService;
+import com.minigit.service.PathIndexService;
+import com.minigit.service.RefStorageConverter;
+import com.minigit.service.RepositoryLayoutMigrator;
+import com.minigit.service.RepositorySizeTracker;
+import com.minigit.service.RepositoryTrashReaper;
 import com.minigit.service.RepositoryService;
 import com.vladsch.flexmark.html.HtmlRenderer;
 import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.util.ast.Node;
-import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -23,6 +34,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.file.Files;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
@@ -68,6 +80,9 @@ public class WebController {
 
     private static final int UTF8_VALIDATION_BUFFER_SIZE = 65536; // 64 KB
     private static final int MAX_INLINE_PREVIEW_BYTES = 1_048_576; // 1 MB
+    private static final long MAX_LFS_PREVIEW_BYTES = 16L * 1_048_576; // 16 MB
+    private static final int FILE_PAGE_SIZE = 200;       // Entries rendered with a directory page
+    private static final int MAX_FILE_PAGE_SIZE = 1000;  // Entries per JSON page
 
     // Branch names: letters/digits/dash/underscore/dot/slash; no ".." or "//".
     private static final java.util.regex.Pattern BRANCH_NAME_PATTERN =
@@ -106,13 +121,37 @@ public class WebController {
     private final RepositoryService repositoryService;
     private final GitRepositoryService gitRepositoryService;
     private final MessageSource messageSource;
+    private final LfsObjectStore lfsObjectStore;
+    private final VcsProperties vcsProperties;
+    private final RepositoryLayoutMigrator layoutMigrator;
+    private final RepositorySizeTracker sizeTracker;
+    private final RepositoryTrashReaper trashReaper;
+    private final ObjectPoolService objectPoolService;
+    private final RefStorageConverter refStorageConverter;
+    private final PathIndexService pathIndexService;
 
     public WebController(RepositoryService repositoryService,
                          GitRepositoryService gitRepositoryService,
-                         MessageSource messageSource) {
+                         MessageSource messageSource,
+                         LfsObjectStore lfsObjectStore,
+                         VcsProperties vcsProperties,
+                         RepositoryLayoutMigrator layoutMigrator,
+                         RepositorySizeTracker sizeTracker,
+                         RepositoryTrashReaper trashReaper,
+                         ObjectPoolService objectPoolService,
+                         RefStorageConverter refStorageConverter,
+                         PathIndexService pathIndexService) {
         this.repositoryService = repositoryService;
         this.gitRepositoryService = gitRepositoryService;
         this.messageSource = messageSource;
+        this.lfsObjectStore = lfsObjectStore;
+        this.vcsProperties = vcsProperties;
+        this.layoutMigrator = layoutMigrator;
+        this.sizeTracker = sizeTracker;
+        this.trashReaper = trashReaper;
+        this.objectPoolService = objectPoolService;
+        this.refStorageConverter = refStorageConverter;
+        this.pathIndexService = pathIndexService;
     }
 
     /**
@@ -133,6 +172,15 @@ public class WebController {
             model.addAttribute("repositories", repositories);
             model.addAttribute("username", principal.getName());
             model.addAttribute("repoCount", repositories.size());
+            Map<String, String> repoSizes = new HashMap<>();
+            for (String repo : repositories) {
+                repoSizes.put(repo, formatSize(sizeTracker.getSize(repo)));
+            }
+            model.addAttribute("repoSizes", repoSizes);
+            model.addAttribute("trash", repositoryService.listTrash());
+            RepositoryTrashReaper.Status reaper = trashReaper.getStatus();
+            model.addAttribute("reaper", reaper);
+            model.addAttribute("reaperFreed", formatSize(reaper.getBytesFreed()));
 
             File storageDir = repositoryService.getStorageDir();
             model.addAttribute("storageDir", storageDir.getAbsolutePath());
@@ -167,6 +215,23 @@ public class WebController {
             }
 
             byte[] content = gitRepositoryService.getFileContent(repoDir, branch, path);
+            long fileSize = fileInfo.getSize();
+
+            // LFS pointer: preview the stored object instead of the pointer text.
+            LfsObjectStore.Pointer lfsPointer = LfsObjectStore.parsePointer(content);
+            boolean lfsMissing = false;
+            boolean lfsTooLarge = false;
+            if (lfsPointer != null) {
+                fileSize = lfsPointer.getSize();
+                if (!lfsObjectStore.contains(lfsPointer.getOid(), lfsPointer.getSize())) {
+                    lfsMissing = true;
+                } else if (lfsPointer.getSize() > MAX_LFS_PREVIEW_BYTES) {
+                    lfsTooLarge = true;
+                } else {
+                    content = Files.readAllBytes(lfsObjectStore.getObjectFile(lfsPointer.getOid()).toPath());
+                }
+            }
+
             String detectedMime = detectMimeType(fileInfo.getName());
             // Use smart content detection instead of simple detection.
             String previewType = determinePreviewTypeWithContentDetection(fileInfo.getName(), detectedMime, content);
@@ -174,14 +239,18 @@ public class WebController {
 
             boolean tooLargeForInline = shouldRenderAsText(previewType) && content.length > MAX_INLINE_PREVIEW_BYTES;
             boolean binaryDetected = shouldRenderAsText(previewType) && isLikelyBinary(content);
-            boolean inlinePreview = !tooLargeForInline && !binaryDetected && previewType != null && !"binary".equals(previewType);
+            boolean inlinePreview = !tooLargeForInline && !binaryDetected && !lfsTooLarge
+                    && previewType != null && !"binary".equals(previewType);
 
             model.addAttribute("repoName", normalizedName);
             model.addAttribute("branch", branch);
             model.addAttribute("fileName", fileInfo.getName());
             model.addAttribute("filePath", fileInfo.getPath());
-            model.addAttribute("fileSize", fileInfo.getSize());
-            model.addAttribute("fileSizeFormatted", fileInfo.getSizeFormatted());
+            model.addAttribute("fileSize", fileSize);
+            model.addAttribute("fileSizeFormatted", lfsPointer != null ? formatBytes(fileSize) : fileInfo.getSizeFormatted());
+            model.addAttribute("lfsObject", lfsPointer != null);
+            model.addAttribute("lfsMissing", lfsMissing);
+            model.addAttribute("lfsTooLarge", lfsTooLarge);
             model.addAttribute("previewType", previewType);
             model.addAttribute("inlinePreview", inlinePreview);
             model.addAttribute("mimeType", mimeType);
@@ -206,9 +275,9 @@ public class WebController {
 
             // Sidebar: load files in the same directory as the viewed file
             try {
-                List<GitRepositoryService.FileInfo> sidebarFiles =
-                        gitRepositoryService.getFileList(repoDir, branch, parent.isEmpty() ? null : parent);
-                model.addAttribute("sidebarFiles", sidebarFiles);
+                GitRepositoryService.FilePage sidebarPage = gitRepositoryService.getFilePage(
+                        repoDir, branch, parent.isEmpty() ? null : parent, null, 0, FILE_PAGE_SIZE);
+                model.addAttribute("sidebarFiles", sidebarPage.getFiles());
             } catch (Exception e) {
                 logger.debug("Could not load sidebar files for {} in dir '{}'", normalizedName, parent);
                 model.addAttribute("sidebarFiles", Collections.emptyList());
@@ -237,7 +306,7 @@ public class WebController {
                 }
             }
 
-            boolean requiresClientRender = Arrays.asList("word", "excel", "powerpoint").contains(previewType);
+            boolean requiresClientRender = !lfsTooLarge && Arrays.asList("word", "excel", "powerpoint").contains(previewType);
             model.addAttribute("clientRenderOffice", requiresClientRender);
             model.addAttribute("previewAvailable", inlinePreview || requiresClientRender);
             return "admin/file-viewer";
@@ -286,23 +355,97 @@ public class WebController {
      * Raw file content.
      */
     @GetMapping("/admin/repo/{name}/file/raw")
-    public ResponseEntity<byte[]> rawFile(@PathVariable String name,
-                                          @RequestParam("path") String path,
-                                          @RequestParam(value = "branch", required = false) String branch) {
+    public ResponseEntity<Resource> rawFile(@PathVariable String name,
+                                            @RequestParam("path") String path,
+                                            @RequestParam(value = "branch", required = false) String branch) {
         return serveFileContent(name, path, branch, false);
     }
 
+    /**
+     * Last commit of each entry of a directory, by entry name. Returns JSON; the repository
+     * page loads it after rendering the file list.
+     */
+    @GetMapping("/admin/repo/{name}/last-commits")
+    @ResponseBody
+    public ResponseEntity<Map<String, GitRepositoryService.CommitInfo>> lastCommits(
+            @PathVariable String name,
+            @RequestParam(value = "branch", required = false) String branch,
+            @RequestParam(value = "path", required = false) String path) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        try {
+            File repoDir = repositoryService.getRepositoryPath(normalizedName);
+            return ResponseEntity.ok(gitRepositoryService.getLastCommits(repoDir, branch, path));
+        } catch (Exception e) {
+            logger.error("Failed to find last commits of {} in {}", path, normalizedName, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * A page of a directory listing as JSON, for loading further entries as the list is
+     * scrolled. Pass the returned commit id as the branch of the following requests so a
+     * push in between does not shift the pages.
+     */
+    @GetMapping("/admin/repo/{name}/files")
+    @ResponseBody
+    public ResponseEntity<GitRepositoryService.FilePage> listFiles(
+            @PathVariable String name,
+            @RequestParam(value = "branch", required = false) String branch,
+            @RequestParam(value = "path", required = false) String path,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "200") int limit) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        try {
+            File repoDir = repositoryService.getRepositoryPath(normalizedName);
+            return ResponseEntity.ok(gitRepositoryService.getFilePage(repoDir, branch, path, filter,
+                    offset, Math.max(1, Math.min(limit, MAX_FILE_PAGE_SIZE))));
+        } catch (Exception e) {
+            logger.error("Failed to list {} in {}", path, normalizedName, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Files of a branch matching a fuzzy query, best first, for "go to file". Returns JSON.
+     */
+    @GetMapping("/admin/repo/{name}/find-file")
+    @ResponseBody
+    public ResponseEntity<List<String>> findFile(
+            @PathVariable String name,
+            @RequestParam(value = "branch", required = false) String branch,
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        try {
+            return ResponseEntity.ok(pathIndexService.find(normalizedName, branch, query,
+                    Math.max(1, Math.min(limit, 100))));
+        } catch (Exception e) {
+            logger.error("Failed to find files matching {} in {}", query, normalizedName, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * File download.
      */
     @GetMapping("/admin/repo/{name}/file/download")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String name,
-                                               @RequestParam("path") String path,
-                                               @RequestParam(value = "branch", required = false) String branch) {
+    public ResponseEntity<Resource> downloadFile(@PathVariable String name,
+                                                 @RequestParam("path") String path,
+                                                 @RequestParam(value = "branch", required = false) String branch) {
         return serveFileContent(name, path, branch, true);
     }
 
-    private ResponseEntity<byte[]> serveFileContent(String repoName, String path, String branch, boolean attachment) {
+    private ResponseEntity<Resource> serveFileContent(String repoName, String path, String branch, boolean attachment) {
         try {
             String normalizedName = repositoryService.normalizeRepositoryName(repoName);
             if (!repositoryService.repositoryExists(normalizedName)) {
@@ -316,6 +459,12 @@ public class WebController {
             }
 
             byte[] content = gitRepositoryService.getFileContent(repoDir, branch, path);
+            Resource body = new ByteArrayResource(content);
+            LfsObjectStore.Pointer lfsPointer = LfsObjectStore.parsePointer(content);
+            if (lfsPointer != null && lfsObjectStore.contains(lfsPointer.getOid(), lfsPointer.getSize())) {
+                // Streamed from disk; Range requests are handled by Spring for Resource bodies.
+                body = new FileSystemResource(lfsObjectStore.getObjectFile(lfsPointer.getOid()));
+            }
             String detectedMime = detectMimeType(fileInfo.getName());
             String previewType = determinePreviewType(fileInfo.getName(), detectedMime);
             String mimeType = guessMimeType(fileInfo.getName(), previewType, detectedMime);
@@ -323,8 +472,8 @@ public class WebController {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(mimeType != null ? MediaType.parseMediaType(mimeType) : MediaType.APPLICATION_OCTET_STREAM);
             headers.set(HttpHeaders.CONTENT_DISPOSITION, buildContentDisposition(attachment, fileInfo.getName()));
-            headers.setContentLength(content.length);
-            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+            headers.setContentLength(body.contentLength());
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
         } catch (IllegalArgumentException e) {
             logger.warn("Serve file failed for repo {} path {}: {}", repoName, path, e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -650,6 +799,8 @@ public class WebController {
                 return "redirect:/admin";
             }
             repositoryService.deleteRepository(name);
+            sizeTracker.forget(normalizedName);
+            pathIndexService.forget(normalizedName);
             redirectAttributes.addFlashAttribute("success", getMessage("repo.deleted", normalizedName));
             return "redirect:/admin";
         } catch (Exception e) {
@@ -659,11 +810,53 @@ public class WebController {
         }
     }
 
+    /**
+     * Restore a deleted repository that has not been reclaimed yet.
+     */
+    @PostMapping("/admin/trash/{id}/restore")
+    public String restoreRepo(@PathVariable String id, RedirectAttributes redirectAttributes) {
+        try {
+            String normalizedName = repositoryService.restoreRepository(id);
+            sizeTracker.refresh(normalizedName);
+            redirectAttributes.addFlashAttribute("success", getMessage("repo.restored", normalizedName));
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("error", getMessage("repo.restore.failed", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to restore repository via web: {}", id, e);
+            redirectAttributes.addFlashAttribute("error", getMessage("internal.error"));
+        }
+        return "redirect:/admin";
+    }
+
+    /**
+     * Toggle anonymous git:// read access.
+     */
+    @PostMapping("/admin/repo/{name}/public")
+    public String setRepoPublic(@PathVariable String name,
+                                @RequestParam("enabled") boolean enabled,
+                                RedirectAttributes redirectAttributes) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        try {
+            if (!repositoryService.repositoryExists(normalizedName)) {
+                redirectAttributes.addFlashAttribute("error", getMessage("repo.not.found", normalizedName));
+                return "redirect:/admin";
+            }
+            repositoryService.setPublicRepository(normalizedName, enabled);
+            redirectAttributes.addFlashAttribute("success",
+                    getMessage(enabled ? "repo.public.enabled" : "repo.public.disabled", normalizedName));
+        } catch (Exception e) {
+            logger.error("Failed to change visibility of repository via web: {}", name, e);
+            redirectAttributes.addFlashAttribute("error", getMessage("internal.error"));
+        }
+        return "redirect:/admin/repo/" + normalizedName;
+    }
+
     /**
      * Repository creation page.
      */
     @GetMapping("/admin/create")
     public String createRepoPage(Model model) {
+        model.addAttribute("repositories", repositoryService.listRepositories());
         return "admin/create";
     }
 
@@ -671,7 +864,10 @@ public class WebController {
      * Handle repository creation.
      */
     @PostMapping("/admin/create")
-    public String createRepo(@RequestParam String name, RedirectAttributes redirectAttributes) {
+    public String createRepo(@RequestParam String name,
+                             @RequestParam(required = false) String source,
+                             @RequestParam(defaultValue = "template") String mode,
+                             RedirectAttributes redirectAttributes) {
         try {
             if (name == null || name.trim().isEmpty()) {
                 redirectAttributes.addFlashAttribute("error", getMessage("validation.name.required"));
@@ -686,7 +882,21 @@ public class WebController {
                 redirectAttributes.addFlashAttribute("error", getMessage("repo.exists", normalizedName));
                 return "redirect:/admin/create";
             }
-            repositoryService.createRepository(name);
+            if (source != null && !source.trim().isEmpty()) {
+                String sourceName = repositoryService.normalizeRepositoryName(source);
+                if (!repositoryService.repositoryExists(sourceName)) {
+                    redirectAttributes.addFlashAttribute("error", getMessage("repo.not.found", sourceName));
+                    return "redirect:/admin/create";
+                }
+                if ("fork".equals(mode)) {
+                    objectPoolService.fork(sourceName, name);
+                } else {
+                    objectPoolService.createFromTemplate(sourceName, name);
+                }
+            } else {
+                repositoryService.createRepository(name);
+                sizeTracker.refresh(normalizedName);
+            }
             redirectAttributes.addFlashAttribute("success", getMessage("repo.created", normalizedName));
             return "redirect:/admin";
         } catch (Exception e) {
@@ -703,6 +913,8 @@ public class WebController {
     public String repoDetail(@PathVariable String name,
                              @RequestParam(value = "branch", required = false) String branch,
                              @RequestParam(value = "path", required = false) String path,
+                             @RequestParam(value = "filter", required = false) String filter,
+                             @RequestParam(value = "offset", defaultValue = "0") int offset,
                              @RequestParam(value = "debug", required = false) boolean debug,
                              Model model,
                              HttpServletRequest request) {
@@ -719,15 +931,20 @@ public class WebController {
             model.addAttribute("repoName", normalizedName);
             model.addAttribute("repoPath", repoDir.getAbsolutePath());
             model.addAttribute("cloneUrl", getCloneUrl(normalizedName, request));
-            long repoSize = getDirectorySize(repoDir);
+            boolean publicRepo = repositoryService.isPublicRepository(normalizedName);
+            model.addAttribute("publicRepo", publicRepo);
+            if (publicRepo && vcsProperties.getDaemon().isEnabled()) {
+                model.addAttribute("daemonUrl", getDaemonUrl(normalizedName, request));
+            }
+            long repoSize = sizeTracker.getSize(normalizedName);
             model.addAttribute("repoSize", repoSize);
-            model.addAttribute("repoSizeFormatted", formatBytes(repoSize));
+            model.addAttribute("repoSizeFormatted", formatSize(repoSize));
 
             boolean isEmpty;
             try {
                 // Force refresh repository status.
-                try (Git git = Git.open(repoDir)) {
-                    git.getRepository().getRefDatabase().refresh();
+                try (Repository repository = repositoryService.openRepository(normalizedName)) {
+                    repository.getRefDatabase().refresh();
                 }
                 isEmpty = gitRepositoryService.isEmptyRepository(repoDir);
             } catch (Exception e) {
@@ -801,8 +1018,11 @@ public class WebController {
                     }
 
                     try {
-                        List<GitRepositoryService.FileInfo> files = gitRepositoryService.getFileList(repoDir, currentBranch, path);
-                        model.addAttribute("files", files);
+                        GitRepositoryService.FilePage filePage = gitRepositoryService.getFilePage(
+                                repoDir, currentBranch, path, filter, offset, FILE_PAGE_SIZE);
+                        model.addAttribute("files", filePage.getFiles());
+                        model.addAttribute("filePage", filePage);
+                        model.addAttribute("filter", filter != null ? filter.trim() : "");
                     } catch (Exception e) {
                         if (model.getAttribute("gitError") == null) {
                             model.addAttribute("gitError", "Failed to load file list: " + e.getMessage());
@@ -848,6 +1068,10 @@ public class WebController {
             model.addAttribute("totalSpace", formatBytes(storageDir.getTotalSpace()));
             model.addAttribute("freeSpace", formatBytes(storageDir.getFreeSpace()));
             model.addAttribute("usedSpace", formatBytes(storageDir.getTotalSpace() - storageDir.getFreeSpace()));
+            model.addAttribute("storageLayout", vcsProperties.getStorage().getLayout().name().toLowerCase(Locale.ROOT));
+            model.addAttribute("migration", layoutMigrator.getStatus());
+            model.addAttribute("refFormat", vcsProperties.getStorage().getRefFormat().name().toLowerCase(Locale.ROOT));
+            model.addAttribute("refConversion", refStorageConverter.getStatus());
             return "admin/system";
         } catch (Exception e) {
             logger.error("Failed to load system info", e);
@@ -856,6 +1080,32 @@ public class WebController {
         }
     }
 
+    /**
+     * Start moving repositories to the configured storage layout.
+     */
+    @PostMapping("/admin/system/migrate-layout")
+    public String migrateLayout(RedirectAttributes redirectAttributes) {
+        if (layoutMigrator.start()) {
+            redirectAttributes.addFlashAttribute("success", getMessage("system.migration.started"));
+        } else {
+            redirectAttributes.addFlashAttribute("error", getMessage("system.migration.already.running"));
+        }
+        return "redirect:/admin/system";
+    }
+
+    /**
+     * Start converting every repository to the configured ref storage.
+     */
+    @PostMapping("/admin/system/convert-refs")
+    public String convertRefs(RedirectAttributes redirectAttributes) {
+        if (refStorageConverter.start()) {
+            redirectAttributes.addFlashAttribute("success", getMessage("system.refs.started"));
+        } else {
+            redirectAttributes.addFlashAttribute("error", getMessage("system.refs.already.running"));
+        }
+        return "redirect:/admin/system";
+    }
+
     /**
      * Get localized message.
      */
@@ -949,20 +1199,18 @@ public class WebController {
     }
 
     /**
-     * Calculate directory size.
+     * Build the git:// clone URL.
      */
-    private long getDirectorySize(File directory) {
-        long size = 0;
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) size += file.length();
-                    else if (file.isDirectory()) size += getDirectorySize(file);
-                }
-            }
-        }
-        return size;
+    private String getDaemonUrl(String repoName, HttpServletRequest request) {
+        int port = vcsProperties.getDaemon().getPort();
+        return "git://" + request.getServerName() + (port == 9418 ? "" : ":" + port) + "/" + repoName;
+    }
+
+    /**
+     * Format a tracked repository size; unknown sizes are still being measured.
+     */
+    private String formatSize(long bytes) {
+        return bytes == RepositorySizeTracker.UNKNOWN ? getMessage("ui.repo.size.pending") : formatBytes(bytes);
     }
 
     /**
@@ -0,0 +1,34 @@
+package com.minigit.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Git LFS batch API request body.
+ */
+public class LfsBatchRequest {
+
+    private String operation;
+    private List<String> transfers = new ArrayList<>();
+    private List<LfsObject> objects = new ArrayList<>();
+
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+    public List<String> getTransfers() { return transfers; }
+    public void setTransfers(List<String> transfers) { this.transfers = transfers; }
+    public List<LfsObject> getObjects() { return objects; }
+    public void setObjects(List<LfsObject> objects) { this.objects = objects; }
+
+    /**
+     * Object identifier as sent by the client.
+     */
+    public static class LfsObject {
+        private String oid;
+        private long size;
+
+        public String getOid() { return oid; }
+        public void setOid(String oid) { this.oid = oid; }
+        public long getSize() { return size; }
+        public void setSize(long size) { this.size = size; }
+    }
+}
@@ -0,0 +1,102 @@
+package com.minigit.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Git LFS batch API response body.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LfsBatchResponse {
+
+    private String transfer = "basic";
+    private List<ObjectResult> objects = new ArrayList<>();
+
+    public String getTransfer() { return transfer; }
+    public void setTransfer(String transfer) { this.transfer = transfer; }
+    public List<ObjectResult> getObjects() { return objects; }
+    public void setObjects(List<ObjectResult> objects) { this.objects = objects; }
+
+    /**
+     * Per-object result: either actions to perform or an error.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ObjectResult {
+        private String oid;
+        private long size;
+        private Boolean authenticated;
+        private Map<String, Action> actions;
+        private ObjectError error;
+
+        public ObjectResult() {
+        }
+
+        public ObjectResult(String oid, long size) {
+            this.oid = oid;
+            this.size = size;
+        }
+
+        public String getOid() { return oid; }
+        public void setOid(String oid) { this.oid = oid; }
+        public long getSize() { return size; }
+        public void setSize(long size) { this.size = size; }
+        public Boolean getAuthenticated() { return authenticated; }
+        public void setAuthenticated(Boolean authenticated) { this.authenticated = authenticated; }
+        public Map<String, Action> getActions() { return actions; }
+        public void setActions(Map<String, Action> actions) { this.actions = actions; }
+        public ObjectError getError() { return error; }
+        public void setError(ObjectError error) { this.error = error; }
+
+        public void addAction(String name, Action action) {
+            if (actions == null) actions = new LinkedHashMap<>();
+            actions.put(name, action);
+        }
+    }
+
+    /**
+     * Transfer action (download/upload) for the basic adapter.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Action {
+        private String href;
+        private Map<String, String> header;
+
+        public Action() {
+        }
+
+        public Action(String href, Map<String, String> header) {
+            this.href = href;
+            this.header = header;
+        }
+
+        public String getHref() { return href; }
+        public void setHref(String href) { this.href = href; }
+        public Map<String, String> getHeader() { return header; }
+        public void setHeader(Map<String, String> header) { this.header = header; }
+    }
+
+    /**
+     * Per-object error.
+     */
+    public static class ObjectError {
+        private int code;
+        private String message;
+
+        public ObjectError() {
+        }
+
+        public ObjectError(int code, String message) {
+            this.code = code;
+            this.message = message;
+        }
+
+        public int getCode() { return code; }
+        public void setCode(int code) { this.code = code; }
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+    }
+}
@@ -1,12 +1,20 @@
 package com.minigit.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Repository response DTO.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class RepositoryResponse {
 
     private String name;
 
+    /**
+     * Size on disk in bytes; omitted while not yet measured.
+     */
+    private Long size;
+
     public RepositoryResponse() {
     }
 
@@ -14,6 +22,11 @@ public class RepositoryResponse {
         this.name = name;
     }
 
+    public RepositoryResponse(String name, Long size) {
+        this.name = name;
+        this.size = size;
+    }
+
     public String getName() {
         return name;
     }
@@ -21,4 +34,12 @@ public class RepositoryResponse {
     public void setName(String name) {
         this.name = name;
     }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
 }
@@ -1,9 +1,15 @@
 package com.minigit.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 /**
  * Represents a public file share link with optional expiry and password protection.
+ * An archive link shares a zip / tar.gz snapshot of a directory instead of a single file.
+ * A pinned link serves the blob the file had when the link was created, whatever the
+ * branch points at later.
  */
 public class ShareLink {
 
@@ -15,11 +21,28 @@ public class ShareLink {
     private final LocalDateTime createdAt;
     private final LocalDateTime expiresAt; // null = never expires
     private final String passwordHash;     // SHA-256 hex; null = no password
+    private final String archiveFormat;    // "zip" / "tar.gz"; null = single file
+    private final String objectId;         // pinned blob id; null = follows the branch
+    private final long createdAtMillis;
+    private final long expiresAtMillis;    // Long.MAX_VALUE = never expires
     private volatile boolean active;
+    private final ShareLinkStats stats = new ShareLinkStats();
 
     public ShareLink(String token, String repoName, String filePath, String branch,
                      String fileName, LocalDateTime createdAt, LocalDateTime expiresAt,
                      String passwordHash) {
+        this(token, repoName, filePath, branch, fileName, createdAt, expiresAt, passwordHash, null);
+    }
+
+    public ShareLink(String token, String repoName, String filePath, String branch,
+                     String fileName, LocalDateTime createdAt, LocalDateTime expiresAt,
+                     String passwordHash, String archiveFormat) {
+        this(token, repoName, filePath, branch, fileName, createdAt, expiresAt, passwordHash, archiveFormat, null);
+    }
+
+    public ShareLink(String token, String repoName, String filePath, String branch,
+                     String fileName, LocalDateTime createdAt, LocalDateTime expiresAt,
+                     String passwordHash, String archiveFormat, String objectId) {
         this.token = token;
         this.repoName = repoName;
         this.filePath = filePath;
@@ -28,6 +51,11 @@ public class ShareLink {
         this.createdAt = createdAt;
         this.expiresAt = expiresAt;
         this.passwordHash = passwordHash;
+        this.archiveFormat = archiveFormat;
+        this.objectId = objectId;
+        this.createdAtMillis = createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.expiresAtMillis = expiresAt != null
+                ? expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MAX_VALUE;
         this.active = true;
     }
 
@@ -39,12 +67,27 @@ public class ShareLink {
     public LocalDateTime getCreatedAt() { return createdAt; }
     public LocalDateTime getExpiresAt() { return expiresAt; }
     public String getPasswordHash() { return passwordHash; }
+    public String getArchiveFormat() { return archiveFormat; }
+    public String getObjectId() { return objectId; }
+    public ShareLinkStats getStats() { return stats; }
     public boolean isActive() { return active; }
     public void setActive(boolean active) { this.active = active; }
+    @JsonIgnore public long getCreatedAtMillis() { return createdAtMillis; }
+    @JsonIgnore public long getExpiresAtMillis() { return expiresAtMillis; }
+
+    /** Returns true if the link shares an archive of a directory rather than a file. */
+    public boolean isArchive() {
+        return archiveFormat != null;
+    }
+
+    /** Returns true if the link serves a fixed blob rather than the branch's current file. */
+    public boolean isPinned() {
+        return objectId != null;
+    }
 
     /** Returns true if the link has a configured expiry that has already passed. */
     public boolean isExpired() {
-        return expiresAt != null && LocalDateTime.now().isAfter(expiresAt);
+        return System.currentTimeMillis() > expiresAtMillis;
     }
 
     /** Returns true if the link is active AND not expired. */
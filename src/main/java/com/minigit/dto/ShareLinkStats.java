@@ -0,0 +1,98 @@
+package com.minigit.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access counters of a share link. Recording an access only adds to striped counters and
+ * writes a volatile field, so concurrent requests for the same link never wait on a lock;
+ * the totals are read when they are saved or listed.
+ */
+public class ShareLinkStats {
+
+    private final LongAdder views = new LongAdder();
+    private final LongAdder rawHits = new LongAdder();
+    private final LongAdder downloads = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    private volatile long lastAccessedMillis;
+    private volatile boolean dirty;
+
+    /** A view of the share page. */
+    public void recordView() {
+        views.increment();
+        touch();
+    }
+
+    /** Inline content served, e.g. to an Office renderer. */
+    public void recordRaw(long bytes) {
+        rawHits.increment();
+        bytesServed.add(bytes);
+        touch();
+    }
+
+    /** A file or archive download. */
+    public void recordDownload(long bytes) {
+        downloads.increment();
+        bytesServed.add(bytes);
+        touch();
+    }
+
+    /** Bytes sent by a streamed response, whether or not it completed. */
+    public void addBytes(long bytes) {
+        bytesServed.add(bytes);
+        if (!dirty) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Set totals read back from storage.
+     */
+    public void restore(long views, long rawHits, long downloads, long bytesServed, long lastAccessedMillis) {
+        this.views.reset();
+        this.views.add(views);
+        this.rawHits.reset();
+        this.rawHits.add(rawHits);
+        this.downloads.reset();
+        this.downloads.add(downloads);
+        this.bytesServed.reset();
+        this.bytesServed.add(bytesServed);
+        this.lastAccessedMillis = lastAccessedMillis;
+    }
+
+    /**
+     * Whether anything was recorded since the last call; accesses racing with it mark the
+     * counters changed again, so none is missed by the next save.
+     */
+    public boolean takeChanged() {
+        if (!dirty) {
+            return false;
+        }
+        dirty = false;
+        return true;
+    }
+
+    public long getViews() { return views.sum(); }
+    public long getRawHits() { return rawHits.sum(); }
+    public long getDownloads() { return downloads.sum(); }
+    public long getBytesServed() { return bytesServed.sum(); }
+    @JsonIgnore public long getLastAccessedMillis() { return lastAccessedMillis; }
+
+    /** Time of the last access; null if never accessed. */
+    public LocalDateTime getLastAccessedAt() {
+        long millis = lastAccessedMillis;
+        return millis != 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+
+    private void touch() {
+        lastAccessedMillis = System.currentTimeMillis();
+        if (!dirty) {
+            // Only the first access after a save writes the flag.
+            dirty = true;
+        }
+    }
+}
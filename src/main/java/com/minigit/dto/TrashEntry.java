@@ -0,0 +1,31 @@
+package com.minigit.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A deleted repository waiting in the trash for its disk space to be reclaimed.
+ */
+public class TrashEntry {
+
+    private final String id;
+    private final String repoName;
+    private final LocalDateTime deletedAt;
+    private final LocalDateTime purgeAfter;
+
+    public TrashEntry(String id, String repoName, LocalDateTime deletedAt, LocalDateTime purgeAfter) {
+        this.id = id;
+        this.repoName = repoName;
+        this.deletedAt = deletedAt;
+        this.purgeAfter = purgeAfter;
+    }
+
+    public String getId() { return id; }
+    public String getRepoName() { return repoName; }
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public LocalDateTime getPurgeAfter() { return purgeAfter; }
+
+    /** Returns true once the undo window has passed and the reaper may reclaim the entry. */
+    public boolean isPurgeable() {
+        return !LocalDateTime.now().isBefore(purgeAfter);
+    }
+}
@@ -1,9 +1,9 @@
 package com.minigit.git;
 
+import com.minigit.service.RepositoryCacheManager;
 import com.minigit.service.RepositoryService;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.ServiceMayNotContinueException;
 import org.eclipse.jgit.transport.resolver.RepositoryResolver;
 import org.eclipse.jgit.transport.resolver.ServiceNotAuthorizedException;
@@ -13,7 +13,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.File;
 import java.io.IOException;
 import java.security.Principal;
 
@@ -28,10 +27,13 @@ public class CustomRepositoryResolver implements RepositoryResolver<HttpServletR
 
     private final RepositoryService repositoryService;
     private final GitAccessLogger gitAccessLogger;
+    private final RepositoryCacheManager repositoryCacheManager;
 
-    public CustomRepositoryResolver(RepositoryService repositoryService, GitAccessLogger gitAccessLogger) {
+    public CustomRepositoryResolver(RepositoryService repositoryService, GitAccessLogger gitAccessLogger,
+                                    RepositoryCacheManager repositoryCacheManager) {
         this.repositoryService = repositoryService;
         this.gitAccessLogger = gitAccessLogger;
+        this.repositoryCacheManager = repositoryCacheManager;
     }
 
     @Override
@@ -56,18 +58,12 @@ public class CustomRepositoryResolver implements RepositoryResolver<HttpServletR
                 throw new RepositoryNotFoundException(normalizedName);
             }
             
-            // Resolve repository path.
-            File repoDir = repositoryService.getRepositoryPath(normalizedName);
-            
-            // Build and open the repository.
-            FileRepositoryBuilder builder = new FileRepositoryBuilder();
-            Repository repository = builder
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build();
+            // Open through the shared repository cache.
+            Repository repository = repositoryService.openRepository(normalizedName);
+            repositoryCacheManager.recordAccess(normalizedName);
             
             success = true;
-            logger.debug("Successfully opened repository: {}", repoDir.getAbsolutePath());
+            logger.debug("Successfully opened repository: {}", repository.getDirectory().getAbsolutePath());
             return repository;
             
         } catch (IOException e) {
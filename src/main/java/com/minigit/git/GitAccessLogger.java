@@ -34,6 +34,22 @@ public class GitAccessLogger {
         }
     }
 
+    /**
+     * Record a Git operation received over the git:// daemon.
+     */
+    public void logDaemonOperation(String clientIp, String repository, String operation, boolean success, long duration) {
+        String logMessage = String.format(
+            "OPERATION=%s REPO=%s USER=%s IP=%s SUCCESS=%s DURATION=%dms USER_AGENT=%s",
+            operation, repository, "anonymous", clientIp, success, duration, "git-daemon"
+        );
+
+        if (success) {
+            logger.info(logMessage);
+        } else {
+            logger.warn(logMessage);
+        }
+    }
+
     /**
      * Get client IP address.
      */
@@ -0,0 +1,294 @@
+package com.minigit.git;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.RepositoryCacheManager;
+import com.minigit.service.RepositoryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PacketLineIn;
+import org.eclipse.jgit.transport.PacketLineOut;
+import org.eclipse.jgit.transport.UploadPack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anonymous, read-only git:// listener for repositories marked public.
+ * Repositories are opened through {@link RepositoryService} and fetches are served
+ * by the same {@link GitUploadPackFactory} as the Smart HTTP servlet; push is disabled.
+ * Connections are accepted here rather than by JGit's {@code Daemon}, which starts a thread per
+ * socket, so that every open connection counts against {@code vcs.daemon.max-connections}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vcs.daemon", name = "enabled", havingValue = "true")
+public class GitDaemon {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitDaemon.class);
+
+    private static final String UPLOAD_PACK = "git-upload-pack ";
+    private static final int BACKLOG = 5;
+
+    private final VcsProperties vcsProperties;
+    private final RepositoryService repositoryService;
+    private final GitUploadPackFactory uploadPackFactory;
+    private final GitAccessLogger gitAccessLogger;
+    private final RepositoryCacheManager repositoryCacheManager;
+    private final Semaphore connections;
+
+    private final Counter acceptedConnections;
+    private final Counter rejectedConnections;
+    private final Counter deniedRequests;
+    private final Timer uploadTimer;
+
+    private final ExecutorService clients = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "git-daemon-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ServerSocket serverSocket;
+
+    public GitDaemon(VcsProperties vcsProperties,
+                     RepositoryService repositoryService,
+                     GitUploadPackFactory uploadPackFactory,
+                     GitAccessLogger gitAccessLogger,
+                     RepositoryCacheManager repositoryCacheManager,
+                     MeterRegistry meterRegistry) {
+        this.vcsProperties = vcsProperties;
+        this.repositoryService = repositoryService;
+        this.uploadPackFactory = uploadPackFactory;
+        this.gitAccessLogger = gitAccessLogger;
+        this.repositoryCacheManager = repositoryCacheManager;
+        int maxConnections = vcsProperties.getDaemon().getMaxConnections();
+        this.connections = new Semaphore(maxConnections);
+
+        this.acceptedConnections = Counter.builder("minigit.daemon.connections")
+                .tag("result", "accepted")
+                .description("git:// connections accepted")
+                .register(meterRegistry);
+        this.rejectedConnections = Counter.builder("minigit.daemon.connections")
+                .tag("result", "rejected")
+                .description("git:// connections turned away by the connection limit")
+                .register(meterRegistry);
+        this.deniedRequests = Counter.builder("minigit.daemon.connections")
+                .tag("result", "denied")
+                .description("git:// requests for missing or non-public repositories or other services")
+                .register(meterRegistry);
+        this.uploadTimer = Timer.builder("minigit.daemon.upload.duration")
+                .description("Time spent serving git:// fetches")
+                .register(meterRegistry);
+        Gauge.builder("minigit.daemon.connections.active", connections, s -> maxConnections - s.availablePermits())
+                .description("Open git:// connections")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        VcsProperties.Daemon config = vcsProperties.getDaemon();
+        InetSocketAddress address = config.getBindAddress() == null || config.getBindAddress().trim().isEmpty()
+                ? new InetSocketAddress(config.getPort())
+                : new InetSocketAddress(config.getBindAddress().trim(), config.getPort());
+
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address, BACKLOG);
+        Thread acceptor = new Thread(this::acceptLoop, "git-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        logger.info("git:// daemon listening on {} (max connections: {})", getAddress(), config.getMaxConnections());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close git:// listener: {}", e.getMessage());
+            }
+            clients.shutdownNow();
+            logger.info("git:// daemon stopped");
+        }
+    }
+
+    /**
+     * Address the daemon is listening on, with the actual port when port 0 was configured.
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * Accept connections; each one holds a permit from the moment it is accepted until it is
+     * closed, so clients that never send a request count against the limit too.
+     */
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Failed to accept git:// connection: {}", e.getMessage());
+                }
+                continue;
+            }
+            if (!connections.tryAcquire()) {
+                rejectedConnections.increment();
+                logger.warn("git:// connection limit reached, turning away {}", socket.getInetAddress().getHostAddress());
+                refuse(socket, "too many connections, try again later");
+                continue;
+            }
+            acceptedConnections.increment();
+            try {
+                clients.execute(() -> {
+                    try {
+                        serve(socket);
+                    } finally {
+                        connections.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                connections.release();
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Read the request line and serve it; only git-upload-pack is accepted.
+     */
+    private void serve(Socket socket) {
+        String clientIp = socket.getInetAddress().getHostAddress();
+        try (Socket s = socket) {
+            int timeout = (int) vcsProperties.getDaemon().getTimeout().getSeconds();
+            s.setSoTimeout(timeout * 1000);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+
+            String command = new PacketLineIn(in).readStringRaw();
+            Collection<String> extraParameters = null;
+            int nulnul = command.indexOf("\0\0");
+            if (nulnul != -1) {
+                extraParameters = Arrays.asList(command.substring(nulnul + 2).split("\0"));
+            }
+            int nul = command.indexOf('\0');
+            if (nul >= 0) {
+                // Newer clients send a host header behind the path; it is not used.
+                command = command.substring(0, nul);
+            }
+            if (!command.startsWith(UPLOAD_PACK)) {
+                deniedRequests.increment();
+                refuse(s, "service not enabled");
+                return;
+            }
+
+            // git://host/name.git is requested as "/name.git".
+            String name = command.substring(UPLOAD_PACK.length());
+            if (name.startsWith("/")) {
+                name = name.substring(1);
+            }
+            Repository repository;
+            try {
+                repository = openRepository(clientIp, name);
+            } catch (RepositoryNotFoundException e) {
+                refuse(s, "access denied or repository not exported: " + name);
+                return;
+            }
+            try (Repository db = repository) {
+                UploadPack uploadPack = uploadPackFactory.configure(new UploadPack(db));
+                uploadPack.setTimeout(timeout);
+                if (extraParameters != null) {
+                    uploadPack.setExtraParameters(extraParameters);
+                }
+                s.setSoTimeout(0);
+                long start = System.nanoTime();
+                try {
+                    uploadPack.upload(in, out, null);
+                } finally {
+                    uploadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("git:// connection from {} ended: {}", clientIp, e.getMessage());
+        }
+    }
+
+    /**
+     * Resolve a git:// path; only existing repositories marked public are served.
+     */
+    private Repository openRepository(String clientIp, String name) throws RepositoryNotFoundException {
+        long startTime = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            if (!repositoryService.isValidRepositoryName(name)) {
+                deniedRequests.increment();
+                throw new RepositoryNotFoundException(name);
+            }
+            String normalizedName = repositoryService.normalizeRepositoryName(name);
+            if (!repositoryService.repositoryExists(normalizedName)
+                    || !repositoryService.isPublicRepository(normalizedName)) {
+                // Private repositories are reported as missing, like git-daemon does.
+                deniedRequests.increment();
+                throw new RepositoryNotFoundException(normalizedName);
+            }
+            Repository repository = repositoryService.openRepository(normalizedName);
+            repositoryCacheManager.recordAccess(normalizedName);
+            success = true;
+            return repository;
+        } catch (RepositoryNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            logger.error("Failed to open repository for git:// client: {}", name, e);
+            throw new RepositoryNotFoundException(name, e);
+        } finally {
+            gitAccessLogger.logDaemonOperation(clientIp, name, "FETCH/CLONE", success,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Send an error the client shows as "remote error" and close the connection.
+     */
+    private static void refuse(Socket socket, String message) {
+        try (Socket s = socket) {
+            OutputStream out = s.getOutputStream();
+            new PacketLineOut(out).writeString("ERR " + message + "\n");
+            out.flush();
+        } catch (IOException e) {
+            // The client is gone already.
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to clean up.
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.minigit.git;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.minigit.config.VcsProperties;
+import com.minigit.dto.LfsBatchRequest;
+import com.minigit.dto.LfsBatchResponse;
+import com.minigit.service.LfsObjectStore;
+import com.minigit.service.RepositoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Git LFS batch API and basic transfer adapter, served under
+ * {@code /git/{repo}.git/info/lfs}. Requests reach this filter only after the
+ * Spring Security chain has authenticated them; everything else under
+ * {@code /git/*} is passed on to the GitServlet.
+ */
+public class GitLfsFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitLfsFilter.class);
+
+    static final String LFS_MEDIA_TYPE = "application/vnd.git-lfs+json";
+
+    private static final Pattern LFS_PATH = Pattern.compile("^/git/([^/]+?)(?:\\.git)?/info/lfs/(.+)$");
+    private static final String OBJECTS_PREFIX = "objects/";
+    private static final String BATCH_PATH = "objects/batch";
+
+    private final RepositoryService repositoryService;
+    private final LfsObjectStore objectStore;
+    private final ObjectMapper objectMapper;
+    private final VcsProperties vcsProperties;
+
+    public GitLfsFilter(RepositoryService repositoryService, LfsObjectStore objectStore, ObjectMapper objectMapper,
+                        VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.objectStore = objectStore;
+        this.objectMapper = objectMapper;
+        this.vcsProperties = vcsProperties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Matcher matcher = LFS_PATH.matcher(path);
+        if (!matcher.matches()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String repoName = repositoryService.normalizeRepositoryName(matcher.group(1));
+        if (!repositoryService.repositoryExists(repoName)) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Repository not found");
+            return;
+        }
+
+        String resource = matcher.group(2);
+        String method = request.getMethod();
+        if (BATCH_PATH.equals(resource) && "POST".equals(method)) {
+            handleBatch(repoName, request, response);
+        } else if (resource.startsWith(OBJECTS_PREFIX) && LfsObjectStore.isValidOid(resource.substring(OBJECTS_PREFIX.length()))) {
+            String oid = resource.substring(OBJECTS_PREFIX.length());
+            if ("GET".equals(method)) {
+                handleDownload(oid, request, response);
+            } else if ("PUT".equals(method)) {
+                handleUpload(repoName, oid, request, response);
+            } else {
+                sendError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed");
+            }
+        } else {
+            // Includes the locking API, which is not supported.
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Not found");
+        }
+    }
+
+    private void handleBatch(String repoName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        LfsBatchRequest batch;
+        try {
+            batch = objectMapper.readValue(request.getInputStream(), LfsBatchRequest.class);
+        } catch (IOException e) {
+            sendError(response, 422, "Malformed batch request");
+            return;
+        }
+        boolean upload = "upload".equals(batch.getOperation());
+        if (!upload && !"download".equals(batch.getOperation())) {
+            sendError(response, 422, "Unsupported operation: " + batch.getOperation());
+            return;
+        }
+        List<String> transfers = batch.getTransfers();
+        if (transfers != null && !transfers.isEmpty() && !transfers.contains("basic")) {
+            sendError(response, 422, "Only the basic transfer adapter is supported");
+            return;
+        }
+
+        // Object hrefs sit next to the batch endpoint, as seen by the client.
+        String requestUrl = request.getRequestURL().toString();
+        String objectsUrl = requestUrl.substring(0, requestUrl.length() - "batch".length());
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        long maxSize = maxObjectSize(repoName);
+
+        LfsBatchResponse result = new LfsBatchResponse();
+        List<LfsBatchRequest.LfsObject> objects =
+                batch.getObjects() != null ? batch.getObjects() : Collections.<LfsBatchRequest.LfsObject>emptyList();
+        for (LfsBatchRequest.LfsObject object : objects) {
+            LfsBatchResponse.ObjectResult item = new LfsBatchResponse.ObjectResult(object.getOid(), object.getSize());
+            if (!LfsObjectStore.isValidOid(object.getOid()) || object.getSize() < 0) {
+                item.setError(new LfsBatchResponse.ObjectError(422, "Invalid object"));
+            } else if (upload && object.getSize() > maxSize) {
+                item.setError(new LfsBatchResponse.ObjectError(413, tooLarge(maxSize)));
+            } else {
+                boolean present = objectStore.contains(object.getOid(), object.getSize());
+                if (upload) {
+                    // Objects already stored need no action.
+                    if (!present) {
+                        item.addAction("upload", action(objectsUrl + object.getOid(), authorization));
+                    }
+                } else if (present) {
+                    item.addAction("download", action(objectsUrl + object.getOid(), authorization));
+                } else {
+                    item.setError(new LfsBatchResponse.ObjectError(404, "Object does not exist"));
+                }
+                item.setAuthenticated(Boolean.TRUE);
+            }
+            result.getObjects().add(item);
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(LFS_MEDIA_TYPE);
+        objectMapper.writeValue(response.getOutputStream(), result);
+    }
+
+    private void handleDownload(String oid, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        File file = objectStore.getObjectFile(oid);
+        if (!file.isFile()) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Object does not exist");
+            return;
+        }
+
+        long length = file.length();
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        boolean partial = false;
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') < 0) {
+            long[] bounds = parseRange(range.substring("bytes=".length()), length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            partial = true;
+        }
+
+        response.setStatus(partial ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+        response.setContentType("application/octet-stream");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(end - start + 1);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private void handleUpload(String repoName, String oid, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long maxSize = maxObjectSize(repoName);
+        long length = request.getContentLengthLong();
+        if (length > maxSize) {
+            logger.warn("Rejected LFS upload {} to {}: {} bytes", oid, repoName, length);
+            sendError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, tooLarge(maxSize));
+            return;
+        }
+        try {
+            // Without a Content-Length the limit is enforced while the body streams in.
+            objectStore.store(oid, length, new LimitedInputStream(request.getInputStream(), maxSize));
+            logger.info("LFS object {} uploaded to {}", oid, repoName);
+            response.setStatus(HttpServletResponse.SC_OK);
+        } catch (ObjectTooLargeException e) {
+            logger.warn("Rejected LFS upload {} to {}: more than {} bytes", oid, repoName, maxSize);
+            sendError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, tooLarge(maxSize));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected LFS upload {} to {}: {}", oid, repoName, e.getMessage());
+            sendError(response, 422, e.getMessage());
+        }
+    }
+
+    /**
+     * The push object size limit of the repository, which LFS objects are held to as well.
+     */
+    private long maxObjectSize(String repoName) {
+        String name = repoName.endsWith(".git") ? repoName.substring(0, repoName.length() - 4) : repoName;
+        DataSize limit = vcsProperties.getReceive().maxObjectSizeFor(name);
+        return limit != null ? limit.toBytes() : Long.MAX_VALUE;
+    }
+
+    private static String tooLarge(long maxSize) {
+        return "Object exceeds the maximum size of " + maxSize + " bytes";
+    }
+
+    /**
+     * Parse a single byte range ({@code a-b}, {@code a-} or {@code -n}). Returns null when unsatisfiable.
+     */
+    static long[] parseRange(String spec, long length) {
+        int dash = spec.indexOf('-');
+        if (dash < 0 || length == 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start < 0 || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LfsBatchResponse.Action action(String href, String authorization) {
+        return new LfsBatchResponse.Action(href, authorization != null
+                ? Collections.singletonMap(HttpHeaders.AUTHORIZATION, authorization) : null);
+    }
+
+    private void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(LFS_MEDIA_TYPE);
+        objectMapper.writeValue(response.getOutputStream(), Collections.singletonMap("message", message));
+    }
+
+    /**
+     * Fails the upload once more than {@code limit} bytes have been read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws ObjectTooLargeException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new ObjectTooLargeException();
+            }
+        }
+    }
+
+    private static class ObjectTooLargeException extends IOException {
+    }
+}
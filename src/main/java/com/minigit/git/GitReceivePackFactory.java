@@ -0,0 +1,180 @@
+package com.minigit.git;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.RefStorageConverter;
+import com.minigit.service.RepositorySizeTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.errors.TooLargeObjectInPackException;
+import org.eclipse.jgit.errors.TooLargePackException;
+import org.eclipse.jgit.errors.UnpackException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PostReceiveHook;
+import org.eclipse.jgit.transport.PostReceiveHookChain;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.eclipse.jgit.transport.resolver.ReceivePackFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Creates the receive-pack (push) handler for Smart HTTP requests.
+ * Pack parsing and index writing happen inside JGit's PackParser; the
+ * object caches it relies on are sized by {@link com.minigit.config.GitConfig}.
+ * <p>
+ * The incoming pack is spooled straight to a temporary file in the repository,
+ * and the configured size limits are enforced while it streams in, so an
+ * oversized push is rejected without being written out in full.
+ * <p>
+ * A push holds the repository's ref update lock while it runs, so that a ref
+ * storage conversion never starts in the middle of it.
+ */
+@Component
+public class GitReceivePackFactory implements ReceivePackFactory<HttpServletRequest> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitReceivePackFactory.class);
+
+    private final KnownTipsConnectivityChecker connectivityChecker;
+    private final ReachableTipsCache reachableTipsCache;
+    private final VcsProperties vcsProperties;
+    private final RepositorySizeTracker sizeTracker;
+    private final RefStorageConverter refStorageConverter;
+    private final Counter rejectedPackBytes;
+    private final Counter rejectedObjectBytes;
+
+    public GitReceivePackFactory(KnownTipsConnectivityChecker connectivityChecker,
+                                 ReachableTipsCache reachableTipsCache,
+                                 VcsProperties vcsProperties,
+                                 RepositorySizeTracker sizeTracker,
+                                 RefStorageConverter refStorageConverter,
+                                 MeterRegistry meterRegistry) {
+        this.connectivityChecker = connectivityChecker;
+        this.reachableTipsCache = reachableTipsCache;
+        this.vcsProperties = vcsProperties;
+        this.sizeTracker = sizeTracker;
+        this.refStorageConverter = refStorageConverter;
+        this.rejectedPackBytes = Counter.builder("minigit.receive.rejected.bytes")
+                .tag("limit", "pack-size")
+                .baseUnit("bytes")
+                .description("Bytes received in pushes rejected for exceeding the pack size limit")
+                .register(meterRegistry);
+        this.rejectedObjectBytes = Counter.builder("minigit.receive.rejected.bytes")
+                .tag("limit", "object-size")
+                .baseUnit("bytes")
+                .description("Bytes received in pushes rejected for containing an oversized object")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ReceivePack create(HttpServletRequest req, Repository db) {
+        // Add push authorization checks here if needed.
+        ReceivePack receivePack = new SizeLimitedReceivePack(db);
+        // JGit only calls the connectivity checker when asked to verify what the pack references.
+        receivePack.setCheckReferencedObjectsAreReachable(true);
+        PostReceiveHook recordTips = (rp, commands) -> reachableTipsCache.recordPush(rp.getRepository(), commands);
+        PostReceiveHook recordSize = (rp, commands) -> {
+            try {
+                sizeTracker.recordPush(rp.getRepository(), rp.getPackSize());
+            } catch (IllegalStateException e) {
+                // No pack was sent (e.g. a push that only deletes refs).
+            }
+        };
+        receivePack.setPostReceiveHook(PostReceiveHookChain.newChain(Arrays.asList(recordTips, recordSize)));
+
+        String repoName = repositoryName(db);
+        DataSize maxPackSize = vcsProperties.getReceive().maxPackSizeFor(repoName);
+        DataSize maxObjectSize = vcsProperties.getReceive().maxObjectSizeFor(repoName);
+        if (maxPackSize != null) {
+            receivePack.setMaxPackSizeLimit(maxPackSize.toBytes());
+        }
+        if (maxObjectSize != null) {
+            receivePack.setMaxObjectSizeLimit(maxObjectSize.toBytes());
+        }
+        return receivePack;
+    }
+
+    private static String repositoryName(Repository db) {
+        String name = db.getDirectory() != null ? db.getDirectory().getName() : "";
+        return name.endsWith(".git") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    /**
+     * Receive-pack that records how much of a push was read before a size limit
+     * rejected it. JGit reports the limit to the client in the status report,
+     * which git prints as the remote's unpack error.
+     */
+    private class SizeLimitedReceivePack extends ReceivePack {
+
+        SizeLimitedReceivePack(Repository db) {
+            super(db);
+            // JGit 5.13 has no setter for the checker; subclasses assign the field.
+            this.connectivityChecker = GitReceivePackFactory.this.connectivityChecker;
+        }
+
+        @Override
+        public void receive(InputStream input, OutputStream output, OutputStream messages) throws IOException {
+            CountingInputStream counted = new CountingInputStream(input);
+            Lock refUpdateLock = refStorageConverter.refUpdateLock(repositoryName(getRepository()));
+            refUpdateLock.lock();
+            try {
+                File gitDir = getRepository().getDirectory();
+                if (gitDir != null && !gitDir.isDirectory()) {
+                    // Relocated to another shard while this push waited for the lock.
+                    throw new IOException("Repository was moved, retry the push");
+                }
+                super.receive(counted, output, messages);
+            } catch (UnpackException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof TooLargePackException) {
+                    rejectedPackBytes.increment(counted.count);
+                    logger.warn("Rejected push to {} after {} bytes: {}", repositoryName(getRepository()), counted.count, cause.getMessage());
+                } else if (cause instanceof TooLargeObjectInPackException) {
+                    rejectedObjectBytes.increment(counted.count);
+                    logger.warn("Rejected push to {} after {} bytes: {}", repositoryName(getRepository()), counted.count, cause.getMessage());
+                }
+                throw e;
+            } finally {
+                refUpdateLock.unlock();
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.minigit.git;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.UploadPack;
+import org.eclipse.jgit.transport.resolver.UploadPackFactory;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Creates the upload-pack (fetch/clone) handler. Shared by the Smart HTTP servlet
+ * and the git:// daemon so both transports serve fetches the same way.
+ */
+@Component
+public class GitUploadPackFactory implements UploadPackFactory<HttpServletRequest> {
+
+    @Override
+    public UploadPack create(HttpServletRequest req, Repository db) {
+        return configure(new UploadPack(db));
+    }
+
+    /**
+     * Apply the shared upload-pack settings to a handler created by another transport.
+     */
+    public <T extends UploadPack> T configure(T uploadPack) {
+        // Add fetch authorization checks and pack settings here if needed.
+        return uploadPack;
+    }
+}
@@ -0,0 +1,200 @@
+package com.minigit.git;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevBlob;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.transport.ConnectivityChecker;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connectivity checker that first tries to prove a push connected using a small set
+ * of known-reachable tips: the old values of the updated refs and the tips recently
+ * pushed to the repository (see {@link ReachableTipsCache}). Only when that walk
+ * runs into an object it cannot account for does it repeat the check against the
+ * full ref advertisement, which is what JGit does on every push by default.
+ * <p>
+ * The seeds are always a subset of the advertised haves, so a push accepted by the
+ * fast walk would also be accepted by the full one.
+ */
+@Component
+public class KnownTipsConnectivityChecker implements ConnectivityChecker {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownTipsConnectivityChecker.class);
+
+    private final ReachableTipsCache tipsCache;
+    private final Counter fastChecks;
+    private final Counter fullChecks;
+    private final Timer checkTimer;
+
+    public KnownTipsConnectivityChecker(ReachableTipsCache tipsCache, MeterRegistry meterRegistry) {
+        this.tipsCache = tipsCache;
+        this.fastChecks = Counter.builder("minigit.receive.connectivity.checks")
+                .tag("walk", "known-tips")
+                .description("Pushes proven connected from known tips only")
+                .register(meterRegistry);
+        this.fullChecks = Counter.builder("minigit.receive.connectivity.checks")
+                .tag("walk", "full")
+                .description("Pushes that needed the full ref advertisement")
+                .register(meterRegistry);
+        this.checkTimer = Timer.builder("minigit.receive.connectivity.duration")
+                .description("Time spent checking connectivity of received packs")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void checkConnectivity(ConnectivityCheckInfo info, Set<ObjectId> haves, ProgressMonitor pm)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            Set<ObjectId> seeds = selectSeeds(info, haves);
+            if (!seeds.isEmpty() && seeds.size() < haves.size()) {
+                try {
+                    walk(info, seeds, pm);
+                    fastChecks.increment();
+                    return;
+                } catch (MissingObjectException e) {
+                    logger.debug("Known-tip walk could not reach {}, falling back to full check", e.getObjectId());
+                }
+            }
+            walk(info, haves, pm);
+            fullChecks.increment();
+        } finally {
+            checkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Pick the advertised tips most likely to bound the new history.
+     */
+    private Set<ObjectId> selectSeeds(ConnectivityCheckInfo info, Set<ObjectId> haves) {
+        Set<ObjectId> seeds = new LinkedHashSet<>();
+        for (ReceiveCommand cmd : info.getCommands()) {
+            ObjectId oldId = cmd.getOldId();
+            if (!ObjectId.zeroId().equals(oldId) && haves.contains(oldId)) {
+                seeds.add(oldId);
+            }
+        }
+        for (ObjectId tip : tipsCache.getTips(info.getRepository())) {
+            if (haves.contains(tip)) {
+                seeds.add(tip);
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Walk from the pushed tips down to the uninteresting frontier, verifying that
+     * every object on the way was either sent in the pack or already present.
+     */
+    private void walk(ConnectivityCheckInfo info, Collection<ObjectId> uninteresting, ProgressMonitor pm)
+            throws IOException {
+        Repository db = info.getRepository();
+        ObjectIdSubclassMap<ObjectId> baseObjects = null;
+        ObjectIdSubclassMap<ObjectId> providedObjects = null;
+        if (info.isCheckObjects()) {
+            baseObjects = info.getParser().getBaseObjectIds();
+            providedObjects = info.getParser().getNewObjectIds();
+        }
+
+        try (ObjectWalk ow = new ObjectWalk(db)) {
+            if (baseObjects != null) {
+                ow.sort(RevSort.TOPO);
+                if (!baseObjects.isEmpty()) {
+                    ow.sort(RevSort.BOUNDARY, true);
+                }
+            }
+
+            boolean hasStart = false;
+            for (ReceiveCommand cmd : info.getCommands()) {
+                if (cmd.getResult() != ReceiveCommand.Result.NOT_ATTEMPTED
+                        || cmd.getType() == ReceiveCommand.Type.DELETE) {
+                    continue;
+                }
+                ow.markStart(ow.parseAny(cmd.getNewId()));
+                hasStart = true;
+            }
+            if (!hasStart) {
+                return;
+            }
+
+            for (ObjectId have : uninteresting) {
+                RevObject o;
+                try {
+                    o = ow.parseAny(have);
+                } catch (MissingObjectException e) {
+                    continue;
+                }
+                ow.markUninteresting(o);
+                if (baseObjects != null && !baseObjects.isEmpty()) {
+                    o = ow.peel(o);
+                    if (o instanceof RevCommit) {
+                        o = ((RevCommit) o).getTree();
+                    }
+                    if (o instanceof RevTree) {
+                        ow.markUninteresting(o);
+                    }
+                }
+            }
+
+            pm.beginTask("Checking connectivity", ProgressMonitor.UNKNOWN);
+            RevCommit c;
+            while ((c = ow.next()) != null) {
+                pm.update(1);
+                if (providedObjects != null
+                        && !c.has(RevFlag.UNINTERESTING)
+                        && !providedObjects.contains(c)) {
+                    throw new MissingObjectException(c, Constants.TYPE_COMMIT);
+                }
+            }
+
+            RevObject o;
+            while ((o = ow.nextObject()) != null) {
+                pm.update(1);
+                if (o.has(RevFlag.UNINTERESTING)) {
+                    continue;
+                }
+                if (providedObjects != null) {
+                    if (providedObjects.contains(o)) {
+                        continue;
+                    }
+                    throw new MissingObjectException(o, o.getType());
+                }
+                if (o instanceof RevBlob && !db.getObjectDatabase().has(o)) {
+                    throw new MissingObjectException(o, Constants.TYPE_BLOB);
+                }
+            }
+            pm.endTask();
+
+            if (baseObjects != null) {
+                for (ObjectId id : baseObjects) {
+                    o = ow.parseAny(id);
+                    if (!o.has(RevFlag.UNINTERESTING)) {
+                        throw new MissingObjectException(o, o.getType());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.minigit.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the most recently pushed tips per repository. A push usually builds on
+ * one of them, so they are a much smaller starting frontier for the connectivity
+ * walk than the full ref advertisement.
+ */
+@Component
+public class ReachableTipsCache {
+
+    static final int MAX_TIPS_PER_REPOSITORY = 16;
+
+    private final Map<String, LinkedHashSet<ObjectId>> tips = new ConcurrentHashMap<>();
+
+    /**
+     * Record the new ids of successfully applied commands.
+     */
+    public void recordPush(Repository db, Collection<ReceiveCommand> commands) {
+        LinkedHashSet<ObjectId> repoTips = tips.computeIfAbsent(keyOf(db), k -> new LinkedHashSet<>());
+        synchronized (repoTips) {
+            for (ReceiveCommand cmd : commands) {
+                if (cmd.getResult() != ReceiveCommand.Result.OK || cmd.getType() == ReceiveCommand.Type.DELETE) {
+                    continue;
+                }
+                ObjectId id = cmd.getNewId().copy();
+                // Re-insert so the newest tip moves to the end.
+                repoTips.remove(id);
+                repoTips.add(id);
+            }
+            Iterator<ObjectId> it = repoTips.iterator();
+            while (repoTips.size() > MAX_TIPS_PER_REPOSITORY && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Return the cached tips of a repository, newest last.
+     */
+    public List<ObjectId> getTips(Repository db) {
+        LinkedHashSet<ObjectId> repoTips = tips.get(keyOf(db));
+        if (repoTips == null) {
+            return Collections.emptyList();
+        }
+        synchronized (repoTips) {
+            return new ArrayList<>(repoTips);
+        }
+    }
+
+    private static String keyOf(Repository db) {
+        return db.getDirectory() != null ? db.getDirectory().getName() : String.valueOf(db);
+    }
+}
@@ -0,0 +1,274 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.archive.ArchiveFormats;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds zip / tar.gz snapshots of a tree with JGit's {@code ArchiveCommand}. The
+ * archive is streamed to the client while it is generated and written to an on-disk
+ * cache at the same time; archives are keyed by tree id, so every ref or commit that
+ * points at the same tree is served from one cached file. The cache is bounded and
+ * drops the least recently used archives first.
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveService.class);
+
+    private final RepositoryService repositoryService;
+    private final VcsProperties vcsProperties;
+    private final AtomicLong cacheBytes = new AtomicLong();
+    private File cacheDir;
+
+    public ArchiveService(RepositoryService repositoryService, VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.vcsProperties = vcsProperties;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        ArchiveFormats.registerAll();
+        cacheDir = vcsProperties.dataPath(vcsProperties.getArchive().getCacheDir(), "archive-cache");
+        Files.createDirectories(cacheDir.toPath());
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    // Left over from a download that was cut off.
+                    Files.deleteIfExists(file.toPath());
+                } else {
+                    cacheBytes.addAndGet(file.length());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ArchiveFormats.unregisterAll();
+    }
+
+    /**
+     * Resolve what an archive of {@code path} at {@code ref} contains.
+     * @param path directory inside the repository; empty for the whole tree
+     * @return archive description, or null if the ref or path does not exist
+     */
+    public Archive resolve(String repoName, String ref, String path, Format format) throws IOException {
+        String normalizedName = repositoryService.normalizeRepositoryName(repoName);
+        try (Repository repository = repositoryService.openRepository(normalizedName)) {
+            ObjectId commitId = repository.resolve(ref + "^{commit}");
+            if (commitId == null) {
+                return null;
+            }
+            try (RevWalk walk = new RevWalk(repository)) {
+                RevCommit commit = walk.parseCommit(commitId);
+                ObjectId treeId = commit.getTree().getId();
+                String dir = path == null ? "" : path.replaceAll("^/+|/+$", "");
+                if (!dir.isEmpty()) {
+                    try (TreeWalk treeWalk = TreeWalk.forPath(repository, dir, commit.getTree())) {
+                        if (treeWalk == null || !treeWalk.isSubtree()) {
+                            return null;
+                        }
+                        treeId = treeWalk.getObjectId(0);
+                    }
+                }
+                String base = normalizedName.substring(0, normalizedName.length() - ".git".length());
+                String name = base + "-" + ref.replaceAll("[^A-Za-z0-9._-]", "-")
+                        + (dir.isEmpty() ? "" : "-" + dir.replaceAll("[^A-Za-z0-9._-]", "-"));
+                return new Archive(normalizedName, treeId, format, base + "/", name + "." + format.getExtension());
+            }
+        }
+    }
+
+    /**
+     * Size of the cached archive, or -1 if it has not been generated yet.
+     */
+    public long cachedSize(Archive archive) {
+        File file = cacheFile(archive);
+        return file.isFile() ? file.length() : -1;
+    }
+
+    /**
+     * Write the archive to {@code out}, from the cache if possible.
+     */
+    public void write(Archive archive, OutputStream out) throws IOException {
+        File cached = cacheFile(archive);
+        if (cached.isFile()) {
+            cached.setLastModified(System.currentTimeMillis());
+            try {
+                Files.copy(cached.toPath(), out);
+                return;
+            } catch (NoSuchFileException e) {
+                // Evicted in the meantime; generate it again.
+            }
+        }
+        File temp = File.createTempFile(cached.getName(), ".tmp", cacheDir);
+        boolean complete = false;
+        try (OutputStream file = Files.newOutputStream(temp.toPath());
+             Repository repository = repositoryService.openRepository(archive.getRepoName());
+             Git git = new Git(repository)) {
+            git.archive()
+                    .setTree(archive.getTreeId())
+                    .setFormat(archive.getFormat().getJgitFormat())
+                    .setPrefix(archive.getPrefix())
+                    .setOutputStream(new TeeOutputStream(out, file))
+                    .call();
+            complete = true;
+        } catch (GitAPIException e) {
+            throw new IOException("Failed to create archive of " + archive.getRepoName(), e);
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+        long size = temp.length();
+        Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        cacheBytes.addAndGet(size);
+        evict();
+    }
+
+    /**
+     * Remove least recently used archives until the cache is within its size limit.
+     */
+    private synchronized void evict() {
+        long max = vcsProperties.getArchive().getCacheMaxSize().toBytes();
+        if (cacheBytes.get() <= max) {
+            return;
+        }
+        File[] files = cacheDir.listFiles((dir, name) -> !name.endsWith(".tmp"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long total = Arrays.stream(files).mapToLong(File::length).sum();
+        for (File file : files) {
+            if (total <= max) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+        cacheBytes.set(total);
+        logger.debug("Archive cache trimmed to {} bytes", total);
+    }
+
+    private File cacheFile(Archive archive) {
+        String prefix = archive.getPrefix().substring(0, archive.getPrefix().length() - 1);
+        return new File(cacheDir, archive.getTreeId().name() + "-" + prefix + "." + archive.getFormat().getExtension());
+    }
+
+    public enum Format {
+        ZIP("zip", "zip", "application/zip"),
+        TAR_GZ("tar.gz", "tgz", "application/gzip");
+
+        private final String extension;
+        private final String jgitFormat;
+        private final String contentType;
+
+        Format(String extension, String jgitFormat, String contentType) {
+            this.extension = extension;
+            this.jgitFormat = jgitFormat;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() { return extension; }
+        /** Name the format is registered under by {@code ArchiveFormats.registerAll()}. */
+        public String getJgitFormat() { return jgitFormat; }
+        public String getContentType() { return contentType; }
+
+        /**
+         * Format for a file name extension, or null if unsupported.
+         */
+        public static Format fromExtension(String extension) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(extension)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A tree to archive and how to name it.
+     */
+    public static class Archive {
+        private final String repoName;
+        private final ObjectId treeId;
+        private final Format format;
+        private final String prefix;
+        private final String fileName;
+
+        public Archive(String repoName, ObjectId treeId, Format format, String prefix, String fileName) {
+            this.repoName = repoName;
+            this.treeId = treeId;
+            this.format = format;
+            this.prefix = prefix;
+            this.fileName = fileName;
+        }
+
+        public String getRepoName() { return repoName; }
+        public ObjectId getTreeId() { return treeId; }
+        public Format getFormat() { return format; }
+        public String getPrefix() { return prefix; }
+        public String getFileName() { return fileName; }
+    }
+
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The caller owns both streams; the archive writer closing its output must not end the response.
+            flush();
+        }
+    }
+}
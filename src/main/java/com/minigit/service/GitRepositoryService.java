@@ -2,9 +2,9 @@ package com.minigit.service;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LogCommand;
-import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -13,10 +13,12 @@ import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Git repository operation service.
@@ -35,6 +38,38 @@ public class GitRepositoryService {
 
     private static final Logger logger = LoggerFactory.getLogger(GitRepositoryService.class);
 
+    // Commits examined per directory before the remaining entries are given up on.
+    static final int LAST_COMMIT_WALK_LIMIT = 20000;
+    private static final int LAST_COMMIT_CACHE_SIZE = 1000;
+
+    // Last commit per entry by "commit id:directory path"; a commit's history never changes.
+    private final Map<String, Map<String, CommitInfo>> lastCommitCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Map<String, CommitInfo>>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, CommitInfo>> eldest) {
+                    return size() > LAST_COMMIT_CACHE_SIZE;
+                }
+            });
+
+    private static final int DIRECTORY_CACHE_SIZE = 32;
+
+    // Sorted entries of a directory by tree id, so every page of one listing sees the same order.
+    private final Map<ObjectId, DirectoryEntry[]> directoryCache = Collections.synchronizedMap(
+            new LinkedHashMap<ObjectId, DirectoryEntry[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ObjectId, DirectoryEntry[]> eldest) {
+                    return size() > DIRECTORY_CACHE_SIZE;
+                }
+            });
+
+    private final RepositoryService repositoryService;
+    private final RefStorageConverter refStorageConverter;
+
+    public GitRepositoryService(RepositoryService repositoryService, RefStorageConverter refStorageConverter) {
+        this.repositoryService = repositoryService;
+        this.refStorageConverter = refStorageConverter;
+    }
+
     // -------- DTOs --------
 
     public static class CommitInfo {
@@ -66,6 +101,7 @@ public class GitRepositoryService {
         private String name;
         private String path;
         private String type; // "file" or "directory"
+        private String id;
         private long size;
         private String sizeFormatted;
 
@@ -75,12 +111,38 @@ public class GitRepositoryService {
         public void setPath(String path) { this.path = path; }
         public String getType() { return type; }
         public void setType(String type) { this.type = type; }
+        /** Blob or tree id. */
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
         public long getSize() { return size; }
         public void setSize(long size) { this.size = size; }
         public String getSizeFormatted() { return sizeFormatted; }
         public void setSizeFormatted(String sizeFormatted) { this.sizeFormatted = sizeFormatted; }
     }
 
+    /**
+     * One page of a directory listing.
+     */
+    public static class FilePage {
+        private List<FileInfo> files;
+        private int offset;
+        private int total;
+        private String commitId;
+
+        public List<FileInfo> getFiles() { return files; }
+        public void setFiles(List<FileInfo> files) { this.files = files; }
+        public int getOffset() { return offset; }
+        public void setOffset(int offset) { this.offset = offset; }
+        /** Entries matching the filter, across all pages. */
+        public int getTotal() { return total; }
+        public void setTotal(int total) { this.total = total; }
+        /** Commit listed; pass it as the branch for the next pages to keep them consistent. */
+        public String getCommitId() { return commitId; }
+        public void setCommitId(String commitId) { this.commitId = commitId; }
+        public boolean isHasMore() { return offset + files.size() < total; }
+        public int getNextOffset() { return offset + files.size(); }
+    }
+
     public static class BranchInfo {
         private String name;
         private String shortName;
@@ -137,10 +199,7 @@ public class GitRepositoryService {
             throw new IllegalArgumentException("File path must not point to repository root");
         }
 
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+        try (Repository repository = openRepository(repoDir)) {
 
             ObjectId branchId = resolveBranchObjectId(repository, branchName);
             if (branchId == null) {
@@ -159,6 +218,7 @@ public class GitRepositoryService {
                     FileInfo info = new FileInfo();
                     info.setName(treeWalk.getNameString());
                     info.setPath(normalizedPath);
+                    info.setId(treeWalk.getObjectId(0).name());
 
                     if (treeWalk.isSubtree()) {
                         info.setType("directory");
@@ -179,48 +239,129 @@ public class GitRepositoryService {
     }
 
     public byte[] getFileContent(File repoDir, String branchName, String path) throws Exception {
-        if (path == null || path.trim().isEmpty()) {
-            throw new IllegalArgumentException("File path must not be empty");
+        try (Repository repository = openRepository(repoDir)) {
+            return repository.open(resolveFileObjectId(repository, branchName, path), Constants.OBJ_BLOB).getBytes();
         }
-        String normalizedPath = normalizePath(path);
-        if (normalizedPath.isEmpty()) {
-            throw new IllegalArgumentException("File path must not point to repository root");
+    }
+
+    /**
+     * Id of the blob a file has on a branch, for links that should keep serving this version.
+     */
+    public String getFileObjectId(File repoDir, String branchName, String path) throws Exception {
+        try (Repository repository = openRepository(repoDir)) {
+            return resolveFileObjectId(repository, branchName, path).name();
         }
+    }
 
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+    /**
+     * Content of a blob by id. Blobs never change, so no branch or tree has to be read.
+     */
+    public byte[] getBlobContent(File repoDir, String objectId) throws Exception {
+        if (objectId == null || !ObjectId.isId(objectId)) {
+            throw new IllegalArgumentException("Invalid object id: " + objectId);
+        }
+        try (Repository repository = openRepository(repoDir)) {
+            return repository.open(ObjectId.fromString(objectId), Constants.OBJ_BLOB).getBytes();
+        }
+    }
 
-            ObjectId branchId = resolveBranchObjectId(repository, branchName);
-            if (branchId == null) {
-                throw new IllegalArgumentException("Branch not found: " + (branchName == null ? "(default)" : branchName));
+    /**
+     * The commit that last changed each entry of a directory, by entry name. A single walk
+     * back from the branch visits only commits touching the directory and stops once every
+     * entry is accounted for; results are cached per commit and directory.
+     */
+    public Map<String, CommitInfo> getLastCommits(File repoDir, String branchName, String path) throws Exception {
+        String normalizedPath = normalizePath(path);
+        try (Repository repository = openRepository(repoDir)) {
+            ObjectId startId = resolveBranchObjectId(repository, branchName);
+            if (startId == null) {
+                return Collections.emptyMap();
             }
+            String key = startId.name() + ":" + normalizedPath;
+            Map<String, CommitInfo> cached = lastCommitCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            Map<String, CommitInfo> result = Collections.unmodifiableMap(
+                    walkLastCommits(repository, startId, normalizedPath));
+            lastCommitCache.put(key, result);
+            return result;
+        }
+    }
 
-            try (RevWalk revWalk = new RevWalk(repository)) {
-                RevCommit commit = revWalk.parseCommit(branchId);
-                RevTree tree = commit.getTree();
-
-                try (TreeWalk treeWalk = TreeWalk.forPath(repository, normalizedPath, tree)) {
-                    if (treeWalk == null || treeWalk.isSubtree()) {
-                        throw new IllegalArgumentException("File not found or is a directory: " + path);
+    private Map<String, CommitInfo> walkLastCommits(Repository repository, ObjectId startId, String dirPath)
+            throws IOException {
+        Map<String, CommitInfo> found = new HashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            RevCommit start = revWalk.parseCommit(startId);
+            Map<String, ObjectId> remaining = listDirectory(repository, start, dirPath);
+            // Commits that do not touch the directory are skipped, and parents are rewritten past them.
+            revWalk.setTreeFilter(dirPath.isEmpty() ? TreeFilter.ANY_DIFF
+                    : AndTreeFilter.create(PathFilter.create(dirPath), TreeFilter.ANY_DIFF));
+            revWalk.markStart(start);
+            int examined = 0;
+            for (RevCommit commit : revWalk) {
+                if (remaining.isEmpty() || ++examined > LAST_COMMIT_WALK_LIMIT) {
+                    break;
+                }
+                Map<String, ObjectId> current = listDirectory(repository, commit, dirPath);
+                List<Map<String, ObjectId>> parents = new ArrayList<>(commit.getParentCount());
+                for (RevCommit parent : commit.getParents()) {
+                    revWalk.parseHeaders(parent);
+                    parents.add(listDirectory(repository, parent, dirPath));
+                }
+                Iterator<Map.Entry<String, ObjectId>> it = remaining.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, ObjectId> entry = it.next();
+                    ObjectId id = current.get(entry.getKey());
+                    if (id == null) {
+                        continue;
+                    }
+                    boolean changed = true;
+                    for (Map<String, ObjectId> parent : parents) {
+                        if (id.equals(parent.get(entry.getKey()))) {
+                            changed = false;
+                            break;
+                        }
+                    }
+                    if (changed) {
+                        found.put(entry.getKey(), toCommitInfo(commit));
+                        it.remove();
                     }
+                }
+            }
+        }
+        return found;
+    }
 
-                    ObjectLoader loader = repository.open(treeWalk.getObjectId(0));
-                    return loader.getBytes();
+    /** Entry ids of a directory in a commit, by name; empty if the directory does not exist there. */
+    private Map<String, ObjectId> listDirectory(Repository repository, RevCommit commit, String dirPath)
+            throws IOException {
+        Map<String, ObjectId> entries = new HashMap<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            if (dirPath.isEmpty()) {
+                treeWalk.addTree(commit.getTree());
+            } else {
+                try (TreeWalk dirWalk = TreeWalk.forPath(repository, dirPath, commit.getTree())) {
+                    if (dirWalk == null || !dirWalk.isSubtree()) {
+                        return entries;
+                    }
+                    treeWalk.addTree(dirWalk.getObjectId(0));
                 }
             }
+            treeWalk.setRecursive(false);
+            while (treeWalk.next()) {
+                entries.put(treeWalk.getNameString(), treeWalk.getObjectId(0));
+            }
         }
+        return entries;
     }
 
     public CommitDetail getCommitDetail(File repoDir, String commitId) throws Exception {
         if (commitId == null || commitId.trim().isEmpty()) {
             throw new IllegalArgumentException("Commit ID must not be empty");
         }
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+        try (Repository repository = openRepository(repoDir)) {
 
             ObjectId commitObjectId = repository.resolve(commitId);
             if (commitObjectId == null) {
@@ -281,10 +422,7 @@ public class GitRepositoryService {
 
     public List<CommitInfo> getCommitLog(File repoDir, int maxCount) throws Exception {
         List<CommitInfo> commits = new ArrayList<>();
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+        try (Repository repository = openRepository(repoDir)) {
             try (Git git = new Git(repository)) {
                 Ref head = repository.exactRef("HEAD");
                 if (head == null || head.getObjectId() == null) {
@@ -300,17 +438,30 @@ public class GitRepositoryService {
     }
 
     public List<CommitInfo> getCommitLog(File repoDir, String branchName, int maxCount) throws Exception {
+        return getCommitLog(repoDir, branchName, null, 0, maxCount);
+    }
+
+    /**
+     * Commits of a branch, newest first, optionally only those changing a path.
+     * @param skip commits to leave out from the start, for paging
+     */
+    public List<CommitInfo> getCommitLog(File repoDir, String branchName, String path, int skip, int maxCount)
+            throws Exception {
         List<CommitInfo> commits = new ArrayList<>();
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+        try (Repository repository = openRepository(repoDir)) {
             try (Git git = new Git(repository)) {
                 ObjectId startId = resolveBranchObjectId(repository, branchName);
                 if (startId == null) {
                     return commits;
                 }
                 LogCommand lc = git.log().add(startId).setMaxCount(maxCount);
+                if (skip > 0) {
+                    lc.setSkip(skip);
+                }
+                String normalizedPath = normalizePath(path);
+                if (!normalizedPath.isEmpty()) {
+                    lc.addPath(normalizedPath);
+                }
                 for (RevCommit commit : lc.call()) {
                     commits.add(toCommitInfo(commit));
                 }
@@ -321,15 +472,12 @@ public class GitRepositoryService {
 
     public List<BranchInfo> getBranches(File repoDir) throws Exception {
         List<BranchInfo> branches = new ArrayList<>();
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+        try (Repository repository = openRepository(repoDir)) {
             try (Git git = new Git(repository)) {
-                List<Ref> localRefs = git.branchList().setListMode(ListBranchCommand.ListMode.ALL).call();
+                // A prefix scan, so tags and other refs are never read.
+                List<Ref> localRefs = repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS);
                 String defaultBranch = getDefaultBranch(repository);
                 for (Ref ref : localRefs) {
-                    if (!ref.getName().startsWith("refs/heads/")) continue;
                     BranchInfo info = new BranchInfo();
                     info.setName(ref.getName());
                     info.setShortName(Repository.shortenRefName(ref.getName()));
@@ -355,85 +503,130 @@ public class GitRepositoryService {
     }
 
     public List<FileInfo> getFileList(File repoDir, String branchName, String path) throws Exception {
-        List<FileInfo> files = new ArrayList<>();
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build()) {
+        return getFilePage(repoDir, branchName, path, null, 0, Integer.MAX_VALUE).getFiles();
+    }
 
+    /**
+     * A page of a directory's entries, directories first and then by name ignoring case.
+     * Only the entries of the page are turned into {@link FileInfo} and have their size
+     * read, so a page of a directory with tens of thousands of files stays cheap; the
+     * sorted names are cached by tree id for the following pages.
+     * @param filter case-insensitive part of the name; null or empty for all entries
+     */
+    public FilePage getFilePage(File repoDir, String branchName, String path, String filter,
+                                int offset, int limit) throws Exception {
+        FilePage page = new FilePage();
+        page.setFiles(new ArrayList<>());
+        page.setOffset(Math.max(0, offset));
+        try (Repository repository = openRepository(repoDir)) {
             ObjectId branchId = resolveBranchObjectId(repository, branchName);
             if (branchId == null) {
-                return files;
+                return page;
             }
-
+            String normalizedPath = normalizePath(path);
+            ObjectId treeId;
             try (RevWalk revWalk = new RevWalk(repository)) {
                 RevCommit commit = revWalk.parseCommit(branchId);
-                RevTree tree = commit.getTree();
-
-                String normalizedPath = normalizePath(path);
-                try (TreeWalk treeWalk = new TreeWalk(repository)) {
-                    if (!normalizedPath.isEmpty()) {
-                        try (TreeWalk dirWalk = TreeWalk.forPath(repository, normalizedPath, tree)) {
-                            if (dirWalk == null || !dirWalk.isSubtree()) {
-                                return files;
-                            }
-                            treeWalk.addTree(dirWalk.getObjectId(0));
+                page.setCommitId(commit.name());
+                if (normalizedPath.isEmpty()) {
+                    treeId = commit.getTree().copy();
+                } else {
+                    try (TreeWalk dirWalk = TreeWalk.forPath(repository, normalizedPath, commit.getTree())) {
+                        if (dirWalk == null || !dirWalk.isSubtree()) {
+                            return page;
                         }
-                    } else {
-                        treeWalk.addTree(tree);
+                        treeId = dirWalk.getObjectId(0);
                     }
-                    treeWalk.setRecursive(false);
-
-                    while (treeWalk.next()) {
-                        FileInfo info = new FileInfo();
-                        info.setName(treeWalk.getNameString());
-                        String filePath = treeWalk.getPathString();
-                        if (!normalizedPath.isEmpty()) {
-                            filePath = normalizedPath + "/" + treeWalk.getNameString();
-                        }
-                        info.setPath(filePath);
-                        boolean isDirectory = treeWalk.isSubtree();
-                        info.setType(isDirectory ? "directory" : "file");
-                        if (isDirectory) {
-                            info.setSize(0);
-                            info.setSizeFormatted("-");
-                        } else {
-                            try {
-                                ObjectLoader loader = repository.open(treeWalk.getObjectId(0));
-                                long size = loader.getSize();
-                                info.setSize(size);
-                                info.setSizeFormatted(formatBytes(size));
-                            } catch (Exception e) {
-                                info.setSize(0);
-                                info.setSizeFormatted("0 B");
-                            }
-                        }
-                        files.add(info);
+                }
+            }
+
+            DirectoryEntry[] entries = directoryCache.get(treeId);
+            if (entries == null) {
+                entries = readDirectory(repository, treeId);
+                directoryCache.put(treeId, entries);
+            }
+
+            String needle = filter == null ? "" : filter.trim().toLowerCase(Locale.ROOT);
+            long end = (long) page.getOffset() + Math.max(0, limit);
+            int matched = 0;
+            try (ObjectReader reader = repository.newObjectReader()) {
+                for (DirectoryEntry entry : entries) {
+                    if (!needle.isEmpty() && !entry.name.toLowerCase(Locale.ROOT).contains(needle)) {
+                        continue;
                     }
+                    if (matched >= page.getOffset() && matched < end) {
+                        page.getFiles().add(toFileInfo(reader, entry, normalizedPath));
+                    }
+                    matched++;
                 }
             }
+            page.setTotal(matched);
         }
+        return page;
+    }
 
-        files.sort((a, b) -> {
-            if (a.getType().equals(b.getType())) {
-                return a.getName().compareToIgnoreCase(b.getName());
+    private DirectoryEntry[] readDirectory(Repository repository, ObjectId treeId) throws IOException {
+        List<DirectoryEntry> entries = new ArrayList<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(treeId);
+            treeWalk.setRecursive(false);
+            while (treeWalk.next()) {
+                entries.add(new DirectoryEntry(treeWalk.getNameString(), treeWalk.isSubtree(), treeWalk.getObjectId(0)));
             }
-            return "directory".equals(a.getType()) ? -1 : 1;
+        }
+        DirectoryEntry[] sorted = entries.toArray(new DirectoryEntry[0]);
+        Arrays.sort(sorted, (a, b) -> {
+            if (a.directory != b.directory) {
+                return a.directory ? -1 : 1;
+            }
+            int order = a.name.compareToIgnoreCase(b.name);
+            // Names differing only in case keep a fixed order across pages.
+            return order != 0 ? order : a.name.compareTo(b.name);
         });
-        return files;
+        return sorted;
+    }
+
+    private FileInfo toFileInfo(ObjectReader reader, DirectoryEntry entry, String dirPath) {
+        FileInfo info = new FileInfo();
+        info.setName(entry.name);
+        info.setPath(dirPath.isEmpty() ? entry.name : dirPath + "/" + entry.name);
+        info.setType(entry.directory ? "directory" : "file");
+        info.setId(entry.id.name());
+        if (entry.directory) {
+            info.setSize(0);
+            info.setSizeFormatted("-");
+        } else {
+            try {
+                long size = reader.getObjectSize(entry.id, Constants.OBJ_BLOB);
+                info.setSize(size);
+                info.setSizeFormatted(formatBytes(size));
+            } catch (Exception e) {
+                info.setSize(0);
+                info.setSizeFormatted("0 B");
+            }
+        }
+        return info;
+    }
+
+    private static final class DirectoryEntry {
+        private final String name;
+        private final boolean directory;
+        private final ObjectId id;
+
+        DirectoryEntry(String name, boolean directory, ObjectId id) {
+            this.name = name;
+            this.directory = directory;
+            this.id = id;
+        }
     }
 
 // Updated isEmptyRepository method in GitRepositoryService.
 public boolean isEmptyRepository(File repoDir) throws Exception {
-    try (Repository repository = Git.open(repoDir).getRepository()) {
-        // Check whether any refs exist.
-        Collection<Ref> refs = repository.getRefDatabase().getRefs();
+    try (Repository repository = openRepository(repoDir)) {
+        // Only branches matter; scan just that prefix instead of listing every ref.
+        List<Ref> refs = repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS);
 
-        // Filter non-branch refs; only check heads.
-        boolean hasBranches = refs.stream()
-            .anyMatch(ref -> ref.getName().startsWith("refs/heads/"));
-
-        if (!hasBranches) {
+        if (refs.isEmpty()) {
             return true;
         }
         
@@ -446,11 +639,9 @@ public boolean isEmptyRepository(File repoDir) throws Exception {
 
             // If HEAD is null, check all branches.
             for (Ref ref : refs) {
-                if (ref.getName().startsWith("refs/heads/")) {
-                    ObjectId objectId = ref.getObjectId();
-                    if (objectId != null) {
-                        return false; // Found a valid branch commit.
-                    }
+                ObjectId objectId = ref.getObjectId();
+                if (objectId != null) {
+                    return false; // Found a valid branch commit.
                 }
             }
         } catch (Exception e) {
@@ -463,10 +654,9 @@ public boolean isEmptyRepository(File repoDir) throws Exception {
 }
 
     public void createBranch(File repoDir, String sourceBranch, String newBranch) throws Exception {
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build();
+        Lock refUpdateLock = refStorageConverter.refUpdateLock(repoDir.getName());
+        refUpdateLock.lock();
+        try (Repository repository = openRepository(repoDir);
              Git git = new Git(repository)) {
 
             if (sourceBranch == null || sourceBranch.isEmpty()) {
@@ -485,14 +675,15 @@ public boolean isEmptyRepository(File repoDir) throws Exception {
             }
 
             git.branchCreate().setName(newBranch).setStartPoint(sourceBranch).call();
+        } finally {
+            refUpdateLock.unlock();
         }
     }
 
     public void deleteBranch(File repoDir, String branchName) throws Exception {
-        try (Repository repository = new FileRepositoryBuilder()
-                .setGitDir(repoDir)
-                .setMustExist(true)
-                .build();
+        Lock refUpdateLock = refStorageConverter.refUpdateLock(repoDir.getName());
+        refUpdateLock.lock();
+        try (Repository repository = openRepository(repoDir);
              Git git = new Git(repository)) {
 
             // Prevent deleting the default (HEAD) branch.
@@ -510,11 +701,20 @@ public boolean isEmptyRepository(File repoDir) throws Exception {
             }
 
             git.branchDelete().setBranchNames(branchName).setForce(true).call();
+        } finally {
+            refUpdateLock.unlock();
         }
     }
 
     // -------- Helpers --------
 
+    /**
+     * Open through {@link RepositoryService} so the configured storage backend and the shared cache are used.
+     */
+    private Repository openRepository(File repoDir) throws IOException {
+        return repositoryService.openRepository(repoDir.getName());
+    }
+
     private CommitInfo toCommitInfo(RevCommit commit) {
         CommitInfo info = new CommitInfo();
         info.setId(commit.getId().getName());
@@ -544,6 +744,33 @@ public boolean isEmptyRepository(File repoDir) throws Exception {
         return trimmed;
     }
 
+    private ObjectId resolveFileObjectId(Repository repository, String branchName, String path) throws IOException {
+        if (path == null || path.trim().isEmpty()) {
+            throw new IllegalArgumentException("File path must not be empty");
+        }
+        String normalizedPath = normalizePath(path);
+        if (normalizedPath.isEmpty()) {
+            throw new IllegalArgumentException("File path must not point to repository root");
+        }
+
+        ObjectId branchId = resolveBranchObjectId(repository, branchName);
+        if (branchId == null) {
+            throw new IllegalArgumentException("Branch not found: " + (branchName == null ? "(default)" : branchName));
+        }
+
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            RevCommit commit = revWalk.parseCommit(branchId);
+            RevTree tree = commit.getTree();
+
+            try (TreeWalk treeWalk = TreeWalk.forPath(repository, normalizedPath, tree)) {
+                if (treeWalk == null || treeWalk.isSubtree()) {
+                    throw new IllegalArgumentException("File not found or is a directory: " + path);
+                }
+                return treeWalk.getObjectId(0);
+            }
+        }
+    }
+
     private ObjectId resolveBranchObjectId(Repository repository, String branchName) throws IOException {
         if (branchName != null && !branchName.trim().isEmpty()) {
             ObjectId direct = repository.resolve(branchName);
@@ -0,0 +1,164 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for Git LFS objects.
+ * Objects live under {@code <vcs.storage.dir>/.lfs/objects/ab/cd/<oid>} and are shared by all repositories.
+ */
+@Service
+public class LfsObjectStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LfsObjectStore.class);
+
+    /** Pointer files are small by specification; anything larger is ordinary content. */
+    public static final int MAX_POINTER_SIZE = 1024;
+
+    private static final Pattern OID_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+    private static final String POINTER_VERSION = "version https://git-lfs.github.com/spec/v1";
+    private static final Pattern POINTER_OID = Pattern.compile("(?m)^oid sha256:([0-9a-f]{64})$");
+    private static final Pattern POINTER_SIZE = Pattern.compile("(?m)^size ([0-9]+)$");
+
+    private final VcsProperties vcsProperties;
+
+    public LfsObjectStore(VcsProperties vcsProperties) {
+        this.vcsProperties = vcsProperties;
+    }
+
+    /**
+     * Parsed LFS pointer file.
+     */
+    public static class Pointer {
+        private final String oid;
+        private final long size;
+
+        public Pointer(String oid, long size) {
+            this.oid = oid;
+            this.size = size;
+        }
+
+        public String getOid() { return oid; }
+        public long getSize() { return size; }
+    }
+
+    public static boolean isValidOid(String oid) {
+        return oid != null && OID_PATTERN.matcher(oid).matches();
+    }
+
+    /**
+     * Parse blob content as an LFS pointer. Returns null when the content is not a pointer.
+     */
+    public static Pointer parsePointer(byte[] content) {
+        if (content == null || content.length > MAX_POINTER_SIZE || content.length < POINTER_VERSION.length()) {
+            return null;
+        }
+        String text = new String(content, StandardCharsets.UTF_8);
+        if (!text.startsWith(POINTER_VERSION)) {
+            return null;
+        }
+        Matcher oid = POINTER_OID.matcher(text);
+        Matcher size = POINTER_SIZE.matcher(text);
+        if (!oid.find() || !size.find()) {
+            return null;
+        }
+        try {
+            return new Pointer(oid.group(1), Long.parseLong(size.group(1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the object is stored with the expected size (a negative size skips the size check).
+     */
+    public boolean contains(String oid, long size) {
+        File file = getObjectFile(oid);
+        return file.isFile() && (size < 0 || file.length() == size);
+    }
+
+    /**
+     * Location of an object, whether or not it exists.
+     */
+    public File getObjectFile(String oid) {
+        if (!isValidOid(oid)) {
+            throw new IllegalArgumentException("Invalid LFS object id: " + oid);
+        }
+        return new File(getObjectsDir(), oid.substring(0, 2) + File.separator + oid.substring(2, 4) + File.separator + oid);
+    }
+
+    /**
+     * Stream an upload into the store. The content is spooled to a temporary file,
+     * verified against the oid and size, then atomically moved into place.
+     */
+    public void store(String oid, long expectedSize, InputStream in) throws IOException {
+        File target = getObjectFile(oid);
+        File tmpDir = new File(getObjectsDir().getParentFile(), "tmp");
+        Files.createDirectories(tmpDir.toPath());
+        Path tmp = Files.createTempFile(tmpDir.toPath(), oid, ".part");
+        try {
+            MessageDigest digest = sha256();
+            long written;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+                written = copy(in, out);
+            }
+            String actual = toHex(digest.digest());
+            if (!actual.equals(oid)) {
+                throw new IllegalArgumentException("LFS object hash mismatch: expected " + oid + " but got " + actual);
+            }
+            if (expectedSize >= 0 && written != expectedSize) {
+                throw new IllegalArgumentException("LFS object size mismatch: expected " + expectedSize + " but got " + written);
+            }
+            Files.createDirectories(target.getParentFile().toPath());
+            Files.move(tmp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Stored LFS object {} ({} bytes)", oid, written);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private File getObjectsDir() {
+        return new File(new File(vcsProperties.getStorage().getDir(), ".lfs"), "objects");
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[65536];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
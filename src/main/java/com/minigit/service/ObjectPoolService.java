@@ -0,0 +1,456 @@
+package com.minigit.service;
+
+import com.minigit.service.dfs.BlobRepositoryManager;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.PackIndex;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates repositories that share objects with an existing one through a common
+ * object pool. The pool is a bare repository under {@code <storage>/.pools} that
+ * every member lists in {@code objects/info/alternates}; a fork hard-links the
+ * source's packs into the pool and copies only refs, so it takes no extra disk.
+ * <p>
+ * Periodic maintenance moves packs that several members received separately into
+ * the pool and drops member packs whose objects are all in the pool; it reads every
+ * member index, so it runs on its own thread. Pools are never pruned, so removing a
+ * member cannot break the others.
+ * <p>
+ * Repositories on the DFS backend have no object directory to share; for them the
+ * reachable objects are copied into the new repository as a single pack instead.
+ */
+@Service
+public class ObjectPoolService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectPoolService.class);
+
+    private static final String POOLS_DIR = ".pools";
+
+    private final RepositoryService repositoryService;
+    private final RepositorySizeTracker sizeTracker;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "object-pool-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ObjectPoolService(RepositoryService repositoryService, RepositorySizeTracker sizeTracker) {
+        this.repositoryService = repositoryService;
+        this.sizeTracker = sizeTracker;
+    }
+
+    /**
+     * Create {@code target} as a fork of {@code source} with all of its branches and tags.
+     * @return created repository directory
+     */
+    public File fork(String source, String target) {
+        return createFrom(source, target, true);
+    }
+
+    /**
+     * Create {@code target} from {@code template}, starting with the template's default branch only.
+     * @return created repository directory
+     */
+    public File createFromTemplate(String template, String target) {
+        return createFrom(template, target, false);
+    }
+
+    private File createFrom(String source, String target, boolean allRefs) {
+        String sourceName = repositoryService.normalizeRepositoryName(source);
+        if (!repositoryService.repositoryExists(sourceName)) {
+            throw new IllegalArgumentException("Repository not found: " + sourceName);
+        }
+        File targetDir = repositoryService.createRepository(target);
+        String targetName = repositoryService.normalizeRepositoryName(target);
+        try {
+            File sourceDir = repositoryService.getRepositoryPath(sourceName);
+            if (!isPoolable(sourceDir) || !isPoolable(targetDir)) {
+                copyObjects(sourceName, targetName);
+                copyRefs(sourceName, targetName, allRefs);
+                logger.info("Created repository {} from {} by copying its objects", targetName, sourceName);
+            } else {
+                File pool = poolFor(sourceName);
+                linkObjects(objectsDir(sourceDir), objectsDir(pool));
+                writeAlternates(objectsDir(targetDir), Collections.singletonList(objectsDir(pool)));
+                copyRefs(sourceName, targetName, allRefs);
+                logger.info("Created repository {} from {} sharing pool {}", targetName, sourceName, pool.getName());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to create repository {} from {}", targetName, sourceName, e);
+            repositoryService.deleteRepository(targetName);
+            throw new RuntimeException("Failed to create repository from " + sourceName, e);
+        }
+        sizeTracker.refresh(sourceName);
+        sizeTracker.refresh(targetName);
+        return targetDir;
+    }
+
+    /**
+     * The pool a repository belongs to, creating one (and joining the repository to it) if needed.
+     */
+    private synchronized File poolFor(String name) throws IOException {
+        File repoDir = repositoryService.getRepositoryPath(name);
+        File existing = findPool(repoDir);
+        if (existing != null) {
+            return existing;
+        }
+        String base = name.substring(0, name.length() - ".git".length());
+        File pool = new File(poolsDir(), base + "-" + System.currentTimeMillis() + ".git");
+        Files.createDirectories(pool.getParentFile().toPath());
+        try (Git ignored = Git.init().setDirectory(pool).setBare(true).call()) {
+            // Only the object database is used.
+        } catch (Exception e) {
+            throw new IOException("Failed to create object pool " + pool, e);
+        }
+        List<File> alternates = new ArrayList<>(readAlternates(objectsDir(repoDir)));
+        alternates.add(objectsDir(pool));
+        writeAlternates(objectsDir(repoDir), alternates);
+        // The cached instance read its alternates when first used.
+        RepositoryCache.unregister(RepositoryCache.FileKey.exact(repoDir, FS.DETECTED));
+        logger.info("Created object pool {} for {}", pool.getName(), name);
+        return pool;
+    }
+
+    /**
+     * Pools share object directories, so only repositories stored as plain files can use
+     * them; DFS and in-memory repositories get a copy of the objects instead.
+     */
+    private static boolean isPoolable(File repoDir) {
+        return new File(repoDir, "objects").isDirectory() && BlobRepositoryManager.readDfsId(repoDir) == null;
+    }
+
+    private File findPool(File repoDir) throws IOException {
+        Path pools = poolsDir().toPath().toAbsolutePath().normalize();
+        for (File alternate : readAlternates(objectsDir(repoDir))) {
+            Path path = alternate.toPath().toAbsolutePath().normalize();
+            if (path.startsWith(pools) && alternate.isDirectory()) {
+                return alternate.getParentFile();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copy every object reachable from the source's refs into the target as one pack.
+     */
+    private void copyObjects(String sourceName, String targetName) throws IOException {
+        Path temp = Files.createTempFile("minigit-copy-", ".pack");
+        try (Repository source = repositoryService.openRepository(sourceName);
+             Repository target = repositoryService.openRepository(targetName)) {
+            Set<ObjectId> tips = new HashSet<>();
+            for (Ref ref : source.getRefDatabase().getRefsByPrefix(Constants.R_REFS)) {
+                if (ref.getObjectId() != null) {
+                    tips.add(ref.getObjectId());
+                }
+            }
+            if (tips.isEmpty()) {
+                return;
+            }
+            try (PackWriter writer = new PackWriter(source);
+                 OutputStream out = Files.newOutputStream(temp)) {
+                writer.preparePack(NullProgressMonitor.INSTANCE, tips, Collections.<ObjectId>emptySet());
+                writer.writePack(NullProgressMonitor.INSTANCE, NullProgressMonitor.INSTANCE, out);
+            }
+            try (ObjectInserter inserter = target.newObjectInserter();
+                 InputStream in = Files.newInputStream(temp)) {
+                inserter.newPackParser(in).parse(NullProgressMonitor.INSTANCE);
+                inserter.flush();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void copyRefs(String sourceName, String targetName, boolean allRefs) throws IOException {
+        try (Repository source = repositoryService.openRepository(sourceName);
+             Repository target = repositoryService.openRepository(targetName)) {
+            Ref head = source.exactRef(Constants.HEAD);
+            String headTarget = head != null && head.isSymbolic() ? head.getTarget().getName() : null;
+            List<Ref> refs = new ArrayList<>();
+            if (allRefs) {
+                refs.addAll(source.getRefDatabase().getRefsByPrefix(Constants.R_HEADS));
+                refs.addAll(source.getRefDatabase().getRefsByPrefix(Constants.R_TAGS));
+            } else if (headTarget != null) {
+                Ref branch = source.exactRef(headTarget);
+                if (branch != null) {
+                    refs.add(branch);
+                }
+            }
+            for (Ref ref : refs) {
+                if (ref.getObjectId() == null) {
+                    continue;
+                }
+                RefUpdate update = target.updateRef(ref.getName());
+                update.setNewObjectId(ref.getObjectId());
+                update.setForceUpdate(true);
+                RefUpdate.Result result = update.update();
+                if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED) {
+                    throw new IOException("Failed to create " + ref.getName() + ": " + result);
+                }
+            }
+            if (headTarget != null) {
+                target.updateRef(Constants.HEAD).link(headTarget);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{@vcsProperties.storage.poolMaintenanceInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.storage.poolMaintenanceInterval.toMillis()}")
+    public void maintain() {
+        executor.submit(this::maintainAll);
+    }
+
+    /**
+     * Move packs that several members received separately into their pool, then drop
+     * member packs whose objects are all available from the pool, on the calling thread.
+     */
+    public void maintainAll() {
+        if (repositoryService.getStorageDir() == null || !poolsDir().isDirectory()) {
+            return;
+        }
+        Map<File, List<String>> members = new HashMap<>();
+        for (String name : repositoryService.listRepositories()) {
+            try {
+                File repoDir = repositoryService.getRepositoryPath(name);
+                File pool = findPool(repoDir);
+                if (pool != null) {
+                    members.computeIfAbsent(pool, k -> new ArrayList<>()).add(name);
+                    if (hasAbsoluteAlternates(objectsDir(repoDir))) {
+                        // Written by an earlier version; the same directories, as relative paths.
+                        writeAlternates(objectsDir(repoDir), readAlternates(objectsDir(repoDir)));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read alternates of {}: {}", name, e.getMessage());
+            }
+        }
+        for (Map.Entry<File, List<String>> entry : members.entrySet()) {
+            try {
+                deduplicate(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                logger.warn("Failed to deduplicate pool {}: {}", entry.getKey().getName(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void deduplicate(File pool, List<String> memberNames) throws IOException {
+        File poolPacks = new File(objectsDir(pool), "pack");
+        // Pack names are derived from their contents, so equal names mean equal packs.
+        Map<String, Integer> packCounts = new HashMap<>();
+        for (String name : memberNames) {
+            for (File pack : packs(repositoryService.getRepositoryPath(name))) {
+                packCounts.merge(pack.getName(), 1, Integer::sum);
+            }
+        }
+        for (String name : memberNames) {
+            for (File pack : packs(repositoryService.getRepositoryPath(name))) {
+                if (packCounts.get(pack.getName()) > 1 && !new File(poolPacks, pack.getName()).exists()) {
+                    linkPack(pack, poolPacks);
+                }
+            }
+        }
+
+        int removed = 0;
+        try (Repository poolRepo = new FileRepositoryBuilder().setGitDir(pool).setBare().build()) {
+            ObjectDatabase poolObjects = poolRepo.getObjectDatabase();
+            for (String name : memberNames) {
+                File repoDir = repositoryService.getRepositoryPath(name);
+                boolean changed = false;
+                for (File pack : packs(repoDir)) {
+                    if (new File(pack.getParentFile(), baseName(pack) + ".keep").exists()
+                            || !containsAll(poolObjects, index(pack))) {
+                        continue;
+                    }
+                    // Remove the index first so readers never see an index without its pack.
+                    Files.deleteIfExists(index(pack).toPath());
+                    Files.deleteIfExists(new File(pack.getParentFile(), baseName(pack) + ".bitmap").toPath());
+                    Files.deleteIfExists(pack.toPath());
+                    changed = true;
+                    removed++;
+                }
+                if (changed) {
+                    sizeTracker.refresh(name);
+                }
+            }
+        }
+        if (removed > 0) {
+            logger.info("Pool {}: removed {} duplicate packs from {} members", pool.getName(), removed, memberNames.size());
+        }
+    }
+
+    private static boolean containsAll(ObjectDatabase objects, File indexFile) throws IOException {
+        if (!indexFile.isFile()) {
+            return false;
+        }
+        for (PackIndex.MutableEntry entry : PackIndex.open(indexFile)) {
+            if (!objects.has(entry.toObjectId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hard-link (or copy, where links are unsupported) every pack and loose object into the pool.
+     */
+    private static void linkObjects(File from, File to) throws IOException {
+        File[] dirs = from.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            if (dir.getName().length() == 2 && dir.isDirectory()) {
+                File[] objects = dir.listFiles();
+                if (objects == null) continue;
+                File targetDir = new File(to, dir.getName());
+                Files.createDirectories(targetDir.toPath());
+                for (File object : objects) {
+                    link(object, new File(targetDir, object.getName()));
+                }
+            }
+        }
+        File poolPacks = new File(to, "pack");
+        for (File pack : packs(from.getParentFile())) {
+            linkPack(pack, poolPacks);
+        }
+    }
+
+    private static void linkPack(File pack, File packDir) throws IOException {
+        Files.createDirectories(packDir.toPath());
+        String base = baseName(pack);
+        // The pack goes first: an index must never refer to a missing pack.
+        link(pack, new File(packDir, pack.getName()));
+        File bitmap = new File(pack.getParentFile(), base + ".bitmap");
+        if (bitmap.isFile()) {
+            link(bitmap, new File(packDir, bitmap.getName()));
+        }
+        link(index(pack), new File(packDir, base + ".idx"));
+    }
+
+    private static void link(File existing, File link) throws IOException {
+        try {
+            Files.createLink(link.toPath(), existing.toPath());
+        } catch (FileAlreadyExistsException e) {
+            // Already shared, e.g. by an earlier fork of the same source.
+        } catch (UnsupportedOperationException | IOException e) {
+            if (link.exists()) {
+                return;
+            }
+            Files.copy(existing.toPath(), link.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static List<File> packs(File repoDir) {
+        File[] packs = new File(objectsDir(repoDir), "pack").listFiles(
+                (dir, name) -> name.endsWith(".pack") && new File(dir, name.substring(0, name.length() - 5) + ".idx").isFile());
+        List<File> result = new ArrayList<>();
+        if (packs != null) {
+            Collections.addAll(result, packs);
+        }
+        return result;
+    }
+
+    static List<File> readAlternates(File objectsDir) throws IOException {
+        Path file = new File(objectsDir, "info/alternates").toPath();
+        List<File> alternates = new ArrayList<>();
+        if (!Files.isRegularFile(file)) {
+            return alternates;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                File alternate = new File(line);
+                alternates.add(alternate.isAbsolute() ? alternate
+                        : new File(objectsDir, line).getAbsoluteFile().toPath().normalize().toFile());
+            }
+        }
+        return alternates;
+    }
+
+    private static boolean hasAbsoluteAlternates(File objectsDir) throws IOException {
+        Path file = new File(objectsDir, "info/alternates").toPath();
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#") && new File(line).isAbsolute()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeAlternates(File objectsDir, List<File> alternates) throws IOException {
+        Path file = new File(objectsDir, "info/alternates").toPath();
+        Files.createDirectories(file.getParent());
+        StringBuilder content = new StringBuilder();
+        Path base = objectsDir.getAbsoluteFile().toPath().normalize();
+        for (File alternate : alternates) {
+            // Relative, so that moving the whole storage directory keeps forks working;
+            // moving a single repository rebases them (RepositoryServiceImpl).
+            Path relative = base.relativize(alternate.getAbsoluteFile().toPath().normalize());
+            content.append(relative.toString().replace(File.separatorChar, '/')).append('\n');
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private File poolsDir() {
+        return new File(repositoryService.getStorageDir(), POOLS_DIR);
+    }
+
+    private static File objectsDir(File repoDir) {
+        return new File(repoDir, "objects");
+    }
+
+    private static File index(File pack) {
+        return new File(pack.getParentFile(), baseName(pack) + ".idx");
+    }
+
+    private static String baseName(File pack) {
+        String name = pack.getName();
+        return name.substring(0, name.length() - ".pack".length());
+    }
+}
@@ -0,0 +1,183 @@
+package com.minigit.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Every file path of one tree, sorted, with fuzzy lookup for "go to file".
+ * <p>
+ * Paths sort the way Git orders tree entries, so the files below a directory form one
+ * contiguous run, which {@link PathIndexService} copies when a subtree did not change.
+ * For matching, the lower-cased paths are packed into a single array with a bit mask of
+ * the characters each contains; paths missing a character of the query are skipped on
+ * the mask alone, and only the rest are matched character by character.
+ */
+public class PathIndex {
+
+    private final String[] paths;
+    private final char[] folded;
+    private final int[] offsets;
+    private final int[] nameStarts;
+    private final long[] masks;
+
+    /**
+     * @param paths file paths in Git tree order (plain {@link String} order)
+     */
+    public PathIndex(String[] paths) {
+        this.paths = paths;
+        int total = 0;
+        for (String path : paths) {
+            total += path.length();
+        }
+        folded = new char[total];
+        offsets = new int[paths.length + 1];
+        nameStarts = new int[paths.length];
+        masks = new long[paths.length];
+        int at = 0;
+        for (int i = 0; i < paths.length; i++) {
+            offsets[i] = at;
+            nameStarts[i] = at;
+            String path = paths[i];
+            long mask = 0;
+            for (int j = 0; j < path.length(); j++) {
+                char c = Character.toLowerCase(path.charAt(j));
+                if (c == '/') {
+                    nameStarts[i] = at + 1;
+                }
+                folded[at++] = c;
+                mask |= bit(c);
+            }
+            masks[i] = mask;
+        }
+        offsets[paths.length] = at;
+    }
+
+    public int size() {
+        return paths.length;
+    }
+
+    public String get(int i) {
+        return paths[i];
+    }
+
+    /**
+     * Index range of the paths below a directory, as {@code [from, to)}.
+     */
+    public int[] rangeOf(String directory) {
+        String prefix = directory + "/";
+        // '0' follows '/', so every path below the directory sorts before prefix-with-'0'.
+        String end = directory + "0";
+        return new int[] {lowerBound(prefix), lowerBound(end)};
+    }
+
+    /**
+     * Paths containing the query's characters in order, best match first. Matches in the
+     * file name, at the start of a name or word, and in runs score higher; shorter paths
+     * win ties.
+     */
+    public List<String> find(String query, int limit) {
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        char[] q = query.trim().replace('\\', '/').toCharArray();
+        long queryMask = 0;
+        for (int i = 0; i < q.length; i++) {
+            q[i] = Character.toLowerCase(q[i]);
+            queryMask |= bit(q[i]);
+        }
+        // Worst of the best results on top, so it is the one a better match replaces.
+        PriorityQueue<long[]> best = new PriorityQueue<>(limit + 1, (a, b) ->
+                a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+        for (int i = 0; i < paths.length; i++) {
+            if ((masks[i] & queryMask) != queryMask) {
+                continue;
+            }
+            int score = score(q, offsets[i], nameStarts[i], offsets[i + 1]);
+            if (score == Integer.MIN_VALUE) {
+                continue;
+            }
+            long[] candidate = {score, i};
+            if (best.size() < limit) {
+                best.add(candidate);
+            } else if (best.comparator().compare(candidate, best.peek()) > 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+        long[][] ranked = best.toArray(new long[0][]);
+        Arrays.sort(ranked, best.comparator().reversed());
+        List<String> result = new ArrayList<>(ranked.length);
+        for (long[] entry : ranked) {
+            result.add(paths[(int) entry[1]]);
+        }
+        return result;
+    }
+
+    /**
+     * Score of the query against one path, matched from the end so the file name is
+     * preferred; {@link Integer#MIN_VALUE} if it is not a subsequence.
+     */
+    private int score(char[] q, int start, int nameStart, int end) {
+        int score = 0;
+        int qi = q.length - 1;
+        int previous = -1;
+        for (int j = end - 1; j >= start && qi >= 0; j--) {
+            if (folded[j] != q[qi]) {
+                continue;
+            }
+            score += 1;
+            if (j == start || isSeparator(folded[j - 1])) {
+                score += 8;
+            }
+            if (j + 1 == previous) {
+                score += 5;
+            }
+            if (j >= nameStart) {
+                score += 3;
+            }
+            previous = j;
+            qi--;
+        }
+        if (qi >= 0) {
+            return Integer.MIN_VALUE;
+        }
+        return score * 16 - Math.min(end - start, 255) / 16;
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = paths.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (paths[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '_' || c == '-' || c == '.' || c == ' ';
+    }
+
+    private static long bit(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1L << (c - 'a');
+        }
+        if (c >= '0' && c <= '9') {
+            return 1L << (26 + c - '0');
+        }
+        switch (c) {
+            case '/': return 1L << 36;
+            case '.': return 1L << 37;
+            case '_': return 1L << 38;
+            case '-': return 1L << 39;
+            default: return 1L << 40;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.minigit.service;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flat {@link PathIndex} of the files of a commit's tree, for "go to file".
+ * <p>
+ * Indexes are cached by root tree id, and the last index built for each repository is
+ * used as a base for the next one while it is still cached: walking the new tree alongside
+ * the base's tree, any subtree whose id did not change has its paths copied from the base
+ * instead of being read again, so indexing a new commit costs about as much as the
+ * directories it touched. Only the tree id of the base is kept per repository, so memory
+ * stays bounded by the cache however many repositories are browsed.
+ */
+@Service
+public class PathIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PathIndexService.class);
+
+    private static final int CACHE_SIZE = 32;
+
+    private final RepositoryService repositoryService;
+    private final Map<ObjectId, PathIndex> byTree = Collections.synchronizedMap(
+            new LinkedHashMap<ObjectId, PathIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ObjectId, PathIndex> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+    private final Map<String, ObjectId> latest = new ConcurrentHashMap<>();
+
+    public PathIndexService(RepositoryService repositoryService) {
+        this.repositoryService = repositoryService;
+    }
+
+    /**
+     * Files of a revision matching a fuzzy query, best first.
+     * @param revision branch, tag or commit; null for the default branch
+     */
+    public List<String> find(String repoName, String revision, String query, int limit) throws IOException {
+        PathIndex index = getIndex(repoName, revision);
+        return index != null ? index.find(query, limit) : Collections.emptyList();
+    }
+
+    /**
+     * Index of a revision's tree; null if the revision does not resolve.
+     */
+    public PathIndex getIndex(String repoName, String revision) throws IOException {
+        String normalizedName = repositoryService.normalizeRepositoryName(repoName);
+        try (Repository repository = repositoryService.openRepository(normalizedName)) {
+            ObjectId commitId = repository.resolve(revision != null && !revision.isEmpty() ? revision : "HEAD");
+            if (commitId == null) {
+                return null;
+            }
+            ObjectId treeId;
+            try (RevWalk walk = new RevWalk(repository)) {
+                RevCommit commit = walk.parseCommit(commitId);
+                treeId = commit.getTree().copy();
+            }
+            PathIndex index = byTree.get(treeId);
+            if (index != null) {
+                return index;
+            }
+            // Built outside any lock; two requests for a new tree may both build it.
+            long start = System.currentTimeMillis();
+            Base base = null;
+            ObjectId baseTree = latest.get(normalizedName);
+            PathIndex baseIndex = baseTree != null ? byTree.get(baseTree) : null;
+            if (baseIndex != null) {
+                base = new Base(baseTree, baseIndex);
+            }
+            List<String> paths = new ArrayList<>();
+            int[] reused = new int[1];
+            try (ObjectReader reader = repository.newObjectReader()) {
+                collect(reader, treeId, base, "", paths, reused);
+            }
+            index = new PathIndex(paths.toArray(new String[0]));
+            byTree.put(treeId, index);
+            latest.put(normalizedName, treeId);
+            logger.debug("Indexed {} paths of {} ({} reused) in {}ms", index.size(), normalizedName,
+                    reused[0], System.currentTimeMillis() - start);
+            return index;
+        }
+    }
+
+    /**
+     * Drop the base of a deleted repository.
+     */
+    public void forget(String repoName) {
+        String normalizedName = repositoryService.normalizeRepositoryName(repoName);
+        if (normalizedName != null) {
+            latest.remove(normalizedName);
+        }
+    }
+
+    /**
+     * Add the files of a tree to {@code paths}, copying unchanged subtrees from the base.
+     */
+    private void collect(ObjectReader reader, ObjectId treeId, Base base, String prefix,
+                         List<String> paths, int[] reused) throws IOException {
+        if (base == null) {
+            try (TreeWalk walk = new TreeWalk(reader)) {
+                walk.addTree(treeId);
+                walk.setRecursive(true);
+                while (walk.next()) {
+                    paths.add(prefix + walk.getPathString());
+                }
+            }
+            return;
+        }
+        try (TreeWalk walk = new TreeWalk(reader)) {
+            walk.addTree(treeId);
+            walk.addTree(base.treeId);
+            walk.setRecursive(false);
+            while (walk.next()) {
+                if (walk.getRawMode(0) == 0) {
+                    continue;
+                }
+                String path = prefix + walk.getPathString();
+                if (!FileMode.TREE.equals(walk.getRawMode(0))) {
+                    paths.add(path);
+                    continue;
+                }
+                ObjectId subtree = walk.getObjectId(0);
+                boolean inBase = FileMode.TREE.equals(walk.getRawMode(1));
+                if (inBase && subtree.equals(walk.getObjectId(1))) {
+                    int[] range = base.index.rangeOf(path);
+                    for (int i = range[0]; i < range[1]; i++) {
+                        paths.add(base.index.get(i));
+                    }
+                    reused[0] += range[1] - range[0];
+                } else if (inBase) {
+                    collect(reader, subtree, base.at(walk.getObjectId(1)), path + "/", paths, reused);
+                } else {
+                    collect(reader, subtree, null, path + "/", paths, reused);
+                }
+            }
+        }
+    }
+
+    /**
+     * A previously built index and the tree (or, below the root, subtree) it covers.
+     */
+    private static final class Base {
+        private final ObjectId treeId;
+        private final PathIndex index;
+
+        Base(ObjectId treeId, PathIndex index) {
+            this.treeId = treeId;
+            this.index = index;
+        }
+
+        Base at(ObjectId subtreeId) {
+            return new Base(subtreeId, index);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The refs of each repository as last read, with an ETag over all of them, so that API
+ * requests naming a branch can be resolved and answered with 304 without opening the
+ * repository.
+ * <p>
+ * A snapshot is dropped as soon as JGit reports a ref change in this process, and is
+ * otherwise trusted for {@code vcs.api.ref-snapshot-ttl}, which bounds how late changes
+ * made by another process are noticed. DFS repositories do not report their ref
+ * updates, so for them the TTL is what applies.
+ */
+@Service
+public class RefSnapshotCache {
+
+    private final RepositoryService repositoryService;
+    private final VcsProperties vcsProperties;
+    // By repository directory name, which is what a ref change event carries.
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private ListenerHandle refsChangedHandle;
+
+    public RefSnapshotCache(RepositoryService repositoryService, VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.vcsProperties = vcsProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        refsChangedHandle = Repository.getGlobalListenerList().addRefsChangedListener(event -> {
+            File directory = event.getRepository().getDirectory();
+            if (directory != null) {
+                snapshots.remove(directory.getName());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refsChangedHandle != null) {
+            refsChangedHandle.remove();
+        }
+    }
+
+    /**
+     * Current refs of a repository, read again only if changed or older than the TTL.
+     */
+    public Snapshot get(String repoName) throws IOException {
+        String normalizedName = repositoryService.normalizeRepositoryName(repoName);
+        String key = repositoryService.getRepositoryPath(normalizedName).getName();
+        Snapshot snapshot = snapshots.get(key);
+        long ttl = vcsProperties.getApi().getRefSnapshotTtl().toMillis();
+        if (snapshot != null && System.currentTimeMillis() - snapshot.readAt < ttl) {
+            return snapshot;
+        }
+        snapshot = read(normalizedName);
+        if (ttl > 0) {
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    public void invalidate(String repoName) {
+        String normalizedName = repositoryService.normalizeRepositoryName(repoName);
+        snapshots.remove(repositoryService.getRepositoryPath(normalizedName).getName());
+    }
+
+    private Snapshot read(String normalizedName) throws IOException {
+        long readAt = System.currentTimeMillis();
+        Map<String, ObjectId> refs = new TreeMap<>();
+        Map<String, ObjectId> peeled = new TreeMap<>();
+        String head = null;
+        ObjectId headId = null;
+        try (Repository repository = repositoryService.openRepository(normalizedName)) {
+            RefDatabase refDatabase = repository.getRefDatabase();
+            for (Ref ref : refDatabase.getRefsByPrefix(RefDatabase.ALL)) {
+                if (ref.isSymbolic() || ref.getObjectId() == null) {
+                    continue;
+                }
+                refs.put(ref.getName(), ref.getObjectId().copy());
+                if (ref.getName().startsWith(Constants.R_TAGS)) {
+                    Ref peeledRef = refDatabase.peel(ref);
+                    if (peeledRef.getPeeledObjectId() != null) {
+                        peeled.put(ref.getName(), peeledRef.getPeeledObjectId().copy());
+                    }
+                }
+            }
+            Ref headRef = refDatabase.exactRef(Constants.HEAD);
+            if (headRef != null) {
+                head = headRef.getTarget().getName();
+                headId = headRef.getObjectId() != null ? headRef.getObjectId().copy() : null;
+            }
+        }
+        return new Snapshot(refs, peeled, head, headId, readAt);
+    }
+
+    /**
+     * Refs of one repository at one moment.
+     */
+    public static final class Snapshot {
+        private final Map<String, ObjectId> refs;
+        private final Map<String, ObjectId> peeled;
+        // Every ref's object id, and the id of any tag object, to what it peels to.
+        private final Map<ObjectId, ObjectId> tips = new HashMap<>();
+        private final String head;
+        private final ObjectId headId;
+        private final long readAt;
+        private final String etag;
+
+        Snapshot(Map<String, ObjectId> refs, Map<String, ObjectId> peeled, String head, ObjectId headId, long readAt) {
+            this.refs = Collections.unmodifiableMap(refs);
+            this.peeled = Collections.unmodifiableMap(peeled);
+            this.head = head;
+            this.headId = headId;
+            this.readAt = readAt;
+            StringBuilder text = new StringBuilder();
+            text.append("HEAD ").append(head).append('\n');
+            for (Map.Entry<String, ObjectId> ref : refs.entrySet()) {
+                text.append(ref.getKey()).append(' ').append(ref.getValue().name()).append('\n');
+                ObjectId target = peeled.get(ref.getKey());
+                tips.put(ref.getValue(), target != null ? target : ref.getValue());
+                if (target != null) {
+                    tips.put(target, target);
+                }
+            }
+            this.etag = digest(text.toString());
+        }
+
+        /** Ref names to object ids, sorted by name; symbolic refs are left out. */
+        public Map<String, ObjectId> getRefs() { return refs; }
+        /** Object an annotated tag points to, or null. */
+        public ObjectId getPeeled(String refName) { return peeled.get(refName); }
+        /** Ref HEAD points to, e.g. {@code refs/heads/master}; null if HEAD is missing. */
+        public String getHead() { return head; }
+        /** Hex digest over HEAD and every ref; changes whenever any of them does. */
+        public String getEtag() { return etag; }
+
+        /**
+         * Object a revision names: a branch, tag or full ref name, or the full id of a ref's
+         * target (tags peeled); null or empty for HEAD. Returns null for anything else, such
+         * as any other id or an expression, which needs the repository to resolve.
+         */
+        public ObjectId resolve(String revision) {
+            if (revision == null || revision.trim().isEmpty() || Constants.HEAD.equals(revision)) {
+                return headId;
+            }
+            if (ObjectId.isId(revision)) {
+                return tips.get(ObjectId.fromString(revision));
+            }
+            for (String name : new String[] {revision, Constants.R_HEADS + revision, Constants.R_TAGS + revision}) {
+                ObjectId id = refs.get(name);
+                if (id != null) {
+                    ObjectId target = peeled.get(name);
+                    return target != null ? target : id;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Hex SHA-1 of a string, for ETags.
+     */
+    public static String digest(String text) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return ObjectId.fromRaw(sha1.digest(text.getBytes(StandardCharsets.UTF_8))).name();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.dfs.BlobRepositoryManager;
+import org.eclipse.jgit.internal.storage.file.FileReftableDatabase;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Converts repositories between loose/packed refs and reftable while the server keeps
+ * running. Code that updates refs holds {@link #refUpdateLock(String)} while it runs; a
+ * conversion takes the same lock exclusively, so it waits for pushes in progress and
+ * later pushes wait for it. The conversion is done on the shared cached repository
+ * instance, so open readers switch to the new ref database with it.
+ * <p>
+ * DFS repositories always store refs in reftables and are skipped.
+ */
+@Service
+public class RefStorageConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefStorageConverter.class);
+
+    // How long a conversion waits for pushes in progress before giving up on a repository.
+    private static final long LOCK_TIMEOUT_SECONDS = 60;
+
+    // FileRepository#convertRefStorage name for loose refs plus packed-refs.
+    private static final String REF_STORAGE_FILES = "refdir";
+
+    private final RepositoryService repositoryService;
+    private final VcsProperties vcsProperties;
+    private final Map<String, ReadWriteLock> locks = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ref-storage-converter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile int total;
+    private volatile int processed;
+    private volatile int converted;
+    private volatile int failed;
+
+    public RefStorageConverter(RepositoryService repositoryService, VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.vcsProperties = vcsProperties;
+    }
+
+    /**
+     * Lock to hold (shared) while updating refs of a repository.
+     */
+    public Lock refUpdateLock(String name) {
+        return lockFor(repositoryService.normalizeRepositoryName(name)).readLock();
+    }
+
+    /**
+     * Lock to hold while a repository must not take ref updates at all, e.g. while it is moved.
+     */
+    public Lock exclusiveLock(String name) {
+        return lockFor(repositoryService.normalizeRepositoryName(name)).writeLock();
+    }
+
+    /**
+     * Current ref storage of a repository directory.
+     */
+    public static VcsProperties.Storage.RefFormat formatOf(File repoDir) {
+        if (BlobRepositoryManager.readDfsId(repoDir) != null || FileReftableDatabase.isReftable(repoDir)) {
+            return VcsProperties.Storage.RefFormat.REFTABLE;
+        }
+        return VcsProperties.Storage.RefFormat.FILES;
+    }
+
+    /**
+     * Convert one repository to {@code format}.
+     * @return true if it was converted, false if it already used that format
+     */
+    public boolean convert(String name, VcsProperties.Storage.RefFormat format) throws IOException {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (!repositoryService.repositoryExists(normalizedName)) {
+            throw new IllegalArgumentException("Repository not found: " + normalizedName);
+        }
+        File repoDir = repositoryService.getRepositoryPath(normalizedName);
+        if (BlobRepositoryManager.readDfsId(repoDir) != null || formatOf(repoDir) == format) {
+            return false;
+        }
+        Lock lock = lockFor(normalizedName).writeLock();
+        try {
+            if (!lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Timed out waiting for ref updates of " + normalizedName + " to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to convert " + normalizedName, e);
+        }
+        try (Repository repository = repositoryService.openRepository(normalizedName)) {
+            if (!(repository instanceof FileRepository) || formatOf(repoDir) == format) {
+                return false;
+            }
+            long start = System.currentTimeMillis();
+            convertRefStorage((FileRepository) repository, format);
+            logger.info("Converted refs of {} to {} in {} ms", normalizedName,
+                    format.name().toLowerCase(), System.currentTimeMillis() - start);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Convert the ref storage of an open file repository. JGit only carries over refs that
+     * resolve, so a HEAD pointing at an unborn branch is linked again afterwards.
+     */
+    public static void convertRefStorage(FileRepository repository, VcsProperties.Storage.RefFormat format)
+            throws IOException {
+        Ref head = repository.exactRef(Constants.HEAD);
+        String headTarget = head != null && head.isSymbolic() ? head.getTarget().getName() : null;
+        repository.convertRefStorage(format == VcsProperties.Storage.RefFormat.REFTABLE
+                ? ConfigConstants.CONFIG_REF_STORAGE_REFTABLE : REF_STORAGE_FILES, false, false);
+        Ref converted = repository.exactRef(Constants.HEAD);
+        if (headTarget != null && (converted == null || !converted.isSymbolic())) {
+            RefUpdate.Result result = repository.updateRef(Constants.HEAD).link(headTarget);
+            if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED) {
+                throw new IOException("Failed to restore HEAD after converting refs: " + result);
+            }
+        }
+    }
+
+    /**
+     * Start converting every repository to the configured format. Returns false if a run is already going.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.submit(this::convertAll);
+        return true;
+    }
+
+    private void convertAll() {
+        try {
+            VcsProperties.Storage.RefFormat format = vcsProperties.getStorage().getRefFormat();
+            List<String> repositories = repositoryService.listRepositories();
+            total = repositories.size();
+            processed = 0;
+            converted = 0;
+            failed = 0;
+            logger.info("Converting refs of {} repositories to {}", total, format.name().toLowerCase());
+            for (String name : repositories) {
+                try {
+                    if (repositoryService.repositoryExists(name) && convert(name, format)) {
+                        converted++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    logger.warn("Could not convert refs of {}: {}", name, e.getMessage());
+                }
+                processed++;
+            }
+            logger.info("Ref storage conversion finished: {} converted, {} failed", converted, failed);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReadWriteLock lockFor(String normalizedName) {
+        return locks.computeIfAbsent(normalizedName, k -> new ReentrantReadWriteLock());
+    }
+
+    public Status getStatus() {
+        return new Status(running.get(), total, processed, converted, failed);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Snapshot of conversion progress.
+     */
+    public static class Status {
+        private final boolean running;
+        private final int total;
+        private final int processed;
+        private final int converted;
+        private final int failed;
+
+        public Status(boolean running, int total, int processed, int converted, int failed) {
+            this.running = running;
+            this.total = total;
+            this.processed = processed;
+            this.converted = converted;
+            this.failed = failed;
+        }
+
+        public boolean isRunning() { return running; }
+        public int getTotal() { return total; }
+        public int getProcessed() { return processed; }
+        public int getConverted() { return converted; }
+        public int getFailed() { return failed; }
+    }
+}
@@ -0,0 +1,271 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.dfs.BlobRepositoryManager;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCacheConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the JGit caches of busy repositories warm and empties them for idle ones.
+ * <p>
+ * Git traffic is counted per repository as a score that halves every day, and the
+ * scores are saved to {@code vcs.cache.activity-file}. After a restart the repositories
+ * with the highest scores get their refs, pack indexes and bitmaps loaded in the
+ * background, so the first clones do not pay for it. Repositories nobody has opened for
+ * {@code vcs.cache.idle-after} are dropped from JGit's repository cache, which closes
+ * their packs and releases their pack windows, and from the DFS instance cache.
+ */
+@Service
+public class RepositoryCacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryCacheManager.class);
+
+    static final long HALF_LIFE_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final RepositoryService repositoryService;
+    private final VcsProperties vcsProperties;
+    private final Map<String, Activity> activity = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "repo-cache-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private BlobRepositoryManager blobRepositoryManager;
+    private volatile boolean dirty;
+
+    public RepositoryCacheManager(RepositoryService repositoryService, VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.vcsProperties = vcsProperties;
+    }
+
+    @Autowired(required = false)
+    public void setBlobRepositoryManager(BlobRepositoryManager blobRepositoryManager) {
+        this.blobRepositoryManager = blobRepositoryManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        long idleAfter = vcsProperties.getCache().getIdleAfter().toMillis();
+        RepositoryCacheConfig config = new RepositoryCacheConfig();
+        if (idleAfter > 0) {
+            // JGit expires cached repositories whose last user closed them longer ago than this.
+            config.setExpireAfter(idleAfter);
+        } else {
+            config.setCleanupDelay(RepositoryCacheConfig.NO_CLEANUP);
+        }
+        config.install();
+        load();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        save();
+    }
+
+    /**
+     * Count a Git request (clone, fetch or push) against a repository.
+     */
+    public void recordAccess(String name) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (normalizedName == null) {
+            return;
+        }
+        activity.computeIfAbsent(normalizedName, k -> new Activity(0, 0)).hit(System.currentTimeMillis());
+        dirty = true;
+    }
+
+    /**
+     * Existing repositories with the highest traffic score, busiest first.
+     */
+    public List<String> hottest(int limit) {
+        long now = System.currentTimeMillis();
+        return activity.entrySet().stream()
+                .filter(e -> repositoryService.repositoryExists(e.getKey()))
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Activity> e) -> e.getValue().scoreAt(now))
+                        .reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmupOnStartup() {
+        int count = vcsProperties.getCache().getWarmupCount();
+        if (count > 0) {
+            executor.submit(() -> warmup(count));
+        }
+    }
+
+    /**
+     * Preload the busiest repositories.
+     * @return number of repositories warmed up
+     */
+    public int warmup(int count) {
+        long start = System.currentTimeMillis();
+        int warmed = 0;
+        for (String name : hottest(count)) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                warm(name);
+                warmed++;
+            } catch (IOException e) {
+                logger.warn("Failed to warm up repository {}: {}", name, e.getMessage());
+            }
+        }
+        if (warmed > 0) {
+            logger.info("Warmed up {} repositories in {}ms", warmed, System.currentTimeMillis() - start);
+        }
+        return warmed;
+    }
+
+    /**
+     * Load what a clone of the repository reads first. The repository stays in the
+     * repository cache after it is closed here, until it has been idle for too long.
+     */
+    public void warm(String name) throws IOException {
+        try (Repository repository = repositoryService.openRepository(name)) {
+            // Reads packed-refs or the reftable stack into the ref snapshot.
+            repository.getRefDatabase().getRefs();
+            try (ObjectReader reader = repository.newObjectReader()) {
+                // A lookup of an id no pack has consults every pack index, which loads them all.
+                reader.has(ObjectId.zeroId());
+                reader.getBitmapIndex();
+                ObjectId head = repository.resolve(Constants.HEAD);
+                if (head != null) {
+                    try (RevWalk walk = new RevWalk(reader)) {
+                        RevCommit commit = walk.parseCommit(head);
+                        walk.parseTree(commit.getTree());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop idle DFS instances and save the traffic scores. File repositories are expired
+     * by JGit's repository cache itself, configured in {@link #init()}.
+     */
+    @Scheduled(fixedDelayString = "#{@vcsProperties.cache.idleCheckInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.cache.idleCheckInterval.toMillis()}")
+    public void sweep() {
+        long idleAfter = vcsProperties.getCache().getIdleAfter().toMillis();
+        if (idleAfter > 0 && blobRepositoryManager != null) {
+            int evicted = blobRepositoryManager.evictIdle(idleAfter);
+            if (evicted > 0) {
+                logger.info("Evicted {} idle DFS repositories", evicted);
+            }
+        }
+        activity.keySet().removeIf(name -> !repositoryService.repositoryExists(name));
+        save();
+    }
+
+    private void load() {
+        Path file = activityFile();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            logger.warn("Failed to read repository activity from {}: {}", file, e.getMessage());
+            return;
+        }
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                continue;
+            }
+            try {
+                activity.put(fields[0], new Activity(Double.parseDouble(fields[1]), Long.parseLong(fields[2])));
+            } catch (NumberFormatException e) {
+                logger.debug("Skipping malformed activity line: {}", line);
+            }
+        }
+        logger.info("Loaded traffic of {} repositories", activity.size());
+    }
+
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Path file = activityFile().toAbsolutePath();
+        List<String> lines = new ArrayList<>();
+        activity.forEach((name, entry) -> lines.add(entry.format(name)));
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, lines, StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            logger.warn("Failed to save repository activity to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path activityFile() {
+        return vcsProperties.dataPath(vcsProperties.getCache().getActivityFile(), "repository-activity").toPath();
+    }
+
+    /**
+     * Exponentially decaying request count of one repository.
+     */
+    private static class Activity {
+        private double score;
+        private long updatedAt;
+
+        Activity(double score, long updatedAt) {
+            this.score = score;
+            this.updatedAt = updatedAt;
+        }
+
+        synchronized void hit(long now) {
+            score = scoreAt(now) + 1;
+            updatedAt = now;
+        }
+
+        synchronized double scoreAt(long now) {
+            return score * Math.pow(0.5, Math.max(0, now - updatedAt) / (double) HALF_LIFE_MILLIS);
+        }
+
+        synchronized String format(String name) {
+            return name + "\t" + score + "\t" + updatedAt;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Moves repositories to the configured storage layout in the background, one at a time.
+ * Each move is a single rename and the catalog is updated right after it, so
+ * repositories stay reachable while the migration runs. A move waits for pushes in
+ * progress, which write into the old directory, and holds off new ones until it is done.
+ */
+@Service
+public class RepositoryLayoutMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryLayoutMigrator.class);
+
+    // How long a move waits for pushes in progress before skipping a repository.
+    private static final long LOCK_TIMEOUT_SECONDS = 60;
+
+    private final RepositoryService repositoryService;
+    private final RefStorageConverter refStorageConverter;
+    private final VcsProperties vcsProperties;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "repo-layout-migrator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile int total;
+    private volatile int processed;
+    private volatile int moved;
+    private volatile int failed;
+
+    public RepositoryLayoutMigrator(RepositoryService repositoryService, RefStorageConverter refStorageConverter,
+                                    VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.refStorageConverter = refStorageConverter;
+        this.vcsProperties = vcsProperties;
+    }
+
+    /**
+     * Start a migration run. Returns false if one is already running.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.submit(this::migrateAll);
+        return true;
+    }
+
+    private void migrateAll() {
+        try {
+            List<String> repositories = repositoryService.listRepositories();
+            total = repositories.size();
+            processed = 0;
+            moved = 0;
+            failed = 0;
+            logger.info("Migrating {} repositories to {} layout", total, vcsProperties.getStorage().getLayout());
+            long pauseMillis = vcsProperties.getStorage().getMigrationPause().toMillis();
+            for (String name : repositories) {
+                try {
+                    if (repositoryService.repositoryExists(name) && relocate(name)) {
+                        moved++;
+                        Thread.sleep(pauseMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    failed++;
+                    logger.warn("Could not migrate repository {}: {}", name, e.getMessage());
+                }
+                processed++;
+            }
+            logger.info("Layout migration finished: {} moved, {} failed", moved, failed);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private boolean relocate(String name) throws InterruptedException {
+        Lock lock = refStorageConverter.exclusiveLock(name);
+        if (!lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Timed out waiting for pushes to " + name + " to finish");
+        }
+        try {
+            return repositoryService.relocateRepository(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Status getStatus() {
+        return new Status(running.get(), total, processed, moved, failed);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Snapshot of migration progress.
+     */
+    public static class Status {
+        private final boolean running;
+        private final int total;
+        private final int processed;
+        private final int moved;
+        private final int failed;
+
+        public Status(boolean running, int total, int processed, int moved, int failed) {
+            this.running = running;
+            this.total = total;
+            this.processed = processed;
+            this.moved = moved;
+            this.failed = failed;
+        }
+
+        public boolean isRunning() { return running; }
+        public int getTotal() { return total; }
+        public int getProcessed() { return processed; }
+        public int getMoved() { return moved; }
+        public int getFailed() { return failed; }
+    }
+}
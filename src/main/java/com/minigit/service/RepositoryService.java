@@ -1,6 +1,10 @@
 package com.minigit.service;
 
+import com.minigit.dto.TrashEntry;
+import org.eclipse.jgit.lib.Repository;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -21,6 +25,12 @@ public interface RepositoryService {
      */
     List<String> listRepositories();
 
+    /**
+     * Count repositories without building the full list.
+     * @return number of repositories
+     */
+    int getRepositoryCount();
+
     /**
      * Check whether a repository exists.
      * @param name repository name
@@ -50,14 +60,63 @@ public interface RepositoryService {
     String normalizeRepositoryName(String name);
 
     /**
-     * Delete a repository.
+     * Delete a repository. It is moved to the trash and stays restorable until
+     * {@link com.minigit.service.RepositoryTrashReaper} reclaims it.
      * @param name repository name
      */
     void deleteRepository(String name);
 
+    /**
+     * List deleted repositories that are still in the trash, oldest first.
+     * @return trash entries
+     */
+    List<TrashEntry> listTrash();
+
+    /**
+     * Move a deleted repository back out of the trash.
+     * @param trashId trash entry id
+     * @return normalized name of the restored repository
+     */
+    String restoreRepository(String trashId);
+
+    /**
+     * Get the directory deleted repositories are moved to.
+     * @return trash directory
+     */
+    File getTrashDir();
+
     /**
      * Get the storage directory for all repositories.
      * @return storage directory file
      */
     java.io.File getStorageDir();
+
+    /**
+     * Move a repository to where the configured storage layout places it.
+     * @param name repository name
+     * @return whether the repository was moved
+     */
+    boolean relocateRepository(String name);
+
+    /**
+     * Open a repository through the shared JGit repository cache.
+     * The caller must close the returned repository.
+     * @param name repository name
+     * @return opened repository
+     */
+    Repository openRepository(String name) throws IOException;
+
+    /**
+     * Check whether a repository is exported for anonymous read access.
+     * @param name repository name
+     * @return whether it is public
+     */
+    boolean isPublicRepository(String name);
+
+    /**
+     * Mark a repository as public or private.
+     * @param name repository name
+     * @param exported whether anonymous read access is allowed
+     */
+    void setPublicRepository(String name, boolean exported);
 }
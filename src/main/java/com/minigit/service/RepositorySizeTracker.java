@@ -0,0 +1,209 @@
+package com.minigit.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.Pack;
+import org.eclipse.jgit.internal.storage.file.PackFile;
+import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the on-disk size of every repository in memory so it can be shown without
+ * walking the repository directory. Sizes are measured once in the background,
+ * adjusted by the pack and index size on each push, and re-measured periodically to
+ * pick up anything the increments miss (ref updates, repacking, loose objects).
+ */
+@Service
+public class RepositorySizeTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositorySizeTracker.class);
+
+    public static final long UNKNOWN = -1;
+
+    private final RepositoryService repositoryService;
+    private final Map<String, AtomicLong> sizes = new ConcurrentHashMap<>();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "repo-size-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RepositorySizeTracker(RepositoryService repositoryService, MeterRegistry meterRegistry) {
+        this.repositoryService = repositoryService;
+        Gauge.builder("minigit.storage.repositories.size", sizes,
+                        m -> m.values().stream().mapToLong(AtomicLong::get).sum())
+                .baseUnit("bytes")
+                .description("Total measured size of all repositories")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Size in bytes, or {@link #UNKNOWN} while the repository has not been measured yet
+     * (a measurement is then queued).
+     */
+    public long getSize(String name) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (normalizedName == null) {
+            return UNKNOWN;
+        }
+        AtomicLong size = sizes.get(normalizedName);
+        if (size == null) {
+            refresh(normalizedName);
+            return UNKNOWN;
+        }
+        return size.get();
+    }
+
+    /**
+     * Add the size of a received pack and of the index files written for it to the
+     * repository's total.
+     */
+    public void recordPush(Repository db, long packBytes) {
+        String name = db.getDirectory() != null ? db.getDirectory().getName() : null;
+        if (name == null) {
+            return;
+        }
+        AtomicLong size = sizes.get(name);
+        if (size != null) {
+            size.addAndGet(packBytes + indexBytes(db, packBytes));
+        } else {
+            refresh(name);
+        }
+    }
+
+    /**
+     * Size of the .idx and .bitmap of the newest pack of the given size. Receive-pack
+     * does not say which pack it wrote; a same-sized pack landing concurrently may be
+     * picked instead, which the next reconcile corrects.
+     */
+    static long indexBytes(Repository db, long packBytes) {
+        if (!(db.getObjectDatabase() instanceof ObjectDirectory)) {
+            return 0;
+        }
+        // Newest first.
+        for (Pack pack : ((ObjectDirectory) db.getObjectDatabase()).getPacks()) {
+            PackFile packFile = pack.getPackFile();
+            if (packFile.length() == packBytes) {
+                return packFile.create(PackExt.INDEX).length() + packFile.create(PackExt.BITMAP_INDEX).length();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Queue a re-measurement, e.g. after the repository was created or repacked.
+     */
+    public void refresh(String name) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (normalizedName != null && queued.add(normalizedName)) {
+            executor.submit(() -> {
+                queued.remove(normalizedName);
+                measureAndStore(normalizedName);
+            });
+        }
+    }
+
+    /**
+     * Drop a deleted repository.
+     */
+    public void forget(String name) {
+        String normalizedName = repositoryService.normalizeRepositoryName(name);
+        if (normalizedName != null) {
+            sizes.remove(normalizedName);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void measureAllOnStartup() {
+        executor.submit(this::reconcileAll);
+    }
+
+    @Scheduled(fixedDelayString = "#{@vcsProperties.storage.sizeReconcileInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.storage.sizeReconcileInterval.toMillis()}")
+    public void reconcile() {
+        executor.submit(this::reconcileAll);
+    }
+
+    /**
+     * Re-measure every repository and drop entries for repositories that no longer exist,
+     * on the calling thread.
+     */
+    public void reconcileAll() {
+        List<String> repositories = repositoryService.listRepositories();
+        if (repositories == null) {
+            return;
+        }
+        Set<String> known = new HashSet<>(repositories);
+        sizes.keySet().retainAll(known);
+        for (String name : repositories) {
+            measureAndStore(name);
+        }
+        logger.debug("Measured {} repositories", repositories.size());
+    }
+
+    private void measureAndStore(String name) {
+        if (!repositoryService.repositoryExists(name)) {
+            sizes.remove(name);
+            return;
+        }
+        File repoDir = repositoryService.getRepositoryPath(name);
+        if (repoDir == null || !repoDir.isDirectory()) {
+            // In-memory repositories have nothing on disk to measure.
+            return;
+        }
+        try {
+            long measured = measure(repoDir.toPath());
+            sizes.computeIfAbsent(name, k -> new AtomicLong()).set(measured);
+        } catch (IOException e) {
+            logger.warn("Failed to measure repository {}: {}", name, e.getMessage());
+        }
+    }
+
+    static long measure(Path dir) throws IOException {
+        AtomicLong total = new AtomicLong();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                total.addAndGet(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // Files may disappear while a push or repack is running.
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return total.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,198 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.dto.TrashEntry;
+import com.minigit.service.dfs.BlobRepositoryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reclaims the disk space of deleted repositories. Deletion only renames a repository
+ * into the trash; once its undo window has passed this reaper claims the entry by
+ * renaming it again (so it can no longer be restored) and removes its files at a
+ * limited rate, on its own thread so that the pauses do not hold up other scheduled tasks.
+ */
+@Service
+public class RepositoryTrashReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryTrashReaper.class);
+
+    // Suffix of trash entries claimed for deletion; also marks entries left over from an interrupted run.
+    static final String REAPING_SUFFIX = ".reaping";
+
+    private final RepositoryService repositoryService;
+    private final VcsProperties vcsProperties;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "repo-trash-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private BlobRepositoryManager blobRepositoryManager;
+
+    private volatile String current;
+    private volatile long filesDeleted;
+    private volatile long bytesFreed;
+
+    public RepositoryTrashReaper(RepositoryService repositoryService, VcsProperties vcsProperties) {
+        this.repositoryService = repositoryService;
+        this.vcsProperties = vcsProperties;
+    }
+
+    @Autowired(required = false)
+    public void setBlobRepositoryManager(BlobRepositoryManager blobRepositoryManager) {
+        this.blobRepositoryManager = blobRepositoryManager;
+    }
+
+    @Scheduled(fixedDelayString = "#{@vcsProperties.storage.reaperInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.storage.reaperInterval.toMillis()}")
+    public void reap() {
+        if (queued.compareAndSet(false, true)) {
+            executor.submit(() -> {
+                queued.set(false);
+                reapAll();
+            });
+        }
+    }
+
+    /**
+     * Claim and remove every trash entry past its undo window, on the calling thread.
+     */
+    public void reapAll() {
+        File trashDir = repositoryService.getTrashDir();
+        if (trashDir == null || !trashDir.isDirectory() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            File[] leftovers = trashDir.listFiles((dir, name) -> name.endsWith(REAPING_SUFFIX));
+            if (leftovers != null) {
+                for (File leftover : leftovers) {
+                    String name = leftover.getName();
+                    purge(leftover, name.contains("~") ? name.substring(0, name.indexOf('~')) : name);
+                }
+            }
+            List<TrashEntry> trash = repositoryService.listTrash();
+            for (TrashEntry entry : trash) {
+                if (!entry.isPurgeable()) {
+                    continue;
+                }
+                File claimed = new File(trashDir, entry.getId() + REAPING_SUFFIX);
+                try {
+                    Files.move(new File(trashDir, entry.getId()).toPath(), claimed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException e) {
+                    // Restored in the meantime.
+                    continue;
+                }
+                purge(claimed, entry.getRepoName());
+            }
+        } catch (InterruptedIOException e) {
+            // Shutting down; the claimed entry is picked up again on the next start.
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Failed to reclaim trash: {}", e.getMessage());
+        } finally {
+            current = null;
+            running.set(false);
+        }
+    }
+
+    private void purge(File dir, String label) throws IOException {
+        current = label;
+        filesDeleted = 0;
+        bytesFreed = 0;
+        long start = System.currentTimeMillis();
+        int batchSize = Math.max(1, vcsProperties.getStorage().getReaperMaxFilesPerSecond());
+        long[] batchStart = {System.currentTimeMillis()};
+        String dfsId = blobRepositoryManager != null ? BlobRepositoryManager.readDfsId(dir) : null;
+        if (dfsId != null) {
+            // Blobs first: the id file is what still points at them.
+            filesDeleted += blobRepositoryManager.deleteBlobs(dfsId);
+        }
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                bytesFreed += attrs.size();
+                if (++filesDeleted % batchSize == 0) {
+                    throttle(batchStart);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                if (exc != null) throw exc;
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        logger.info("Reclaimed {} from trash: {} files, {} bytes in {} ms",
+                label, filesDeleted, bytesFreed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Sleep out the rest of the second once a batch of files has been removed.
+     */
+    private static void throttle(long[] batchStart) throws InterruptedIOException {
+        long remaining = 1000 - (System.currentTimeMillis() - batchStart[0]);
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Trash reclamation interrupted");
+            }
+        }
+        batchStart[0] = System.currentTimeMillis();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Status getStatus() {
+        return new Status(running.get() && current != null, current, filesDeleted, bytesFreed);
+    }
+
+    /**
+     * Snapshot of reclamation progress.
+     */
+    public static class Status {
+        private final boolean running;
+        private final String current;
+        private final long filesDeleted;
+        private final long bytesFreed;
+
+        public Status(boolean running, String current, long filesDeleted, long bytesFreed) {
+            this.running = running;
+            this.current = current;
+            this.filesDeleted = filesDeleted;
+            this.bytesFreed = bytesFreed;
+        }
+
+        public boolean isRunning() { return running; }
+        public String getCurrent() { return current; }
+        public long getFilesDeleted() { return filesDeleted; }
+        public long getBytesFreed() { return bytesFreed; }
+    }
+}
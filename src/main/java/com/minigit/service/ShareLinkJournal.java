@@ -0,0 +1,378 @@
+package com.minigit.service;
+
+import com.minigit.dto.ShareLink;
+import com.minigit.dto.ShareLinkStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of share link changes. Each record is framed as
+ * {@code length, crc32, payload}; fields added later go at the end of a payload, so
+ * older records simply lack them. A record that is cut short or fails its checksum
+ * (a crash in the middle of a write) ends the replay, and later appends overwrite it.
+ * {@link #compact(Collection)} rewrites the journal as one record per link, plus one
+ * with its access counters if it has been used.
+ * <p>
+ * Appends are a single positional write into the OS page cache, so they survive a
+ * crash of the process; {@link #sync()} forces them to the device.
+ */
+public class ShareLinkJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareLinkJournal.class);
+
+    private static final int MAGIC = 0x4d47534c; // "MGSL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_SIZE = 8;
+    private static final byte CREATE = 1;
+    private static final byte REVOKE = 2;
+    private static final byte STATS = 3;
+
+    private final Path file;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    private long position;
+    private long records;
+    private volatile boolean dirty;
+
+    public ShareLinkJournal(Path file) {
+        this.file = file.toAbsolutePath();
+    }
+
+    /**
+     * Open the journal, creating it if needed, and read back every link it records.
+     * @return links by token, in creation order
+     */
+    public Map<String, ShareLink> replay() throws IOException {
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<String, ShareLink> links = new LinkedHashMap<>();
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            ((Buffer) header).flip();
+            writeFully(header, 0);
+            position = HEADER_SIZE;
+            return links;
+        }
+        // Typed as ByteBuffer and positioned through Buffer: the covariant overrides added in
+        // Java 9 would otherwise be linked when building on a newer JDK and fail on a Java 8 runtime.
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (size < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a share link journal: " + file);
+        }
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= FRAME_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                ((Buffer) buffer).position(start);
+                break;
+            }
+            ByteBuffer payload = buffer.slice();
+            ((Buffer) payload).limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                ((Buffer) buffer).position(start);
+                break;
+            }
+            try {
+                apply(payload, links);
+            } catch (RuntimeException e) {
+                // Checksum collision on a torn record, or a record this version cannot read.
+                ((Buffer) buffer).position(start);
+                break;
+            }
+            ((Buffer) buffer).position(start + FRAME_SIZE + length);
+            records++;
+        }
+        position = buffer.position();
+        if (position < size) {
+            logger.warn("Share link journal {} ends with {} unreadable bytes; they will be overwritten",
+                    file, size - position);
+            try {
+                channel.truncate(position);
+            } catch (IOException e) {
+                // Some platforms refuse while the file is still mapped; appends overwrite the tail instead.
+                logger.debug("Could not truncate share link journal: {}", e.getMessage());
+            }
+        }
+        return links;
+    }
+
+    public void appendCreate(ShareLink link) throws IOException {
+        append(encodeCreate(link));
+    }
+
+    public void appendRevoke(String token) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(1 + stringSize(token));
+        payload.put(REVOKE);
+        putString(payload, token);
+        append(payload);
+    }
+
+    /**
+     * Record the current access counters of a link; they replace the ones recorded before.
+     */
+    public void appendStats(ShareLink link) throws IOException {
+        append(encodeStats(link));
+    }
+
+    /**
+     * Number of records in a compacted journal holding these links.
+     */
+    public static long liveRecords(Collection<ShareLink> links) {
+        long count = 0;
+        for (ShareLink link : links) {
+            count += hasStats(link) ? 2 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * Number of records in the journal, including the ones later records supersede.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Replace the journal with one record per link.
+     */
+    public void compact(Collection<ShareLink> links) throws IOException {
+        lock.lock();
+        try {
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                long written;
+                long compactedRecords;
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                    ((Buffer) header).flip();
+                    while (header.hasRemaining()) {
+                        out.write(header);
+                    }
+                    long count = 0;
+                    for (ShareLink link : links) {
+                        ByteBuffer record = frame(encodeCreate(link));
+                        while (record.hasRemaining()) {
+                            out.write(record);
+                        }
+                        count++;
+                        if (hasStats(link)) {
+                            record = frame(encodeStats(link));
+                            while (record.hasRemaining()) {
+                                out.write(record);
+                            }
+                            count++;
+                        }
+                    }
+                    compactedRecords = count;
+                    written = out.position();
+                    out.force(true);
+                }
+                // Closed first: some platforms do not replace a file that is still open.
+                channel.close();
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    position = written;
+                    records = compactedRecords;
+                    dirty = false;
+                } finally {
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force appended records to the storage device.
+     */
+    public void sync() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        FileChannel current;
+        lock.lock();
+        try {
+            dirty = false;
+            current = channel;
+        } finally {
+            lock.unlock();
+        }
+        // Forced outside the lock so that appends are not held up by the device.
+        try {
+            current.force(false);
+        } catch (ClosedChannelException e) {
+            // Replaced by a compaction, which forced its own file.
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(ByteBuffer payload) throws IOException {
+        // Framing and checksumming happen outside the lock; only the write is serialized.
+        ByteBuffer record = frame(payload);
+        lock.lock();
+        try {
+            int length = record.remaining();
+            writeFully(record, position);
+            position += length;
+            records++;
+            dirty = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long at) throws IOException {
+        long offset = at;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static ByteBuffer frame(ByteBuffer payload) {
+        ((Buffer) payload).flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(FRAME_SIZE + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload);
+        ((Buffer) record).flip();
+        return record;
+    }
+
+    private static ByteBuffer encodeCreate(ShareLink link) {
+        String createdAt = link.getCreatedAt().toString();
+        String expiresAt = link.getExpiresAt() != null ? link.getExpiresAt().toString() : null;
+        ByteBuffer payload = ByteBuffer.allocate(2 + stringSize(link.getToken()) + stringSize(link.getRepoName())
+                + stringSize(link.getFilePath()) + stringSize(link.getBranch()) + stringSize(link.getFileName())
+                + stringSize(createdAt) + stringSize(expiresAt) + stringSize(link.getPasswordHash())
+                + stringSize(link.getArchiveFormat()) + stringSize(link.getObjectId()));
+        payload.put(CREATE);
+        putString(payload, link.getToken());
+        putString(payload, link.getRepoName());
+        putString(payload, link.getFilePath());
+        putString(payload, link.getBranch());
+        putString(payload, link.getFileName());
+        putString(payload, createdAt);
+        putString(payload, expiresAt);
+        putString(payload, link.getPasswordHash());
+        putString(payload, link.getArchiveFormat());
+        payload.put((byte) (link.isActive() ? 1 : 0));
+        putString(payload, link.getObjectId());
+        return payload;
+    }
+
+    private static boolean hasStats(ShareLink link) {
+        return link.getStats().getLastAccessedMillis() != 0;
+    }
+
+    private static ByteBuffer encodeStats(ShareLink link) {
+        ShareLinkStats stats = link.getStats();
+        ByteBuffer payload = ByteBuffer.allocate(1 + stringSize(link.getToken()) + 5 * 8);
+        payload.put(STATS);
+        putString(payload, link.getToken());
+        payload.putLong(stats.getViews()).putLong(stats.getRawHits()).putLong(stats.getDownloads())
+                .putLong(stats.getBytesServed()).putLong(stats.getLastAccessedMillis());
+        return payload;
+    }
+
+    private static void apply(ByteBuffer payload, Map<String, ShareLink> links) {
+        byte type = payload.get();
+        if (type == CREATE) {
+            String token = getString(payload);
+            String repoName = getString(payload);
+            String filePath = getString(payload);
+            String branch = getString(payload);
+            String fileName = getString(payload);
+            LocalDateTime createdAt = LocalDateTime.parse(getString(payload));
+            String expiresAt = getString(payload);
+            String passwordHash = getString(payload);
+            String archiveFormat = getString(payload);
+            boolean active = payload.get() != 0;
+            String objectId = payload.hasRemaining() ? getString(payload) : null;
+            ShareLink link = new ShareLink(token, repoName, filePath, branch, fileName, createdAt,
+                    expiresAt != null ? LocalDateTime.parse(expiresAt) : null, passwordHash, archiveFormat,
+                    objectId);
+            link.setActive(active);
+            links.put(token, link);
+        } else if (type == REVOKE) {
+            links.remove(getString(payload));
+        } else if (type == STATS) {
+            ShareLink link = links.get(getString(payload));
+            long views = payload.getLong();
+            long rawHits = payload.getLong();
+            long downloads = payload.getLong();
+            long bytesServed = payload.getLong();
+            long lastAccessed = payload.getLong();
+            if (link != null) {
+                link.getStats().restore(views, rawHits, downloads, bytesServed, lastAccessed);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown share link record type " + type);
+        }
+    }
+
+    private static int stringSize(String value) {
+        return 4 + (value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,29 +1,110 @@
 package com.minigit.service;
 
+import com.minigit.config.VcsProperties;
 import com.minigit.dto.ShareLink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * In-memory store for public file share links.
+ * Store for public file share links. Lookups are served from memory; every change is
+ * first appended to a {@link ShareLinkJournal}, which is replayed at startup.
+ * <p>
+ * Only usable links are kept: revoked links are dropped right away and links with an
+ * expiry sit in a {@link DelayQueue} that a background thread drains as they expire.
+ * A second index ordered by creation time serves {@link #list(String, int)} page by page.
+ * <p>
+ * With {@code vcs.share.signing-key} set, new links are signed tokens instead
+ * ({@link ShareTokenSigner}): they are neither journaled nor held here, any instance with
+ * the key resolves them, and revoking one adds it to the shared {@link ShareTokenRevocations}.
  */
 @Service
 public class ShareLinkService {
 
     private static final Logger logger = LoggerFactory.getLogger(ShareLinkService.class);
 
+    // The journal is only rewritten once it holds at least this many superseded records.
+    static final int COMPACT_MIN_DEAD_RECORDS = 1000;
+
+    static final int MAX_PAGE_SIZE = 500;
+
     private final ConcurrentHashMap<String, ShareLink> store = new ConcurrentHashMap<>();
+    // Newest first; keyed by creation time with the token as tie-breaker.
+    private final ConcurrentSkipListMap<CreationKey, ShareLink> byCreation =
+            new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+    private Thread expirer;
+    private final VcsProperties vcsProperties;
+    // Changes hold the read lock while they journal and apply, compaction the write lock.
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private ShareLinkJournal journal;
+    private ShareTokenSigner signer;
+    private ShareTokenRevocations revocations;
+
+    public ShareLinkService(VcsProperties vcsProperties) {
+        this.vcsProperties = vcsProperties;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        long start = System.currentTimeMillis();
+        journal = new ShareLinkJournal(vcsProperties.dataPath(vcsProperties.getShare().getJournalFile(), "share-links.journal").toPath());
+        for (ShareLink link : journal.replay().values()) {
+            if (link.isAccessible()) {
+                add(link);
+            }
+        }
+        logger.info("Loaded {} share links from {} journal records in {} ms",
+                store.size(), journal.getRecordCount(), System.currentTimeMillis() - start);
+        String signingKey = vcsProperties.getShare().getSigningKey();
+        if (signingKey != null && !signingKey.isEmpty()) {
+            signer = new ShareTokenSigner(signingKey);
+            revocations = new ShareTokenRevocations(vcsProperties.dataPath(vcsProperties.getShare().getRevocationFile(), "share-revocations").toPath());
+            revocations.refresh();
+            logger.info("New share links are signed tokens; {} revoked tokens loaded", revocations.size());
+        }
+        expirer = new Thread(this::expireLoop, "share-link-expirer");
+        expirer.setDaemon(true);
+        expirer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (expirer != null) {
+            expirer.interrupt();
+        }
+        flushStats();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close share link journal: {}", e.getMessage());
+        }
+    }
 
     /**
      * Create a new share link.
@@ -38,16 +119,77 @@ public class ShareLinkService {
      */
     public ShareLink createShareLink(String repoName, String filePath, String branch,
                                      String fileName, long expiresInHours, String password) {
+        return create(repoName, filePath, branch, fileName, expiresInHours, password, null, null);
+    }
+
+    /**
+     * Create a share link pinned to one version of a file: it keeps serving that blob
+     * after the branch moves on, which lets responses be cached indefinitely.
+     *
+     * @param repoName       repository name
+     * @param filePath       file path within the repository
+     * @param branch         branch the blob was resolved from, for display (may be null)
+     * @param fileName       display file name
+     * @param objectId       id of the blob to serve
+     * @param expiresInHours hours until expiry; 0 = never
+     * @param password       plain-text password; null or empty = no password
+     * @return newly created ShareLink
+     */
+    public ShareLink createPinnedShareLink(String repoName, String filePath, String branch, String fileName,
+                                           String objectId, long expiresInHours, String password) {
+        return create(repoName, filePath, branch, fileName, expiresInHours, password, null, objectId);
+    }
+
+    /**
+     * Create a share link for a zip / tar.gz archive of a directory.
+     *
+     * @param repoName       repository name
+     * @param dirPath        directory within the repository; empty = whole tree
+     * @param branch         branch, tag or commit (may be null for the default branch)
+     * @param fileName       display (download) file name
+     * @param archiveFormat  archive format extension, "zip" or "tar.gz"
+     * @param expiresInHours hours until expiry; 0 = never
+     * @param password       plain-text password; null or empty = no password
+     * @return newly created ShareLink
+     */
+    public ShareLink createArchiveShareLink(String repoName, String dirPath, String branch, String fileName,
+                                            String archiveFormat, long expiresInHours, String password) {
+        return create(repoName, dirPath, branch, fileName, expiresInHours, password, archiveFormat, null);
+    }
+
+    private ShareLink create(String repoName, String filePath, String branch, String fileName,
+                             long expiresInHours, String password, String archiveFormat, String objectId) {
+        if (signer != null) {
+            // Millisecond precision, as that is what the token carries.
+            LocalDateTime createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            LocalDateTime expiresAt = expiresInHours > 0 ? createdAt.plusHours(expiresInHours) : null;
+            String passwordHash = (password != null && !password.isEmpty()) ? signer.hashPassword(password) : null;
+            ShareLink link = signer.sign(repoName, filePath, branch, fileName, createdAt, expiresAt,
+                    passwordHash, archiveFormat, objectId);
+            logger.info("Signed share link created: repo={} path={} pinned={} expiresAt={} hasPassword={}",
+                    repoName, filePath, objectId, expiresAt, passwordHash != null);
+            return link;
+        }
         String token = UUID.randomUUID().toString();
         LocalDateTime createdAt = LocalDateTime.now();
         LocalDateTime expiresAt = expiresInHours > 0 ? createdAt.plusHours(expiresInHours) : null;
         String passwordHash = (password != null && !password.isEmpty()) ? sha256(password) : null;
 
         ShareLink link = new ShareLink(token, repoName, filePath, branch, fileName,
-                createdAt, expiresAt, passwordHash);
-        store.put(token, link);
-        logger.info("Share link created: token={} repo={} path={} expiresAt={} hasPassword={}",
-                token, repoName, filePath, expiresAt, passwordHash != null);
+                createdAt, expiresAt, passwordHash, archiveFormat, objectId);
+        journalLock.readLock().lock();
+        try {
+            // Journaled before it becomes visible, so a revocation is never recorded ahead of its link.
+            journal.appendCreate(link);
+            add(link);
+        } catch (IOException e) {
+            logger.error("Failed to record share link for {}:{}", repoName, filePath, e);
+            throw new RuntimeException("Failed to create share link", e);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        logger.info("Share link created: token={} repo={} path={} pinned={} expiresAt={} hasPassword={}",
+                token, repoName, filePath, objectId, expiresAt, passwordHash != null);
         return link;
     }
 
@@ -56,7 +198,14 @@ public class ShareLinkService {
      */
     public ShareLink getByToken(String token) {
         if (token == null) return null;
-        return store.get(token);
+        ShareLink link = store.get(token);
+        if (link == null && signer != null && ShareTokenSigner.isSigned(token)) {
+            link = signer.verify(token);
+            if (link != null && revocations.isRevoked(ShareTokenSigner.signatureOf(token))) {
+                return null;
+            }
+        }
+        return link;
     }
 
     /**
@@ -71,34 +220,272 @@ public class ShareLinkService {
         if (link == null || !link.isAccessible()) return false;
         if (link.getPasswordHash() == null) return true;
         if (password == null || password.isEmpty()) return false;
-        return link.getPasswordHash().equals(sha256(password));
+        String hash = ShareTokenSigner.isSigned(token) ? signer.hashPassword(password) : sha256(password);
+        return MessageDigest.isEqual(link.getPasswordHash().getBytes(StandardCharsets.US_ASCII),
+                hash.getBytes(StandardCharsets.US_ASCII));
     }
 
     /**
-     * Revoke (deactivate) a share link. No-op if not found.
+     * Revoke a share link; its token stops resolving at once. No-op if not found.
      */
     public void revokeToken(String token) {
         ShareLink link = store.get(token);
-        if (link != null) {
+        if (link == null) {
+            revokeSignedToken(token);
+            return;
+        }
+        journalLock.readLock().lock();
+        try {
+            journal.appendRevoke(token);
             link.setActive(false);
+            remove(link);
             logger.info("Share link revoked: token={}", token);
+        } catch (IOException e) {
+            logger.error("Failed to record revocation of share link {}", token, e);
+            throw new RuntimeException("Failed to revoke share link", e);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    private void revokeSignedToken(String token) {
+        ShareLink link = getByToken(token);
+        if (link == null || !ShareTokenSigner.isSigned(token)) {
+            return;
+        }
+        long expiresAt = link.getExpiresAt() != null ? link.getExpiresAtMillis() : 0;
+        try {
+            revocations.revoke(ShareTokenSigner.signatureOf(token), expiresAt);
+            logger.info("Signed share link revoked: repo={} path={}", link.getRepoName(), link.getFilePath());
+        } catch (IOException e) {
+            logger.error("Failed to record revocation of signed share link", e);
+            throw new RuntimeException("Failed to revoke share link", e);
+        }
+    }
+
+    /**
+     * One page of share links, most recently created first. Signed links are not listed.
+     *
+     * @param cursor {@link Page#getNextCursor()} of the previous page; null for the first page
+     * @param limit  page size, at most {@link #MAX_PAGE_SIZE}
+     */
+    public Page list(String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        NavigableMap<CreationKey, ShareLink> rest = byCreation;
+        CreationKey after = CreationKey.parse(cursor);
+        if (after != null) {
+            rest = byCreation.tailMap(after, false);
+        }
+        List<ShareLink> links = new ArrayList<>(size);
+        CreationKey last = null;
+        Iterator<Map.Entry<CreationKey, ShareLink>> it = rest.entrySet().iterator();
+        while (links.size() < size && it.hasNext()) {
+            Map.Entry<CreationKey, ShareLink> entry = it.next();
+            if (entry.getValue().isAccessible()) {
+                links.add(entry.getValue());
+                last = entry.getKey();
+            }
+        }
+        return new Page(Collections.unmodifiableList(links), it.hasNext() && last != null ? last.format() : null);
+    }
+
+    /**
+     * Number of share links currently held.
+     */
+    public int size() {
+        return store.size();
+    }
+
+    private void add(ShareLink link) {
+        store.put(link.getToken(), link);
+        byCreation.put(new CreationKey(link), link);
+        if (link.getExpiresAt() != null) {
+            expiries.put(new Expiry(link));
+        }
+    }
+
+    private void remove(ShareLink link) {
+        // Expiry entries of revoked links are left to run out; they hold only a reference.
+        if (store.remove(link.getToken(), link)) {
+            byCreation.remove(new CreationKey(link), link);
+        }
+    }
+
+    private void expireLoop() {
+        try {
+            while (true) {
+                remove(expiries.take().link);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down.
+        }
+    }
+
+    /**
+     * Force recent journal records to disk.
+     */
+    @Scheduled(fixedDelayString = "#{@vcsProperties.share.syncInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.share.syncInterval.toMillis()}")
+    public void syncJournal() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            logger.warn("Failed to sync share link journal: {}", e.getMessage());
         }
     }
 
     /**
-     * Return all share links, most recently created first.
+     * Journal the access counters of links used since the last call. Signed links are not
+     * held here, so their accesses are not kept.
+     * @return number of links whose counters were saved
      */
-    public List<ShareLink> listAll() {
-        List<ShareLink> result = new ArrayList<>(store.values());
-        result.sort(Comparator.comparing(ShareLink::getCreatedAt, Comparator.reverseOrder()));
-        return Collections.unmodifiableList(result);
+    @Scheduled(fixedDelayString = "#{@vcsProperties.share.statsFlushInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.share.statsFlushInterval.toMillis()}")
+    public int flushStats() {
+        int flushed = 0;
+        journalLock.readLock().lock();
+        try {
+            for (ShareLink link : store.values()) {
+                if (link.getStats().takeChanged()) {
+                    journal.appendStats(link);
+                    flushed++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to save share link access counters: {}", e.getMessage());
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        return flushed;
+    }
+
+    /**
+     * Pick up signed tokens other instances revoked.
+     */
+    @Scheduled(fixedDelayString = "#{@vcsProperties.share.syncInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.share.syncInterval.toMillis()}")
+    public void refreshRevocations() {
+        if (revocations == null) {
+            return;
+        }
+        try {
+            revocations.refresh();
+        } catch (IOException e) {
+            logger.warn("Failed to read share token revocations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite the journal as one record per link once most of its records are superseded.
+     * @return whether the journal was rewritten
+     */
+    @Scheduled(fixedDelayString = "#{@vcsProperties.share.compactInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.share.compactInterval.toMillis()}")
+    public boolean compactJournal() {
+        journalLock.writeLock().lock();
+        try {
+            long live = ShareLinkJournal.liveRecords(store.values());
+            long dead = journal.getRecordCount() - live;
+            if (dead < Math.max(COMPACT_MIN_DEAD_RECORDS, live)) {
+                return false;
+            }
+            journal.compact(new ArrayList<>(byCreation.descendingMap().values()));
+            logger.info("Compacted share link journal: {} superseded records dropped", dead);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to compact share link journal: {}", e.getMessage());
+            return false;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A page of share links and the cursor of the next one (null on the last page).
+     */
+    public static class Page {
+        private final List<ShareLink> links;
+        private final String nextCursor;
+
+        public Page(List<ShareLink> links, String nextCursor) {
+            this.links = links;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<ShareLink> getLinks() { return links; }
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    private static final class CreationKey implements Comparable<CreationKey> {
+        private final long createdAtMillis;
+        private final String token;
+
+        CreationKey(long createdAtMillis, String token) {
+            this.createdAtMillis = createdAtMillis;
+            this.token = token;
+        }
+
+        CreationKey(ShareLink link) {
+            this(link.getCreatedAtMillis(), link.getToken());
+        }
+
+        /** Cursor format: {@code <created millis>.<token>}; null if absent or malformed. */
+        static CreationKey parse(String cursor) {
+            int dot = cursor != null ? cursor.indexOf('.') : -1;
+            if (dot <= 0) {
+                return null;
+            }
+            try {
+                return new CreationKey(Long.parseLong(cursor.substring(0, dot)), cursor.substring(dot + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String format() {
+            return createdAtMillis + "." + token;
+        }
+
+        @Override
+        public int compareTo(CreationKey other) {
+            int byTime = Long.compare(createdAtMillis, other.createdAtMillis);
+            return byTime != 0 ? byTime : token.compareTo(other.token);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CreationKey && compareTo((CreationKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(createdAtMillis) * 31 + token.hashCode();
+        }
+    }
+
+    private static final class Expiry implements Delayed {
+        private final ShareLink link;
+
+        Expiry(ShareLink link) {
+            this.link = link;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(link.getExpiresAtMillis() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(link.getExpiresAtMillis(), ((Expiry) other).link.getExpiresAtMillis());
+        }
     }
 
     /** SHA-256 hex digest of a string. */
     private static String sha256(String input) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] bytes = md.digest(input.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            byte[] bytes = md.digest(input.getBytes(StandardCharsets.UTF_8));
             StringBuilder sb = new StringBuilder(64);
             for (byte b : bytes) sb.append(String.format("%02x", b));
             return sb.toString();
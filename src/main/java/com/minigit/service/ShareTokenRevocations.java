@@ -0,0 +1,107 @@
+package com.minigit.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked signed share tokens, so that a token can be withdrawn before it expires.
+ * <p>
+ * The list is a text file of {@code signature expires-at-millis} lines that every node
+ * appends to and re-reads when it grows; kept on a shared volume, a revocation on one
+ * node reaches the others within {@code vcs.share.sync-interval}. Only revocations whose
+ * token has not expired yet are held in memory, and a token that never expires is kept
+ * for good.
+ */
+public class ShareTokenRevocations {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareTokenRevocations.class);
+
+    private final Path file;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private long readUpTo;
+
+    public ShareTokenRevocations(Path file) {
+        this.file = file.toAbsolutePath();
+    }
+
+    public boolean isRevoked(String signature) {
+        Long expiresAt = revoked.get(signature);
+        return expiresAt != null && (expiresAt == 0 || expiresAt > System.currentTimeMillis());
+    }
+
+    /**
+     * Record a revocation.
+     * @param expiresAtMillis expiry of the token, after which the entry may be forgotten; 0 = never
+     */
+    public synchronized void revoke(String signature, long expiresAtMillis) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] line = (signature + " " + expiresAtMillis + "\n").getBytes(StandardCharsets.US_ASCII);
+        // One append of one short line, which concurrent writers on other nodes do not interleave.
+        Files.write(file, line, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        revoked.put(signature, expiresAtMillis);
+    }
+
+    /**
+     * Read lines other nodes appended since the last call, and forget expired entries.
+     */
+    public synchronized void refresh() throws IOException {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt != 0 && expiresAt <= now);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < readUpTo) {
+                // Replaced by a shorter file; start over.
+                readUpTo = 0;
+            }
+            if (size == readUpTo) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - readUpTo));
+            while (buffer.hasRemaining() && channel.read(buffer, readUpTo + buffer.position()) > 0) {
+                // Keep reading.
+            }
+            String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+            int end = text.lastIndexOf('\n');
+            if (end < 0) {
+                return;
+            }
+            for (String line : text.substring(0, end).split("\n")) {
+                parse(line, now);
+            }
+            // A line still being written is read on the next refresh.
+            readUpTo += end + 1;
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void parse(String line, long now) {
+        int space = line.indexOf(' ');
+        if (space <= 0) {
+            return;
+        }
+        try {
+            long expiresAt = Long.parseLong(line.substring(space + 1).trim());
+            if (expiresAt == 0 || expiresAt > now) {
+                revoked.put(line.substring(0, space), expiresAt);
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("Skipping malformed revocation line: {}", line);
+        }
+    }
+}
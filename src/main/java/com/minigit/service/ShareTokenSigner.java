@@ -0,0 +1,174 @@
+package com.minigit.service;
+
+import com.minigit.dto.ShareLink;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * Self-contained share tokens: the link itself, encoded and signed with HMAC-SHA256.
+ * Every node holding the same key can check a token and rebuild its link without a
+ * lookup. A token reads {@code payload.signature}, both base64url; the payload carries a
+ * random nonce, so links to the same file get distinct tokens.
+ * <p>
+ * Passwords are stored in the token as an HMAC under the same key, so a token cannot be
+ * used to guess its password offline.
+ */
+public class ShareTokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int NONCE_SIZE = 9;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public ShareTokenSigner(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("Share token signing key must not be empty");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Whether a token has the signed form; random tokens (UUIDs) never contain a dot.
+     */
+    public static boolean isSigned(String token) {
+        return token != null && token.indexOf('.') > 0;
+    }
+
+    /**
+     * The signature part of a signed token, which identifies it in the revocation list.
+     */
+    public static String signatureOf(String token) {
+        return token.substring(token.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Create a signed link. The token is derived from the other fields, so it is built here.
+     */
+    public ShareLink sign(String repoName, String filePath, String branch, String fileName,
+                          LocalDateTime createdAt, LocalDateTime expiresAt, String passwordHash,
+                          String archiveFormat, String objectId) {
+        byte[] nonce = new byte[NONCE_SIZE];
+        random.nextBytes(nonce);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.write(nonce);
+            out.writeLong(toMillis(createdAt));
+            out.writeLong(expiresAt != null ? toMillis(expiresAt) : 0);
+            writeString(out, repoName);
+            writeString(out, filePath);
+            writeString(out, branch);
+            writeString(out, fileName);
+            writeString(out, passwordHash);
+            writeString(out, archiveFormat);
+            writeString(out, objectId);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(mac(payload));
+        return new ShareLink(token, repoName, filePath, branch, fileName, createdAt, expiresAt,
+                passwordHash, archiveFormat, objectId);
+    }
+
+    /**
+     * Rebuild the link a token describes.
+     * @return the link, or null if the token is malformed or its signature does not match
+     */
+    public ShareLink verify(String token) {
+        if (!isSigned(token)) {
+            return null;
+        }
+        int dot = token.lastIndexOf('.');
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(mac(payload), signature)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+            in.readFully(new byte[NONCE_SIZE]);
+            LocalDateTime createdAt = fromMillis(in.readLong());
+            long expiresAt = in.readLong();
+            String repoName = readString(in);
+            String filePath = readString(in);
+            String branch = readString(in);
+            String fileName = readString(in);
+            String passwordHash = readString(in);
+            String archiveFormat = readString(in);
+            String objectId = readString(in);
+            return new ShareLink(token, repoName, filePath, branch, fileName, createdAt,
+                    expiresAt != 0 ? fromMillis(expiresAt) : null, passwordHash, archiveFormat, objectId);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Keyed hash of a share password, as carried in signed tokens.
+     */
+    public String hashPassword(String password) {
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : mac(("password:" + password).getBytes(StandardCharsets.UTF_8))) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private byte[] mac(byte[] data) {
+        try {
+            // Mac instances are not thread-safe and cheap to create.
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
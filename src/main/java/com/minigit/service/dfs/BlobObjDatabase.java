@@ -0,0 +1,225 @@
+package com.minigit.service.dfs;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsObjDatabase;
+import org.eclipse.jgit.internal.storage.dfs.DfsOutputStream;
+import org.eclipse.jgit.internal.storage.dfs.DfsPackDescription;
+import org.eclipse.jgit.internal.storage.dfs.DfsReaderOptions;
+import org.eclipse.jgit.internal.storage.dfs.ReadableChannel;
+import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+/**
+ * Object database of a {@link BlobRepository}. Every pack, index, bitmap and reftable
+ * is an immutable blob under {@code <id>/}; the set of live ones is recorded in the
+ * {@code <id>/manifest} blob, which is rewritten in one put per commit, so readers
+ * always see a complete list. Blobs dropped from the list (after compaction or GC)
+ * are deleted only once {@link #GARBAGE_GRACE} has passed, because readers may still
+ * hold them open. After each commit the number of live packs is reported, so that the
+ * manager can schedule a compaction.
+ */
+class BlobObjDatabase extends DfsObjDatabase {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobObjDatabase.class);
+
+    static final String MANIFEST = "manifest";
+    static final Duration GARBAGE_GRACE = Duration.ofHours(1);
+    private static final String GARBAGE = "garbage";
+
+    private final BlobStore store;
+    private final String prefix;
+    private final int blockSize;
+    private final IntConsumer packCountListener;
+
+    BlobObjDatabase(BlobRepository repository, DfsReaderOptions options, BlobStore store, int blockSize,
+                    IntConsumer packCountListener) {
+        super(repository, options);
+        this.store = store;
+        this.prefix = repository.getDescription().getRepositoryName() + "/";
+        this.blockSize = blockSize;
+        this.packCountListener = packCountListener;
+    }
+
+    @Override
+    protected DfsPackDescription newPack(PackSource source) {
+        String name = "pack-" + UUID.randomUUID().toString().replace("-", "") + "-" + source.name();
+        return new DfsPackDescription(getRepository().getDescription(), name, source)
+                .setLastModified(System.currentTimeMillis());
+    }
+
+    @Override
+    protected synchronized List<DfsPackDescription> listPacks() throws IOException {
+        return readManifest().packs;
+    }
+
+    @Override
+    protected synchronized void commitPackImpl(Collection<DfsPackDescription> desc,
+                                               Collection<DfsPackDescription> replace) throws IOException {
+        Manifest manifest = readManifest();
+        long now = System.currentTimeMillis();
+        if (replace != null) {
+            for (DfsPackDescription replaced : replace) {
+                if (manifest.packs.remove(replaced)) {
+                    for (PackExt ext : PackExt.values()) {
+                        if (replaced.hasFileExt(ext)) {
+                            manifest.garbage.add(new Garbage(key(replaced, ext), now));
+                        }
+                    }
+                }
+            }
+        }
+        for (DfsPackDescription added : desc) {
+            manifest.packs.remove(added);
+            manifest.packs.add(added);
+        }
+        List<Garbage> expired = new ArrayList<>();
+        manifest.garbage.removeIf(garbage -> {
+            if (now - garbage.droppedAt >= GARBAGE_GRACE.toMillis()) {
+                expired.add(garbage);
+                return true;
+            }
+            return false;
+        });
+        store.put(prefix + MANIFEST, manifest.encode());
+        for (Garbage garbage : expired) {
+            try {
+                store.delete(garbage.key);
+            } catch (IOException e) {
+                // Unreferenced now; deleting the whole repository cleans it up eventually.
+                logger.warn("Failed to delete replaced blob {}: {}", garbage.key, e.getMessage());
+            }
+        }
+        if (packCountListener != null) {
+            // Reftables are listed too but compacted by the ref database itself.
+            packCountListener.accept((int) manifest.packs.stream().filter(d -> d.hasFileExt(PackExt.PACK)).count());
+        }
+    }
+
+    @Override
+    protected void clearCache() {
+        // Overridden so that the manager can call it.
+        super.clearCache();
+    }
+
+    @Override
+    protected void rollbackPack(Collection<DfsPackDescription> desc) {
+        for (DfsPackDescription pack : desc) {
+            for (PackExt ext : PackExt.values()) {
+                try {
+                    store.delete(key(pack, ext));
+                } catch (IOException e) {
+                    logger.warn("Failed to delete abandoned blob {}: {}", key(pack, ext), e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected ReadableChannel openFile(DfsPackDescription desc, PackExt ext) throws IOException {
+        return new BlobReadableChannel(store.open(key(desc, ext)), blockSize);
+    }
+
+    @Override
+    protected DfsOutputStream writeFile(DfsPackDescription desc, PackExt ext) throws IOException {
+        return new BlobOutputStream(store, key(desc, ext), blockSize);
+    }
+
+    private String key(DfsPackDescription desc, PackExt ext) {
+        return prefix + desc.getFileName(ext);
+    }
+
+    private Manifest readManifest() throws IOException {
+        Manifest manifest = new Manifest();
+        byte[] data = store.get(prefix + MANIFEST);
+        if (data == null) {
+            return manifest;
+        }
+        for (String line : new String(data, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (GARBAGE.equals(fields[0])) {
+                manifest.garbage.add(new Garbage(fields[2], Long.parseLong(fields[1])));
+                continue;
+            }
+            DfsPackDescription desc = new DfsPackDescription(getRepository().getDescription(), fields[0],
+                    PackSource.valueOf(fields[1]))
+                    .setLastModified(Long.parseLong(fields[2]))
+                    .setMinUpdateIndex(Long.parseLong(fields[3]))
+                    .setMaxUpdateIndex(Long.parseLong(fields[4]))
+                    .setObjectCount(Long.parseLong(fields[5]))
+                    .setIndexVersion(Integer.parseInt(fields[6]));
+            String files = fields.length > 7 ? fields[7] : "";
+            for (String file : files.split(",")) {
+                int eq = file.indexOf('=');
+                PackExt ext = eq > 0 ? extension(file.substring(0, eq)) : null;
+                if (ext != null) {
+                    desc.addFileExt(ext);
+                    desc.setFileSize(ext, Long.parseLong(file.substring(eq + 1)));
+                }
+            }
+            manifest.packs.add(desc);
+        }
+        return manifest;
+    }
+
+    private static PackExt extension(String name) {
+        for (PackExt ext : PackExt.values()) {
+            if (ext.getExtension().equals(name)) {
+                return ext;
+            }
+        }
+        return null;
+    }
+
+    private static class Manifest {
+        final List<DfsPackDescription> packs = new ArrayList<>();
+        final List<Garbage> garbage = new ArrayList<>();
+
+        byte[] encode() {
+            StringBuilder sb = new StringBuilder();
+            for (DfsPackDescription desc : packs) {
+                StringBuilder files = new StringBuilder();
+                for (PackExt ext : PackExt.values()) {
+                    if (desc.hasFileExt(ext)) {
+                        if (files.length() > 0) files.append(',');
+                        files.append(ext.getExtension()).append('=').append(desc.getFileSize(ext));
+                    }
+                }
+                String fileName = desc.getFileName(PackExt.PACK);
+                sb.append(fileName, 0, fileName.length() - PackExt.PACK.getExtension().length() - 1).append('\t')
+                        .append(desc.getPackSource().name()).append('\t')
+                        .append(desc.getLastModified()).append('\t')
+                        .append(desc.getMinUpdateIndex()).append('\t')
+                        .append(desc.getMaxUpdateIndex()).append('\t')
+                        .append(desc.getObjectCount()).append('\t')
+                        .append(desc.getIndexVersion()).append('\t')
+                        .append(files).append('\n');
+            }
+            for (Garbage garbage : this.garbage) {
+                sb.append(GARBAGE).append('\t').append(garbage.droppedAt).append('\t').append(garbage.key).append('\n');
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class Garbage {
+        final String key;
+        final long droppedAt;
+
+        Garbage(String key, long droppedAt) {
+            this.key = key;
+            this.droppedAt = droppedAt;
+        }
+    }
+}
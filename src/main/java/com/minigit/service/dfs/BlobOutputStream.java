@@ -0,0 +1,65 @@
+package com.minigit.service.dfs;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsOutputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Spools a new pack file (or index, reftable) to a local temporary file and uploads
+ * it as one blob when closed. JGit reads back what it has written while resolving
+ * deltas, which the temporary file serves without touching the blob store.
+ */
+class BlobOutputStream extends DfsOutputStream {
+
+    private final BlobStore store;
+    private final String key;
+    private final Path temp;
+    private final FileChannel channel;
+    private final int blockSize;
+    private boolean closed;
+
+    BlobOutputStream(BlobStore store, String key, int blockSize) throws IOException {
+        this.store = store;
+        this.key = key;
+        this.blockSize = blockSize;
+        this.temp = Files.createTempFile("minigit-dfs-", ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(buf, off, len);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    @Override
+    public int read(long position, ByteBuffer buf) throws IOException {
+        return channel.read(buf, position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+            store.upload(key, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
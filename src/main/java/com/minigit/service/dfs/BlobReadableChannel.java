@@ -0,0 +1,68 @@
+package com.minigit.service.dfs;
+
+import org.eclipse.jgit.internal.storage.dfs.ReadableChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ReadableChannel} over one blob. JGit reads whole cache blocks through it,
+ * so every read maps to one positional read on the blob store.
+ */
+class BlobReadableChannel implements ReadableChannel {
+
+    private final BlobStore.BlobReader reader;
+    private final int blockSize;
+    private long position;
+    private boolean open = true;
+
+    BlobReadableChannel(BlobStore.BlobReader reader, int blockSize) {
+        this.reader = reader;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int n = reader.read(position, dst);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void position(long newPosition) {
+        position = newPosition;
+    }
+
+    @Override
+    public long size() {
+        return reader.size();
+    }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void setReadAheadBytes(int bufferSize) {
+        // Reads are already block sized; nothing to prefetch.
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        reader.close();
+    }
+}
@@ -0,0 +1,14 @@
+package com.minigit.service.dfs;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsReftableDatabase;
+
+/**
+ * Refs of a {@link BlobRepository}, kept as a stack of reftables in the object database;
+ * every ref transaction writes a new small reftable blob and updates the manifest once.
+ */
+class BlobRefDatabase extends DfsReftableDatabase {
+
+    BlobRefDatabase(BlobRepository repository) {
+        super(repository);
+    }
+}
@@ -0,0 +1,115 @@
+package com.minigit.service.dfs;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsObjDatabase;
+import org.eclipse.jgit.internal.storage.dfs.DfsReaderOptions;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryBuilder;
+import org.eclipse.jgit.lib.RefDatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Repository whose objects and refs live in a {@link BlobStore}, read through the shared
+ * {@link org.eclipse.jgit.internal.storage.dfs.DfsBlockCache}.
+ * <p>
+ * The repository still has a small local directory in the storage tree (holding only its
+ * DFS id), which is reported as {@link #getDirectory()} so that listing, renaming, trash
+ * and the code that names repositories by directory keep working unchanged.
+ */
+public class BlobRepository extends DfsRepository {
+
+    private final BlobObjDatabase objectDatabase;
+    private final BlobRefDatabase refDatabase;
+    private final File metadataDir;
+    // Opens handed out by BlobRepositoryManager that have not been closed yet.
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private BlobRepository(Builder builder) {
+        super(builder);
+        this.metadataDir = builder.metadataDir;
+        this.objectDatabase = new BlobObjDatabase(this, builder.getReaderOptions(), builder.store, builder.blockSize,
+                builder.packCountListener);
+        this.refDatabase = new BlobRefDatabase(this);
+    }
+
+    @Override
+    public DfsObjDatabase getObjectDatabase() {
+        return objectDatabase;
+    }
+
+    @Override
+    public RefDatabase getRefDatabase() {
+        return refDatabase;
+    }
+
+    @Override
+    public File getDirectory() {
+        return metadataDir;
+    }
+
+    @Override
+    public void incrementOpen() {
+        users.incrementAndGet();
+        lastUsed = System.currentTimeMillis();
+        super.incrementOpen();
+    }
+
+    @Override
+    public void close() {
+        users.decrementAndGet();
+        lastUsed = System.currentTimeMillis();
+        super.close();
+    }
+
+    /**
+     * Whether no caller holds the repository and it was last opened or closed before {@code cutoff}.
+     */
+    boolean isIdleSince(long cutoff) {
+        return users.get() <= 0 && lastUsed < cutoff;
+    }
+
+    public static class Builder extends DfsRepositoryBuilder<Builder, BlobRepository> {
+        private BlobStore store;
+        private File metadataDir;
+        private int blockSize;
+        private IntConsumer packCountListener;
+
+        public Builder setBlobStore(BlobStore store) {
+            this.store = store;
+            return this;
+        }
+
+        public Builder setMetadataDir(File metadataDir) {
+            this.metadataDir = metadataDir;
+            return this;
+        }
+
+        public Builder setBlockSize(int blockSize) {
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Called with the number of live packs after every pack commit.
+         */
+        public Builder setPackCountListener(IntConsumer packCountListener) {
+            this.packCountListener = packCountListener;
+            return this;
+        }
+
+        @Override
+        public BlobRepository build() throws IOException {
+            if (store == null || getRepositoryDescription() == null) {
+                throw new IllegalArgumentException("A blob store and repository description are required");
+            }
+            if (getReaderOptions() == null) {
+                setReaderOptions(new DfsReaderOptions());
+            }
+            return new BlobRepository(this);
+        }
+    }
+}
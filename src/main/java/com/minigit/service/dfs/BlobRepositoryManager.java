@@ -0,0 +1,256 @@
+package com.minigit.service.dfs;
+
+import com.minigit.config.VcsProperties;
+import org.eclipse.jgit.internal.storage.dfs.DfsBlockCache;
+import org.eclipse.jgit.internal.storage.dfs.DfsBlockCacheConfig;
+import org.eclipse.jgit.internal.storage.dfs.DfsPackCompactor;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves repositories from JGit's DFS storage on the configured {@link BlobStore}
+ * ({@code vcs.storage.backend=dfs}). All repositories share one
+ * {@link DfsBlockCache}, so hot pack blocks are read from the store once.
+ * <p>
+ * A DFS repository keeps a directory in the storage tree like any other repository,
+ * but it only holds the {@link #DFS_ID_FILE} naming the blob prefix; the id, not the
+ * repository name, keys the blobs, so renames and trash restores never touch the store.
+ * Open repositories are kept and shared between requests. The manifest of a repository
+ * is only written by this process, so a repository must be served by a single node.
+ * <p>
+ * Every push adds a pack. Once a repository has {@code vcs.dfs.compact-pack-count} of them,
+ * its small packs are rewritten into one in the background; unreachable objects are
+ * not pruned.
+ */
+@Service
+@ConditionalOnProperty(prefix = "vcs.storage", name = "backend", havingValue = "dfs")
+public class BlobRepositoryManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobRepositoryManager.class);
+
+    public static final String DFS_ID_FILE = "minigit-dfs-id";
+
+    private final BlobStore store;
+    private final int blockSize;
+    private final int compactPackCount;
+    private final Map<String, BlobRepository> open = new ConcurrentHashMap<>();
+    private final Set<String> compacting = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "dfs-pack-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BlobRepositoryManager(VcsProperties vcsProperties) throws IOException {
+        VcsProperties.Dfs dfs = vcsProperties.getDfs();
+        this.blockSize = (int) dfs.getBlockSize().toBytes();
+        this.compactPackCount = dfs.getCompactPackCount();
+        DfsBlockCache.reconfigure(new DfsBlockCacheConfig()
+                .setBlockSize(blockSize)
+                .setBlockLimit(dfs.getBlockCacheSize().toBytes()));
+        if (dfs.getBlobStore() == VcsProperties.Dfs.BlobStoreType.S3) {
+            VcsProperties.S3 s3 = dfs.getS3();
+            if (s3.getEndpoint() == null || s3.getBucket() == null) {
+                throw new IllegalStateException("vcs.dfs.s3.endpoint and vcs.dfs.s3.bucket are required");
+            }
+            this.store = new S3BlobStore(s3.getEndpoint(), s3.getBucket(), s3.getRegion(),
+                    s3.getAccessKey(), s3.getSecretKey());
+            logger.info("DFS storage on S3 bucket {} at {}", s3.getBucket(), s3.getEndpoint());
+        } else {
+            Path localDir = vcsProperties.dataPath(dfs.getLocalDir(), "blobs").toPath();
+            this.store = new LocalBlobStore(localDir);
+            logger.info("DFS storage in local directory {}", localDir.toAbsolutePath());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+        for (String id : open.keySet()) {
+            evict(id);
+        }
+    }
+
+    /**
+     * Create the DFS repository for a freshly created repository directory.
+     */
+    public void create(File repoDir) throws IOException {
+        String base = repoDir.getName().endsWith(".git")
+                ? repoDir.getName().substring(0, repoDir.getName().length() - ".git".length()) : repoDir.getName();
+        String id = base + "-" + UUID.randomUUID().toString().replace("-", "");
+        Files.createDirectories(repoDir.toPath());
+        Files.write(new File(repoDir, DFS_ID_FILE).toPath(), id.getBytes(StandardCharsets.UTF_8));
+        try (BlobRepository repository = build(id, repoDir)) {
+            // Writes the first reftable with HEAD pointing at master.
+            repository.create(true);
+        }
+    }
+
+    /**
+     * Open the repository of a directory that carries a DFS id. The returned instance is
+     * shared; callers close it as usual.
+     */
+    public BlobRepository open(File repoDir) throws IOException {
+        String id = readDfsId(repoDir);
+        if (id == null) {
+            throw new IOException("Not a DFS repository: " + repoDir);
+        }
+        // Counted inside compute so that an idle sweep never closes an instance being handed out.
+        return open.compute(id, (key, cached) -> {
+            BlobRepository repository = cached;
+            if (repository != null && !repoDir.equals(repository.getDirectory())) {
+                // Renamed or restored since it was opened.
+                repository.close();
+                repository = null;
+            }
+            if (repository == null) {
+                try {
+                    repository = build(key, repoDir);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            repository.incrementOpen();
+            return repository;
+        });
+    }
+
+    /**
+     * Drop the shared instance of a repository, e.g. once it has been deleted.
+     */
+    public void evict(String id) {
+        BlobRepository repository = open.remove(id);
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    /**
+     * Drop shared instances that no caller holds and nobody has used for {@code idleMillis}.
+     * Their pack blocks stay in the block cache until newer blocks push them out.
+     * @return number of instances dropped
+     */
+    public int evictIdle(long idleMillis) {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        for (String id : open.keySet()) {
+            boolean[] dropped = new boolean[1];
+            open.computeIfPresent(id, (key, repository) -> {
+                if (!repository.isIdleSince(cutoff)) {
+                    return repository;
+                }
+                repository.close();
+                dropped[0] = true;
+                return null;
+            });
+            if (dropped[0]) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Rewrite the packs of a repository below JGit's compaction size limit (5 MiB) into
+     * one pack. The replaced blobs are deleted after {@link BlobObjDatabase#GARBAGE_GRACE}.
+     * @return number of packs replaced
+     */
+    public int compact(File repoDir) throws IOException {
+        try (BlobRepository repository = open(repoDir)) {
+            DfsPackCompactor packCompactor = new DfsPackCompactor(repository).autoAdd();
+            int sources = packCompactor.getSourcePacks().size();
+            if (sources < 2) {
+                return 0;
+            }
+            long start = System.currentTimeMillis();
+            packCompactor.compact(NullProgressMonitor.INSTANCE);
+            // The compactor leaves the cached pack list as it was; read it back from the new manifest.
+            ((BlobObjDatabase) repository.getObjectDatabase()).clearCache();
+            logger.info("Compacted {} packs of DFS repository {} in {} ms",
+                    sources, readDfsId(repoDir), System.currentTimeMillis() - start);
+            return sources;
+        }
+    }
+
+    private void packsCommitted(String id, File repoDir, int packCount) {
+        if (compactPackCount <= 0 || packCount < compactPackCount || !compacting.add(id)) {
+            return;
+        }
+        compactor.submit(() -> {
+            try {
+                compact(repoDir);
+            } catch (IOException | RuntimeException e) {
+                // Renamed or deleted since the push; the next push schedules it again.
+                logger.warn("Failed to compact DFS repository {}: {}", id, e.getMessage());
+            } finally {
+                compacting.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Delete every blob of a repository.
+     * @return number of blobs deleted
+     */
+    public int deleteBlobs(String id) throws IOException {
+        evict(id);
+        List<String> keys = store.list(id + "/");
+        // The manifest goes first so that an interrupted delete never leaves a manifest naming missing packs.
+        String manifest = id + "/" + BlobObjDatabase.MANIFEST;
+        store.delete(manifest);
+        for (String key : keys) {
+            if (!key.equals(manifest)) {
+                store.delete(key);
+            }
+        }
+        logger.info("Deleted {} blobs of DFS repository {}", keys.size(), id);
+        return keys.size();
+    }
+
+    public BlobStore getBlobStore() {
+        return store;
+    }
+
+    private BlobRepository build(String id, File repoDir) throws IOException {
+        return new BlobRepository.Builder()
+                .setRepositoryDescription(new DfsRepositoryDescription(id))
+                .setBlobStore(store)
+                .setBlockSize(blockSize)
+                .setMetadataDir(repoDir)
+                .setPackCountListener(count -> packsCommitted(id, repoDir, count))
+                .build();
+    }
+
+    /**
+     * DFS id of a repository directory, or null if the repository is stored as plain files.
+     */
+    public static String readDfsId(File repoDir) {
+        try {
+            return new String(Files.readAllBytes(new File(repoDir, DFS_ID_FILE).toPath()), StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to read DFS id of {}: {}", repoDir, e.getMessage());
+            return null;
+        }
+    }
+}
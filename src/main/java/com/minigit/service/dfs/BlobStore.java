@@ -0,0 +1,60 @@
+package com.minigit.service.dfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Flat key/value storage for immutable blobs (pack files, indexes, reftables) and
+ * small mutable manifests. Keys use {@code /} as separator.
+ */
+public interface BlobStore {
+
+    /**
+     * Open a blob for random reads.
+     * @throws java.io.FileNotFoundException if the blob does not exist
+     */
+    BlobReader open(String key) throws IOException;
+
+    /**
+     * Read a whole (small) blob.
+     * @return content, or null if the blob does not exist
+     */
+    byte[] get(String key) throws IOException;
+
+    /**
+     * Store a small blob, replacing any previous content atomically.
+     */
+    void put(String key, byte[] data) throws IOException;
+
+    /**
+     * Store the content of a local file as a blob.
+     */
+    void upload(String key, Path file) throws IOException;
+
+    /**
+     * Delete a blob; missing blobs are ignored.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * List the keys that start with {@code prefix}.
+     */
+    List<String> list(String prefix) throws IOException;
+
+    /**
+     * Random access to one blob.
+     */
+    interface BlobReader extends Closeable {
+
+        long size();
+
+        /**
+         * Read into {@code dst} starting at {@code position}.
+         * @return number of bytes read, or -1 at the end of the blob
+         */
+        int read(long position, ByteBuffer dst) throws IOException;
+    }
+}
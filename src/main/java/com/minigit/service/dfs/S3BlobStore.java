@@ -0,0 +1,309 @@
+package com.minigit.service.dfs;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Blob store on an S3-compatible object service (AWS S3, MinIO, Ceph RGW, ...), using
+ * path-style URLs and Signature Version 4. Only the handful of calls the DFS layer needs
+ * are implemented, over plain {@link HttpURLConnection}; reads are ranged GETs, so only
+ * the blocks that miss the DFS block cache are fetched.
+ */
+public class S3BlobStore implements BlobStore {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+
+    public S3BlobStore(String endpoint, String bucket, String region, String accessKey, String secretKey) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public BlobReader open(String key) throws IOException {
+        HttpURLConnection head = request("HEAD", key, null, null);
+        int status = head.getResponseCode();
+        if (status == 404) {
+            throw new FileNotFoundException(key);
+        }
+        check(head, status, key);
+        long size = head.getContentLengthLong();
+        return new BlobReader() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public int read(long position, ByteBuffer dst) throws IOException {
+                if (position >= size) {
+                    return -1;
+                }
+                long end = Math.min(size, position + dst.remaining()) - 1;
+                Map<String, String> headers = new TreeMap<>();
+                headers.put("Range", "bytes=" + position + "-" + end);
+                HttpURLConnection get = request("GET", key, null, headers);
+                int status = get.getResponseCode();
+                check(get, status, key);
+                if (status != 206 && position != 0) {
+                    // A 200 carries the object from its first byte, not from position.
+                    get.disconnect();
+                    throw new IOException("GET " + key + " ignored the requested range (HTTP " + status + ")");
+                }
+                int total = 0;
+                try (InputStream in = get.getInputStream()) {
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while (dst.hasRemaining() && (n = in.read(buf, 0, Math.min(buf.length, dst.remaining()))) > 0) {
+                        dst.put(buf, 0, n);
+                        total += n;
+                    }
+                }
+                return total;
+            }
+
+            @Override
+            public void close() {
+                // Every read is a separate request.
+            }
+        };
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        HttpURLConnection get = request("GET", key, null, null);
+        int status = get.getResponseCode();
+        if (status == 404) {
+            return null;
+        }
+        check(get, status, key);
+        try (InputStream in = get.getInputStream()) {
+            return readAll(in);
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] data) throws IOException {
+        HttpURLConnection put = request("PUT", key, null, null);
+        put.setDoOutput(true);
+        put.setFixedLengthStreamingMode(data.length);
+        try (OutputStream out = put.getOutputStream()) {
+            out.write(data);
+        }
+        check(put, put.getResponseCode(), key);
+    }
+
+    @Override
+    public void upload(String key, Path file) throws IOException {
+        HttpURLConnection put = request("PUT", key, null, null);
+        put.setDoOutput(true);
+        put.setFixedLengthStreamingMode(Files.size(file));
+        try (OutputStream out = put.getOutputStream()) {
+            Files.copy(file, out);
+        }
+        check(put, put.getResponseCode(), key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpURLConnection delete = request("DELETE", key, null, null);
+        int status = delete.getResponseCode();
+        if (status != 404) {
+            check(delete, status, key);
+        }
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String token = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (token != null) {
+                query.put("continuation-token", token);
+            }
+            HttpURLConnection get = request("GET", "", query, null);
+            check(get, get.getResponseCode(), prefix);
+            Document doc;
+            try (InputStream in = get.getInputStream()) {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+                doc = factory.newDocumentBuilder().parse(in);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Invalid list response for " + prefix, e);
+            }
+            NodeList contents = doc.getElementsByTagName("Key");
+            for (int i = 0; i < contents.getLength(); i++) {
+                keys.add(contents.item(i).getTextContent());
+            }
+            NodeList truncated = doc.getElementsByTagName("IsTruncated");
+            NodeList next = doc.getElementsByTagName("NextContinuationToken");
+            token = truncated.getLength() > 0 && "true".equals(truncated.item(0).getTextContent())
+                    && next.getLength() > 0 ? next.item(0).getTextContent() : null;
+        } while (token != null);
+        return keys;
+    }
+
+    private HttpURLConnection request(String method, String key, Map<String, String> query,
+                                      Map<String, String> extraHeaders) throws IOException {
+        String path = endpoint.getRawPath() + "/" + encodePath(bucket) + (key.isEmpty() ? "/" : "/" + encodePath(key));
+        String canonicalQuery = canonicalQuery(query);
+        URL url = new URL(endpoint.getScheme(), endpoint.getHost(), endpoint.getPort(),
+                path + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String date = amzDate.substring(0, 8);
+        String host = endpoint.getPort() > 0 ? endpoint.getHost() + ":" + endpoint.getPort() : endpoint.getHost();
+
+        Map<String, String> signed = new TreeMap<>();
+        signed.put("host", host);
+        signed.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        signed.put("x-amz-date", amzDate);
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> header : signed.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+        String signedHeaders = String.join(";", signed.keySet());
+        String canonicalRequest = method + "\n" + path + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaders + "\n" + UNSIGNED_PAYLOAD;
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+        byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date),
+                region), "s3"), "aws4_request");
+        String signature = hex(hmac(signingKey, stringToSign));
+
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(10_000);
+        conn.setReadTimeout(60_000);
+        conn.setRequestProperty("x-amz-date", amzDate);
+        conn.setRequestProperty("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        conn.setRequestProperty("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        if (extraHeaders != null) {
+            extraHeaders.forEach(conn::setRequestProperty);
+        }
+        return conn;
+    }
+
+    private static void check(HttpURLConnection conn, int status, String key) throws IOException {
+        if (status / 100 != 2) {
+            String body = "";
+            InputStream error = conn.getErrorStream();
+            if (error != null) {
+                try (InputStream in = error) {
+                    body = new String(readAll(in), StandardCharsets.UTF_8);
+                }
+            }
+            throw new IOException(conn.getRequestMethod() + " " + key + " failed with HTTP " + status
+                    + (body.isEmpty() ? "" : ": " + body));
+        }
+    }
+
+    private static String canonicalQuery(Map<String, String> query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> param : new TreeMap<>(query).entrySet()) {
+            if (sb.length() > 0) sb.append('&');
+            sb.append(encode(param.getKey())).append('=').append(encode(param.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static String encodePath(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (String segment : key.split("/", -1)) {
+            if (sb.length() > 0 || key.startsWith("/")) sb.append('/');
+            sb.append(encode(segment));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * RFC 3986 encoding as required by SigV4 (spaces as %20, '~' unescaped).
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name())
+                    .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] sha256(String data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,236 @@
+package com.minigit.service.impl;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.dto.TrashEntry;
+import com.minigit.service.RepositoryService;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repository service keeping every repository in memory with JGit's
+ * {@link InMemoryRepository}, enabled with the {@code memory} profile. Nothing is
+ * written to disk and everything is lost on shutdown; it is meant for integration
+ * tests and benchmarks that should push, clone and browse without disk I/O.
+ * <p>
+ * Repositories report a directory below a per-instance root that never exists, so
+ * code naming repositories by directory keeps working; features that work on the
+ * repository files themselves (size measurement, object pools, ref storage
+ * conversion) see no files and do nothing.
+ */
+@Service
+@Profile("memory")
+public class InMemoryRepositoryService implements RepositoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryRepositoryService.class);
+
+    private static final String TRASH_ID_SEPARATOR = "~";
+
+    private final VcsProperties vcsProperties;
+    private final File storageDir = new File(System.getProperty("java.io.tmpdir"));
+    private final File virtualRoot = new File(storageDir, "minigit-memory-" + UUID.randomUUID());
+    private final Map<String, MemoryRepository> repositories = new ConcurrentHashMap<>();
+    private final Map<String, MemoryRepository> trash = new ConcurrentHashMap<>();
+    private final Set<String> exported = ConcurrentHashMap.newKeySet();
+
+    public InMemoryRepositoryService(VcsProperties vcsProperties) {
+        this.vcsProperties = vcsProperties;
+        logger.info("Repositories are kept in memory and discarded on shutdown");
+    }
+
+    @Override
+    public synchronized File createRepository(String name) {
+        String normalizedName = normalizeRepositoryName(name);
+        if (!isValidRepositoryName(name)) {
+            throw new IllegalArgumentException("Invalid repository name: " + name);
+        }
+        if (repositories.containsKey(normalizedName)) {
+            throw new IllegalArgumentException("Repository already exists: " + normalizedName);
+        }
+        File repoDir = new File(virtualRoot, normalizedName);
+        MemoryRepository repository = new MemoryRepository(normalizedName, repoDir);
+        try {
+            repository.create(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create repository", e);
+        }
+        repositories.put(normalizedName, repository);
+        logger.info("Created in-memory repository: {}", normalizedName);
+        return repoDir;
+    }
+
+    @Override
+    public List<String> listRepositories() {
+        List<String> names = new ArrayList<>(repositories.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public int getRepositoryCount() {
+        return repositories.size();
+    }
+
+    @Override
+    public boolean repositoryExists(String name) {
+        String normalizedName = normalizeRepositoryName(name);
+        return normalizedName != null && repositories.containsKey(normalizedName);
+    }
+
+    @Override
+    public File getRepositoryPath(String name) {
+        return new File(virtualRoot, normalizeRepositoryName(name));
+    }
+
+    @Override
+    public boolean isValidRepositoryName(String name) {
+        return RepositoryNames.isValid(name);
+    }
+
+    @Override
+    public String normalizeRepositoryName(String name) {
+        return RepositoryNames.normalize(name);
+    }
+
+    @Override
+    public synchronized void deleteRepository(String name) {
+        String normalizedName = normalizeRepositoryName(name);
+        MemoryRepository repository = repositories.remove(normalizedName);
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository not found: " + normalizedName);
+        }
+        exported.remove(normalizedName);
+        trash.put(normalizedName + TRASH_ID_SEPARATOR + System.currentTimeMillis(), repository);
+        logger.info("Moved in-memory repository {} to trash", normalizedName);
+    }
+
+    /**
+     * Entries whose retention has passed are dropped here, as there is no reaper for memory.
+     */
+    @Override
+    public List<TrashEntry> listTrash() {
+        Duration retention = vcsProperties.getStorage().getTrashRetention();
+        List<TrashEntry> entries = new ArrayList<>();
+        for (String id : new ArrayList<>(trash.keySet())) {
+            int separator = id.lastIndexOf(TRASH_ID_SEPARATOR);
+            LocalDateTime deletedAt = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(Long.parseLong(id.substring(separator + 1))), ZoneId.systemDefault());
+            TrashEntry entry = new TrashEntry(id, id.substring(0, separator), deletedAt, deletedAt.plus(retention));
+            if (entry.isPurgeable()) {
+                MemoryRepository purged = trash.remove(id);
+                if (purged != null) {
+                    purged.close();
+                }
+            } else {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparing(TrashEntry::getDeletedAt));
+        return entries;
+    }
+
+    @Override
+    public synchronized String restoreRepository(String trashId) {
+        MemoryRepository repository = trashId != null ? trash.get(trashId) : null;
+        if (repository == null) {
+            throw new IllegalArgumentException("Trash entry not found: " + trashId);
+        }
+        if (repositories.containsKey(repository.name)) {
+            throw new IllegalArgumentException("Repository already exists: " + repository.name);
+        }
+        trash.remove(trashId);
+        repositories.put(repository.name, repository);
+        logger.info("Restored in-memory repository {} from trash", repository.name);
+        return repository.name;
+    }
+
+    @Override
+    public File getTrashDir() {
+        return new File(virtualRoot, ".trash");
+    }
+
+    /**
+     * The temporary directory, so that health and disk space checks have a real directory;
+     * nothing is stored in it.
+     */
+    @Override
+    public File getStorageDir() {
+        return storageDir;
+    }
+
+    @Override
+    public boolean relocateRepository(String name) {
+        if (!repositoryExists(name)) {
+            throw new IllegalArgumentException("Repository not found: " + normalizeRepositoryName(name));
+        }
+        return false;
+    }
+
+    @Override
+    public Repository openRepository(String name) throws IOException {
+        MemoryRepository repository = repositories.get(normalizeRepositoryName(name));
+        if (repository == null) {
+            throw new RepositoryNotFoundException(getRepositoryPath(name));
+        }
+        repository.incrementOpen();
+        return repository;
+    }
+
+    @Override
+    public boolean isPublicRepository(String name) {
+        return exported.contains(normalizeRepositoryName(name));
+    }
+
+    @Override
+    public void setPublicRepository(String name, boolean exported) {
+        String normalizedName = normalizeRepositoryName(name);
+        if (!repositoryExists(normalizedName)) {
+            throw new IllegalArgumentException("Repository not found: " + normalizedName);
+        }
+        if (exported) {
+            this.exported.add(normalizedName);
+        } else {
+            this.exported.remove(normalizedName);
+        }
+    }
+
+    /**
+     * In-memory repository that reports its virtual directory. The service holds the
+     * initial reference, so callers closing their handles never close it.
+     */
+    private static class MemoryRepository extends InMemoryRepository {
+        private final String name;
+        private final File directory;
+
+        MemoryRepository(String name, File directory) {
+            super(new DfsRepositoryDescription(name));
+            this.name = name;
+            this.directory = directory;
+        }
+
+        @Override
+        public File getDirectory() {
+            return directory;
+        }
+    }
+}
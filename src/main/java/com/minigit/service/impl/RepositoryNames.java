@@ -0,0 +1,50 @@
+package com.minigit.service.impl;
+
+import java.util.regex.Pattern;
+
+/**
+ * Repository naming rules shared by the {@link com.minigit.service.RepositoryService} implementations.
+ */
+final class RepositoryNames {
+
+    // Repository name validation regex: letters, numbers, underscores, and hyphens only.
+    private static final Pattern REPO_NAME_PATTERN = Pattern.compile("^[A-Za-z0-9_-]+$");
+
+    private RepositoryNames() {
+    }
+
+    static boolean isValid(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return false;
+        }
+
+        // Remove .git suffix before validation.
+        String nameToValidate = name;
+        if (name.endsWith(".git")) {
+            nameToValidate = name.substring(0, name.length() - 4);
+        }
+
+        // Check for unsafe characters.
+        if (nameToValidate.contains("..") || nameToValidate.contains("/") || nameToValidate.contains("\\")) {
+            return false;
+        }
+
+        // Check naming rules.
+        return REPO_NAME_PATTERN.matcher(nameToValidate).matches();
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        String normalized = name.trim();
+
+        // Add .git suffix when missing.
+        if (!normalized.endsWith(".git")) {
+            normalized += ".git";
+        }
+
+        return normalized;
+    }
+}
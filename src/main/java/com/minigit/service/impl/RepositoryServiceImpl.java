@@ -1,30 +1,62 @@
 package com.minigit.service.impl;
 
 import com.minigit.config.VcsProperties;
+import com.minigit.dto.TrashEntry;
+import com.minigit.service.RefStorageConverter;
 import com.minigit.service.RepositoryService;
+import com.minigit.service.dfs.BlobRepositoryManager;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.InitCommand;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Repository service implementation.
+ * Repository service implementation, storing repositories under {@code vcs.storage.dir}.
+ * Replaced by {@link InMemoryRepositoryService} under the {@code memory} profile.
  */
 @Service
+@Profile("!memory")
 public class RepositoryServiceImpl implements RepositoryService {
 
     private static final Logger logger = LoggerFactory.getLogger(RepositoryServiceImpl.class);
@@ -32,13 +64,34 @@ public class RepositoryServiceImpl implements RepositoryService {
     private final VcsProperties vcsProperties;
     private File storageDir;
 
-    // Repository name validation regex: letters, numbers, underscores, and hyphens only.
-    private static final Pattern REPO_NAME_PATTERN = Pattern.compile("^[A-Za-z0-9_-]+$");
+    // Present only with vcs.storage.backend=dfs.
+    private BlobRepositoryManager blobRepositoryManager;
+
+    // Location of every repository keyed by name; the single source for listing, existence checks and paths.
+    private final Map<String, File> catalog = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    // Same marker file git-daemon uses to export a repository.
+    private static final String EXPORT_OK_FILE = "git-daemon-export-ok";
+
+    // Shard directory names in the sharded layout: two hex digits per level.
+    private static final Pattern SHARD_DIR_PATTERN = Pattern.compile("^[0-9a-f]{2}$");
+
+    // Deleted repositories are renamed to <trash>/<name>.git~<deletion millis> until the reaper removes them.
+    private static final String TRASH_DIR = ".trash";
+    private static final String TRASH_ID_SEPARATOR = "~";
+    private static final Pattern TRASH_ID_PATTERN = Pattern.compile("^([A-Za-z0-9_-]+\\.git)~(\\d+)$");
 
     public RepositoryServiceImpl(VcsProperties vcsProperties) {
         this.vcsProperties = vcsProperties;
     }
 
+    @Autowired(required = false)
+    public void setBlobRepositoryManager(BlobRepositoryManager blobRepositoryManager) {
+        this.blobRepositoryManager = blobRepositoryManager;
+    }
+
     @PostConstruct
     public void init() {
         String storagePath = vcsProperties.getStorage().getDir();
@@ -56,6 +109,170 @@ public class RepositoryServiceImpl implements RepositoryService {
         }
         
         logger.info("Repository storage directory: {}", storageDir.getAbsolutePath());
+
+        catalog.putAll(scanStorageDir());
+        logger.info("Loaded {} repositories into catalog", catalog.size());
+        startWatching();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close storage watcher", e);
+            }
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+    }
+
+    /**
+     * Periodically re-scan the storage directory in case the watcher missed events
+     * (e.g. on network file systems, which often do not deliver them at all).
+     */
+    @Scheduled(fixedDelayString = "#{@vcsProperties.storage.reconcileInterval.toMillis()}",
+               initialDelayString = "#{@vcsProperties.storage.reconcileInterval.toMillis()}")
+    public void reconcileCatalog() {
+        // Creates, deletes and relocations keep running during the scan, so only entries
+        // that were already known before it started may be removed or replaced.
+        Map<String, File> known = new HashMap<>(catalog);
+        Map<String, File> onDisk = scanStorageDir();
+        int added = 0;
+        int removed = 0;
+        for (Map.Entry<String, File> entry : onDisk.entrySet()) {
+            String name = entry.getKey();
+            File location = entry.getValue();
+            File before = known.get(name);
+            if (before == null) {
+                if (catalog.putIfAbsent(name, location) == null) {
+                    // Deleted since the scan saw it.
+                    if (location.isDirectory()) added++;
+                    else catalog.remove(name, location);
+                }
+            } else if (!before.equals(location) && !before.isDirectory()) {
+                catalog.replace(name, before, location);
+            }
+        }
+        for (Map.Entry<String, File> entry : known.entrySet()) {
+            if (!onDisk.containsKey(entry.getKey()) && !entry.getValue().isDirectory()
+                    && catalog.remove(entry.getKey(), entry.getValue())) removed++;
+        }
+        if (added > 0 || removed > 0) {
+            logger.info("Catalog reconciled: {} added, {} removed", added, removed);
+        }
+    }
+
+    /**
+     * Find repository directories in both layouts: {@code <name>.git} at the top level
+     * and {@code ab/cd/<name>.git} below shard directories. Entries are checked in
+     * parallel since each check is a separate stat, which is slow on network storage.
+     */
+    Map<String, File> scanStorageDir() {
+        File[] files = storageDir.listFiles();
+        if (files == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, File> found = new ConcurrentHashMap<>();
+        Arrays.stream(files).parallel().forEach(file -> {
+            String name = file.getName();
+            if (name.endsWith(".git")) {
+                if (file.isDirectory()) {
+                    found.putIfAbsent(name, file);
+                }
+            } else if (SHARD_DIR_PATTERN.matcher(name).matches()) {
+                File[] shards = file.listFiles();
+                if (shards == null) {
+                    return;
+                }
+                for (File shard : shards) {
+                    File[] repos = SHARD_DIR_PATTERN.matcher(shard.getName()).matches() ? shard.listFiles() : null;
+                    if (repos == null) {
+                        continue;
+                    }
+                    for (File repo : repos) {
+                        if (repo.getName().endsWith(".git") && repo.isDirectory()) {
+                            found.putIfAbsent(repo.getName(), repo);
+                        }
+                    }
+                }
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Where a repository lives under the configured layout.
+     */
+    private File locationFor(String normalizedName) {
+        if (vcsProperties.getStorage().getLayout() == VcsProperties.Storage.Layout.SHARDED) {
+            String hash = sha1Hex(normalizedName);
+            File shard = new File(new File(storageDir, hash.substring(0, 2)), hash.substring(2, 4));
+            return new File(shard, normalizedName);
+        }
+        return new File(storageDir, normalizedName);
+    }
+
+    private static String sha1Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            storageDir.toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Storage directory cannot be watched, relying on periodic reconciliation: {}", e.getMessage());
+            return;
+        }
+        watchThread = new Thread(this::watchLoop, "repo-catalog-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        reconcileCatalog();
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    if (!name.endsWith(".git")) {
+                        continue;
+                    }
+                    // Only the top level is watched; shard directories are covered by reconciliation.
+                    File location = new File(storageDir, name);
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        if (location.isDirectory()) {
+                            catalog.putIfAbsent(name, location);
+                        }
+                    } else {
+                        // A repository moved into a shard keeps its new entry.
+                        catalog.remove(name, location);
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warn("Storage directory watch is no longer valid, relying on periodic reconciliation");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down.
+        }
     }
 
     @Override
@@ -66,20 +283,34 @@ public class RepositoryServiceImpl implements RepositoryService {
             throw new IllegalArgumentException("Invalid repository name: " + name);
         }
 
-        File repoDir = new File(storageDir, normalizedName);
+        File repoDir = locationFor(normalizedName);
         
-        if (repoDir.exists()) {
+        if (catalog.containsKey(normalizedName) || repoDir.exists()) {
             throw new IllegalArgumentException("Repository already exists: " + normalizedName);
         }
 
         try {
-            // Create a bare repository with JGit.
-            InitCommand initCommand = Git.init();
-            initCommand.setDirectory(repoDir);
-            initCommand.setBare(true); // Create a bare repository.
-            
-            Git git = initCommand.call();
-            git.close();
+            // Shard directories are created on demand.
+            Files.createDirectories(repoDir.getParentFile().toPath());
+
+            if (vcsProperties.getStorage().getBackend() == VcsProperties.Storage.Backend.DFS
+                    && blobRepositoryManager != null) {
+                // Objects and refs go to the blob store; the directory only records the DFS id.
+                blobRepositoryManager.create(repoDir);
+            } else {
+                // Create a bare repository with JGit.
+                InitCommand initCommand = Git.init();
+                initCommand.setDirectory(repoDir);
+                initCommand.setBare(true); // Create a bare repository.
+
+                Git git = initCommand.call();
+                if (vcsProperties.getStorage().getRefFormat() == VcsProperties.Storage.RefFormat.REFTABLE) {
+                    RefStorageConverter.convertRefStorage((FileRepository) git.getRepository(),
+                            VcsProperties.Storage.RefFormat.REFTABLE);
+                }
+                git.close();
+            }
+            catalog.put(normalizedName, repoDir);
             
             logger.info("Created bare repository: {}", repoDir.getAbsolutePath());
             return repoDir;
@@ -92,84 +323,54 @@ public class RepositoryServiceImpl implements RepositoryService {
 
     @Override
     public List<String> listRepositories() {
-        List<String> repositories = new ArrayList<>();
-        
-        if (!storageDir.exists() || !storageDir.isDirectory()) {
-            return repositories;
-        }
-
-        File[] files = storageDir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory() && file.getName().endsWith(".git")) {
-                    repositories.add(file.getName());
-                }
-            }
-        }
-        
-        logger.debug("Found {} repositories", repositories.size());
+        List<String> repositories = new ArrayList<>(catalog.keySet());
+        Collections.sort(repositories);
         return repositories;
     }
 
+    @Override
+    public int getRepositoryCount() {
+        return catalog.size();
+    }
+
     @Override
     public boolean repositoryExists(String name) {
         String normalizedName = normalizeRepositoryName(name);
-        File repoDir = new File(storageDir, normalizedName);
-        return repoDir.exists() && repoDir.isDirectory();
+        return normalizedName != null && catalog.containsKey(normalizedName);
     }
 
     @Override
     public File getRepositoryPath(String name) {
         String normalizedName = normalizeRepositoryName(name);
-        return new File(storageDir, normalizedName);
+        File located = normalizedName != null ? catalog.get(normalizedName) : null;
+        return located != null ? located : locationFor(normalizedName);
     }
 
     @Override
     public boolean isValidRepositoryName(String name) {
-        if (name == null || name.trim().isEmpty()) {
-            return false;
-        }
-        
-        // Remove .git suffix before validation.
-        String nameToValidate = name;
-        if (name.endsWith(".git")) {
-            nameToValidate = name.substring(0, name.length() - 4);
-        }
-        
-        // Check for unsafe characters.
-        if (nameToValidate.contains("..") || nameToValidate.contains("/") || nameToValidate.contains("\\")) {
-            return false;
-        }
-        
-        // Check naming rules.
-        return REPO_NAME_PATTERN.matcher(nameToValidate).matches();
+        return RepositoryNames.isValid(name);
     }
 
     @Override
     public String normalizeRepositoryName(String name) {
-        if (name == null) {
-            return null;
-        }
-        
-        String normalized = name.trim();
-        
-        // Add .git suffix when missing.
-        if (!normalized.endsWith(".git")) {
-            normalized += ".git";
-        }
-        
-        return normalized;
+        return RepositoryNames.normalize(name);
     }
 
     @Override
     public void deleteRepository(String name) {
         String normalizedName = normalizeRepositoryName(name);
-        File repoDir = new File(storageDir, normalizedName);
+        File repoDir = getRepositoryPath(normalizedName);
 
         if (!repoDir.exists()) {
             throw new IllegalArgumentException("Repository not found: " + normalizedName);
         }
 
+        RepositoryCache.unregister(RepositoryCache.FileKey.exact(repoDir, FS.DETECTED));
+        String dfsId = blobRepositoryManager != null ? BlobRepositoryManager.readDfsId(repoDir) : null;
+        if (dfsId != null) {
+            // Blobs stay until the trash entry is reclaimed, so the repository can still be restored.
+            blobRepositoryManager.evict(dfsId);
+        }
         try {
             final Path storagePath = storageDir.toPath().toRealPath();
             Path repoDirPath = repoDir.toPath().toRealPath();
@@ -177,27 +378,179 @@ public class RepositoryServiceImpl implements RepositoryService {
             if (!repoDirPath.startsWith(storagePath)) {
                 throw new IOException("Repository path is outside storage directory: " + repoDirPath);
             }
-            Files.walkFileTree(repoDirPath, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    Files.delete(file);
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                    if (exc != null) throw exc;
-                    Files.delete(dir);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-            logger.info("Deleted repository: {}", repoDirPath);
+            Path trashDir = getTrashDir().toPath();
+            Files.createDirectories(trashDir);
+            // A rename takes the same time for any repository size; the reaper reclaims the space later.
+            Path trashed = trashDir.resolve(normalizedName + TRASH_ID_SEPARATOR + System.currentTimeMillis());
+            Files.move(repoDirPath, trashed, StandardCopyOption.ATOMIC_MOVE);
+            rebaseAlternates(repoDirPath, trashed);
+            catalog.remove(normalizedName);
+            removeEmptyShardDirs(repoDir.getParentFile());
+            logger.info("Moved repository {} to trash: {}", normalizedName, trashed);
         } catch (IOException e) {
             logger.error("Failed to delete repository: {}", normalizedName, e);
             throw new RuntimeException("Failed to delete repository", e);
         }
     }
 
+    @Override
+    public List<TrashEntry> listTrash() {
+        File[] entries = getTrashDir().listFiles();
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        Duration retention = vcsProperties.getStorage().getTrashRetention();
+        List<TrashEntry> trash = new ArrayList<>();
+        for (File entry : entries) {
+            Matcher matcher = TRASH_ID_PATTERN.matcher(entry.getName());
+            if (!matcher.matches() || !entry.isDirectory()) {
+                // Entries being reclaimed carry an extra suffix and are no longer restorable.
+                continue;
+            }
+            LocalDateTime deletedAt = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(Long.parseLong(matcher.group(2))), ZoneId.systemDefault());
+            trash.add(new TrashEntry(entry.getName(), matcher.group(1), deletedAt, deletedAt.plus(retention)));
+        }
+        trash.sort(Comparator.comparing(TrashEntry::getDeletedAt));
+        return trash;
+    }
+
+    @Override
+    public synchronized String restoreRepository(String trashId) {
+        Matcher matcher = trashId != null ? TRASH_ID_PATTERN.matcher(trashId) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("Invalid trash entry: " + trashId);
+        }
+        String normalizedName = matcher.group(1);
+        File trashed = new File(getTrashDir(), trashId);
+        if (!trashed.isDirectory()) {
+            throw new IllegalArgumentException("Trash entry not found: " + trashId);
+        }
+        if (repositoryExists(normalizedName)) {
+            throw new IllegalArgumentException("Repository already exists: " + normalizedName);
+        }
+        File target = locationFor(normalizedName);
+        try {
+            Files.createDirectories(target.getParentFile().toPath());
+            // Fails if the reaper claimed the entry first, since it renames it away before deleting.
+            Files.move(trashed.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            rebaseAlternates(trashed.toPath(), target.toPath());
+            catalog.put(normalizedName, target);
+            logger.info("Restored repository {} from trash", normalizedName);
+            return normalizedName;
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Trash entry not found: " + trashId);
+        } catch (IOException e) {
+            logger.error("Failed to restore repository: {}", normalizedName, e);
+            throw new RuntimeException("Failed to restore repository", e);
+        }
+    }
+
+    @Override
+    public File getTrashDir() {
+        return new File(storageDir, TRASH_DIR);
+    }
+
+    @Override
+    public synchronized boolean relocateRepository(String name) {
+        String normalizedName = normalizeRepositoryName(name);
+        File current = catalog.get(normalizedName);
+        if (current == null) {
+            throw new IllegalArgumentException("Repository not found: " + normalizedName);
+        }
+        File target = locationFor(normalizedName);
+        if (current.equals(target)) {
+            return false;
+        }
+        if (target.exists()) {
+            throw new IllegalStateException("Relocation target already exists: " + target.getAbsolutePath());
+        }
+        try {
+            Files.createDirectories(target.getParentFile().toPath());
+            RepositoryCache.unregister(RepositoryCache.FileKey.exact(current, FS.DETECTED));
+            // A rename within the storage directory: readers see the repository at one place or the other.
+            Files.move(current.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            rebaseAlternates(current.toPath(), target.toPath());
+            catalog.put(normalizedName, target);
+            removeEmptyShardDirs(current.getParentFile());
+            logger.info("Relocated repository {} to {}", normalizedName, target.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to relocate repository: {}", normalizedName, e);
+            throw new RuntimeException("Failed to relocate repository", e);
+        }
+    }
+
+    /**
+     * Relative entries in {@code objects/info/alternates} (used by object pools) are resolved
+     * against the objects directory, so they have to follow a repository moved to another depth.
+     */
+    private static void rebaseAlternates(Path from, Path to) throws IOException {
+        Path file = to.resolve("objects/info/alternates");
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        Path oldObjects = from.toAbsolutePath().normalize().resolve("objects");
+        Path newObjects = to.toAbsolutePath().normalize().resolve("objects");
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String location = line.trim();
+            if (location.isEmpty() || location.startsWith("#") || Paths.get(location).isAbsolute()) {
+                lines.add(line);
+            } else {
+                Path rebased = newObjects.relativize(oldObjects.resolve(location).normalize());
+                lines.add(rebased.toString().replace(File.separatorChar, '/'));
+            }
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private void removeEmptyShardDirs(File dir) {
+        for (int level = 0; level < 2 && dir != null && !dir.equals(storageDir); level++) {
+            String[] entries = dir.list();
+            if (entries == null || entries.length > 0 || !dir.delete()) {
+                return;
+            }
+            dir = dir.getParentFile();
+        }
+    }
+
+    @Override
+    public Repository openRepository(String name) throws IOException {
+        File repoDir = getRepositoryPath(name);
+        if (blobRepositoryManager != null && BlobRepositoryManager.readDfsId(repoDir) != null) {
+            return blobRepositoryManager.open(repoDir);
+        }
+        return RepositoryCache.open(RepositoryCache.FileKey.exact(repoDir, FS.DETECTED), true);
+    }
+
+    @Override
+    public boolean isPublicRepository(String name) {
+        return new File(getRepositoryPath(name), EXPORT_OK_FILE).isFile();
+    }
+
+    @Override
+    public void setPublicRepository(String name, boolean exported) {
+        String normalizedName = normalizeRepositoryName(name);
+        if (!repositoryExists(normalizedName)) {
+            throw new IllegalArgumentException("Repository not found: " + normalizedName);
+        }
+        Path marker = new File(getRepositoryPath(normalizedName), EXPORT_OK_FILE).toPath();
+        try {
+            if (exported) {
+                if (!Files.exists(marker)) {
+                    Files.createFile(marker);
+                }
+            } else {
+                Files.deleteIfExists(marker);
+            }
+            logger.info("Repository {} is now {}", normalizedName, exported ? "public" : "private");
+        } catch (IOException e) {
+            logger.error("Failed to change visibility of repository: {}", normalizedName, e);
+            throw new RuntimeException("Failed to change repository visibility", e);
+        }
+    }
+
     /**
      * Get storage directory.
      */
@@ -0,0 +1,74 @@
+package com.minigit.controller;
+
+import com.minigit.service.ArchiveService;
+import com.minigit.service.RepositoryService;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for snapshot downloads (ArchiveController).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ArchiveControllerTest {
+
+    private static final ObjectId TREE = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    private static final String ETAG = "\"" + TREE.name() + "-tar.gz\"";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private RepositoryService repositoryService;
+
+    @MockBean
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(repositoryService.normalizeRepositoryName("demo")).thenReturn("demo.git");
+        when(repositoryService.repositoryExists("demo.git")).thenReturn(true);
+        when(archiveService.resolve("demo.git", "master", null, ArchiveService.Format.TAR_GZ))
+                .thenReturn(new ArchiveService.Archive("demo.git", TREE, ArchiveService.Format.TAR_GZ,
+                        "demo/", "demo-master.tar.gz"));
+        when(archiveService.cachedSize(any())).thenReturn(-1L);
+    }
+
+    @Test
+    @WithMockUser
+    void downloadCarriesTreeEtag() throws Exception {
+        mockMvc.perform(get("/admin/repo/demo/archive/master.tar.gz"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", ETAG))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"demo-master.tar.gz\""));
+    }
+
+    @Test
+    @WithMockUser
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        mockMvc.perform(get("/admin/repo/demo/archive/master.tar.gz").header("If-None-Match", ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", ETAG));
+
+        verify(archiveService, never()).write(any(), any());
+    }
+
+    @Test
+    @WithMockUser
+    void unknownRefIsNotFound() throws Exception {
+        mockMvc.perform(get("/admin/repo/demo/archive/missing.zip"))
+                .andExpect(status().isNotFound());
+    }
+}
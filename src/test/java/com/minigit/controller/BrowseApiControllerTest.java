@@ -0,0 +1,218 @@
+package com.minigit.controller;
+
+import com.minigit.service.RefSnapshotCache;
+import com.minigit.service.RepositoryService;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the browse API (BrowseApiController), against an in-memory repository.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("memory")
+class BrowseApiControllerTest {
+
+    private static ObjectId commitId;
+    private static ObjectId treeId;
+    private static ObjectId blobId;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RepositoryService repositoryService;
+
+    @Autowired
+    private RefSnapshotCache refSnapshotCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (repositoryService.repositoryExists("demo")) {
+            return;
+        }
+        repositoryService.createRepository("demo");
+        try (Repository db = repositoryService.openRepository("demo");
+             ObjectInserter inserter = db.newObjectInserter()) {
+            blobId = inserter.insert(Constants.OBJ_BLOB, "hello".getBytes(StandardCharsets.UTF_8));
+            TreeFormatter docs = new TreeFormatter();
+            docs.append("guide.md", FileMode.REGULAR_FILE, blobId);
+            TreeFormatter root = new TreeFormatter();
+            root.append("README.md", FileMode.REGULAR_FILE, blobId);
+            root.append("docs", FileMode.TREE, inserter.insert(docs));
+            treeId = inserter.insert(root);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(treeId);
+            PersonIdent ident = new PersonIdent("t", "t@example.com");
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage("initial");
+            commitId = inserter.insert(commit);
+            inserter.flush();
+            RefUpdate update = db.updateRef("refs/heads/master");
+            update.setNewObjectId(commitId);
+            update.update();
+        }
+        // In-memory ref updates are not announced; start from a fresh snapshot.
+        refSnapshotCache.invalidate("demo");
+    }
+
+    // --- GET /api/repos/{name}/refs ---
+
+    @Test
+    @WithMockUser
+    void refsListsBranchesWithHead() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/refs"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.head").value("refs/heads/master"))
+                .andExpect(jsonPath("$.refs[0].name").value("refs/heads/master"))
+                .andExpect(jsonPath("$.refs[0].type").value("branch"))
+                .andExpect(jsonPath("$.refs[0].id").value(commitId.name()))
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().string("Cache-Control", containsString("no-cache")));
+    }
+
+    @Test
+    @WithMockUser
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/repos/demo/tree").param("ref", "master"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/repos/demo/tree").param("ref", "master").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/repos/demo/refs").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    // --- GET /api/repos/{name}/tree ---
+
+    @Test
+    @WithMockUser
+    void treeListsDirectoriesFirst() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/tree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commitId").value(commitId.name()))
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.entries[0].name").value("docs"))
+                .andExpect(jsonPath("$.entries[0].type").value("directory"))
+                .andExpect(jsonPath("$.entries[1].name").value("README.md"));
+    }
+
+    @Test
+    @WithMockUser
+    void fieldsSelectsProperties() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/tree").param("path", "docs").param("fields", "name,id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entries[0].name").value("guide.md"))
+                .andExpect(jsonPath("$.entries[0].id").value(blobId.name()))
+                .andExpect(jsonPath("$.entries[0].type").doesNotExist())
+                .andExpect(jsonPath("$.entries[0].size").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void fullCommitIdIsImmutable() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/tree").param("ref", commitId.name()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", containsString("immutable")));
+    }
+
+    @Test
+    @WithMockUser
+    void unknownRefsAreNotFound() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/tree").param("ref", "no-such-branch"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("REF_NOT_FOUND"));
+        mockMvc.perform(get("/api/repos/demo/tree").param("ref", "0123456789abcdef0123456789abcdef01234567"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("REF_NOT_FOUND"));
+        mockMvc.perform(get("/api/repos/demo/commits").param("ref", "0123456789abcdef0123456789abcdef01234567"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("REF_NOT_FOUND"));
+    }
+
+    @Test
+    @WithMockUser
+    void nonCommitIdsAreNotFound() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/tree").param("ref", treeId.name()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("REF_NOT_FOUND"));
+        mockMvc.perform(get("/api/repos/demo/blob").param("ref", blobId.name()).param("path", "README.md"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("REF_NOT_FOUND"));
+    }
+
+    @Test
+    @WithMockUser
+    void missingPathsAreNotFound() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/tree").param("path", "nowhere"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("PATH_NOT_FOUND"));
+        mockMvc.perform(get("/api/repos/demo/blob").param("path", "docs"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("PATH_NOT_FOUND"));
+    }
+
+    // --- GET /api/repos/{name}/blob ---
+
+    @Test
+    @WithMockUser
+    void blobReturnsIdAndSize() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/blob").param("path", "docs/guide.md"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(blobId.name()))
+                .andExpect(jsonPath("$.size").value(5))
+                .andExpect(jsonPath("$.commitId").value(commitId.name()));
+    }
+
+    // --- GET /api/repos/{name}/commits ---
+
+    @Test
+    @WithMockUser
+    void commitsAndCommitDetail() throws Exception {
+        mockMvc.perform(get("/api/repos/demo/commits").param("fields", "id,message"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits[0].id").value(commitId.name()))
+                .andExpect(jsonPath("$.commits[0].message").value("initial"))
+                .andExpect(jsonPath("$.commits[0].author").doesNotExist());
+        mockMvc.perform(get("/api/repos/demo/commits/" + commitId.name()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(commitId.name()))
+                .andExpect(header().string("Cache-Control", containsString("immutable")));
+        mockMvc.perform(get("/api/repos/demo/commits/0123456789abcdef0123456789abcdef01234567"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("COMMIT_NOT_FOUND"));
+    }
+
+    @Test
+    @WithMockUser
+    void unknownRepositoryIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/repos/missing/refs"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("REPO_NOT_FOUND"));
+    }
+}
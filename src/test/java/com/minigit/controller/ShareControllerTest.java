@@ -0,0 +1,206 @@
+package com.minigit.controller;
+
+import com.minigit.dto.ShareLink;
+import com.minigit.service.ArchiveService;
+import com.minigit.service.GitRepositoryService;
+import com.minigit.service.RepositoryService;
+import com.minigit.service.ShareLinkService;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the public share link routes (ShareController).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ShareControllerTest {
+
+    private static final ObjectId TREE = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ShareLinkService shareLinkService;
+
+    @MockBean
+    private RepositoryService repositoryService;
+
+    @MockBean
+    private GitRepositoryService gitRepositoryService;
+
+    @MockBean
+    private ArchiveService archiveService;
+
+    private ShareLink dirLink;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dirLink = new ShareLink("dir", "demo.git", "docs", "master", "docs",
+                LocalDateTime.now(), null, null, "zip");
+        when(shareLinkService.getByToken("dir")).thenReturn(dirLink);
+        ShareLink lockedLink = new ShareLink("locked", "demo.git", "docs", "master", "docs",
+                LocalDateTime.now(), null, "hash", "zip");
+        when(shareLinkService.getByToken("locked")).thenReturn(lockedLink);
+        when(shareLinkService.validateAccess("locked", "secret")).thenReturn(true);
+
+        File repoDir = new File("/tmp/repos/demo.git");
+        when(repositoryService.getRepositoryPath("demo.git")).thenReturn(repoDir);
+        when(gitRepositoryService.getFileList(repoDir, "master", "docs/guides"))
+                .thenReturn(Arrays.asList(file("intro.md", "file"), file("advanced", "directory")));
+        when(gitRepositoryService.getFileContent(repoDir, "master", "docs/guides/intro.md"))
+                .thenReturn("# Intro".getBytes(StandardCharsets.UTF_8));
+        when(gitRepositoryService.getFileContent(repoDir, "master", "docs/missing.md"))
+                .thenThrow(new IllegalArgumentException("File not found: docs/missing.md"));
+        when(archiveService.resolve("demo.git", "master", "docs", ArchiveService.Format.ZIP))
+                .thenReturn(new ArchiveService.Archive("demo.git", TREE, ArchiveService.Format.ZIP,
+                        "demo/", "demo-master-docs.zip"));
+        when(archiveService.cachedSize(any())).thenReturn(-1L);
+    }
+
+    // --- GET /share/{token} (directory links) ---
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void directoryLinkListsSubdirectory() throws Exception {
+        MvcResult result = mockMvc.perform(get("/share/dir").param("path", "guides/"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("share-viewer"))
+                .andExpect(model().attribute("treePath", "guides"))
+                .andExpect(model().attribute("parentUrl", "/share/dir"))
+                .andExpect(model().attributeDoesNotExist("shareError"))
+                .andReturn();
+
+        List<Map<String, String>> entries =
+                (List<Map<String, String>>) result.getModelAndView().getModel().get("treeEntries");
+        assertEquals(2, entries.size());
+        assertEquals("/share/dir/file?path=guides%2Fintro.md", entries.get(0).get("url"));
+        assertEquals("/share/dir?path=guides%2Fadvanced", entries.get(1).get("url"));
+    }
+
+    @Test
+    void directoryLinkRejectsParentSegments() throws Exception {
+        mockMvc.perform(get("/share/dir").param("path", "../secrets"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("shareError", "share.invalid"));
+
+        verify(gitRepositoryService, never()).getFileList(any(), any(), any());
+    }
+
+    @Test
+    void directoryLinkAsksForPassword() throws Exception {
+        mockMvc.perform(get("/share/locked").param("path", "guides"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("requirePassword", true))
+                .andExpect(model().attributeDoesNotExist("treeEntries"));
+        mockMvc.perform(get("/share/locked").param("path", "guides").param("pw", "wrong"))
+                .andExpect(model().attribute("passwordWrong", true))
+                .andExpect(model().attributeDoesNotExist("treeEntries"));
+        mockMvc.perform(get("/share/locked").param("path", "guides").param("pw", "secret"))
+                .andExpect(model().attributeExists("treeEntries"));
+    }
+
+    // --- GET /share/{token}/file ---
+
+    @Test
+    void directoryLinkServesFileInside() throws Exception {
+        mockMvc.perform(get("/share/dir/file").param("path", "guides/intro.md").param("download", "false"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes("# Intro".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, dirLink.getStats().getRawHits());
+    }
+
+    @Test
+    void directoryLinkFileRejectsParentSegments() throws Exception {
+        mockMvc.perform(get("/share/dir/file").param("path", "../README.md"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/share/dir/file").param("path", "guides/../../README.md"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/share/dir/file").param("path", "/"))
+                .andExpect(status().isBadRequest());
+
+        verify(gitRepositoryService, never()).getFileContent(any(), any(), any());
+    }
+
+    @Test
+    void directoryLinkFileOutsideShareIsNotFound() throws Exception {
+        mockMvc.perform(get("/share/dir/file").param("path", "missing.md"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void directoryLinkFileNeedsPassword() throws Exception {
+        mockMvc.perform(get("/share/locked/file").param("path", "guides/intro.md"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/share/locked/file").param("path", "guides/intro.md").param("pw", "wrong"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/share/locked/file").param("path", "guides/intro.md").param("pw", "secret"))
+                .andExpect(status().isOk());
+    }
+
+    // --- GET /share/{token}/archive ---
+
+    @Test
+    void completedArchiveDownloadIsCounted() throws Exception {
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new byte[10]);
+            return null;
+        }).when(archiveService).write(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/share/dir/archive"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        assertEquals(1, dirLink.getStats().getDownloads());
+        assertEquals(10, dirLink.getStats().getBytesServed());
+    }
+
+    @Test
+    void failedArchiveDownloadIsNotCounted() throws Exception {
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new byte[4]);
+            throw new IOException("broken pipe");
+        }).when(archiveService).write(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/share/dir/archive"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(result.getAsyncResult() instanceof IOException);
+
+        assertEquals(0, dirLink.getStats().getDownloads());
+        assertEquals(4, dirLink.getStats().getBytesServed());
+    }
+
+    private static GitRepositoryService.FileInfo file(String name, String type) {
+        GitRepositoryService.FileInfo info = new GitRepositoryService.FileInfo();
+        info.setName(name);
+        info.setType(type);
+        info.setSizeFormatted("1 B");
+        return info;
+    }
+}
@@ -0,0 +1,126 @@
+package com.minigit.git;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.RepositoryCacheManager;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clones over git:// from a started GitDaemon.
+ */
+class GitDaemonTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RepositoryServiceImpl repositoryService;
+    private SimpleMeterRegistry meterRegistry;
+    private GitDaemon daemon;
+    private ObjectId head;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        props.getDaemon().setPort(0);
+        props.getDaemon().setBindAddress("127.0.0.1");
+        props.getDaemon().setMaxConnections(1);
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+
+        File repo = repositoryService.createRepository("pub");
+        try (Git work = Git.cloneRepository().setURI(repo.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call()) {
+            Files.write(tempDir.resolve("work/README.md"), "readme".getBytes());
+            work.add().addFilepattern(".").call();
+            head = work.commit().setMessage("initial").setAuthor("t", "t@example.com").call().getId();
+            work.push().call();
+        }
+        repositoryService.setPublicRepository("pub", true);
+        repositoryService.createRepository("private");
+
+        meterRegistry = new SimpleMeterRegistry();
+        daemon = new GitDaemon(props, repositoryService, new GitUploadPackFactory(), new GitAccessLogger(),
+                new RepositoryCacheManager(repositoryService, props), meterRegistry);
+        daemon.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        daemon.stop();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void clonesPublicRepository() throws Exception {
+        try (Git clone = clone("pub", "clone")) {
+            assertEquals(head, clone.getRepository().resolve("HEAD"));
+        }
+        assertEquals(1, counter("accepted"));
+    }
+
+    @Test
+    void refusesPrivateAndMissingRepositories() {
+        TransportException hidden = assertThrows(TransportException.class, () -> clone("private", "hidden"));
+        assertTrue(hidden.getMessage().contains("not exported"), hidden.getMessage());
+        assertThrows(TransportException.class, () -> clone("missing", "missing"));
+        assertThrows(TransportException.class, () -> clone("../pub", "escape"));
+
+        assertEquals(3, counter("denied"));
+    }
+
+    @Test
+    void idleConnectionCountsAgainstLimit() throws Exception {
+        InetSocketAddress address = daemon.getAddress();
+        try (Socket idle = new Socket(address.getAddress(), address.getPort())) {
+            waitForActive(1);
+
+            TransportException refused = assertThrows(TransportException.class, () -> clone("pub", "refused"));
+            assertTrue(refused.getMessage().contains("too many connections"), refused.getMessage());
+            assertEquals(1, counter("rejected"));
+        }
+
+        waitForActive(0);
+        try (Git clone = clone("pub", "after")) {
+            assertEquals(head, clone.getRepository().resolve("HEAD"));
+        }
+    }
+
+    private Git clone(String name, String directory) throws Exception {
+        InetSocketAddress address = daemon.getAddress();
+        return Git.cloneRepository()
+                .setURI("git://127.0.0.1:" + address.getPort() + "/" + name + ".git")
+                .setDirectory(tempDir.resolve(directory).toFile())
+                .call();
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("minigit.daemon.connections").tag("result", result).counter().count();
+    }
+
+    private void waitForActive(int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && active() != expected; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, active());
+    }
+
+    private double active() {
+        return meterRegistry.get("minigit.daemon.connections.active").gauge().value();
+    }
+}
@@ -0,0 +1,163 @@
+package com.minigit.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.minigit.config.VcsProperties;
+import com.minigit.service.LfsObjectStore;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batch, upload and download requests through GitLfsFilter.
+ */
+class GitLfsFilterTest {
+
+    private static final String LFS = "/git/media.git/info/lfs/";
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private LfsObjectStore objectStore;
+    private ObjectMapper objectMapper;
+    private GitLfsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        repositoryService.createRepository("media");
+        objectStore = new LfsObjectStore(props);
+        objectMapper = new ObjectMapper();
+        filter = new GitLfsFilter(repositoryService, objectStore, objectMapper, props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void batchThenUploadAndDownload() throws Exception {
+        byte[] data = "large file content".getBytes(StandardCharsets.UTF_8);
+        String oid = sha256(data);
+
+        JsonNode upload = batch("upload", oid, data.length);
+        String href = upload.at("/objects/0/actions/upload/href").asText();
+        assertEquals("http://localhost" + LFS + "objects/" + oid, href);
+
+        MockHttpServletResponse put = perform(request("PUT", "objects/" + oid, data));
+        assertEquals(200, put.getStatus());
+        assertTrue(objectStore.contains(oid, data.length));
+        assertTrue(batch("upload", oid, data.length).at("/objects/0/actions").isMissingNode());
+
+        JsonNode download = batch("download", oid, data.length);
+        assertEquals(href, download.at("/objects/0/actions/download/href").asText());
+
+        MockHttpServletResponse get = perform(request("GET", "objects/" + oid, null));
+        assertEquals(200, get.getStatus());
+        assertArrayEquals(data, get.getContentAsByteArray());
+
+        MockHttpServletRequest ranged = request("GET", "objects/" + oid, null);
+        ranged.addHeader("Range", "bytes=6-");
+        MockHttpServletResponse partial = perform(ranged);
+        assertEquals(206, partial.getStatus());
+        assertEquals("file content", partial.getContentAsString());
+    }
+
+    @Test
+    void uploadWithWrongHashIsRejected() throws Exception {
+        byte[] data = "large file content".getBytes(StandardCharsets.UTF_8);
+        String oid = sha256("other content".getBytes(StandardCharsets.UTF_8));
+
+        MockHttpServletResponse put = perform(request("PUT", "objects/" + oid, data));
+
+        assertEquals(422, put.getStatus());
+        assertTrue(put.getContentAsString().contains("hash mismatch"), put.getContentAsString());
+        assertFalse(objectStore.contains(oid, data.length));
+        assertEquals(404, batch("download", oid, data.length).at("/objects/0/error/code").asInt());
+    }
+
+    @Test
+    void uploadOverMaxObjectSizeIsRejected() throws Exception {
+        props.getReceive().setMaxObjectSize(DataSize.ofBytes(8));
+        byte[] data = "large file content".getBytes(StandardCharsets.UTF_8);
+        String oid = sha256(data);
+
+        assertEquals(413, batch("upload", oid, data.length).at("/objects/0/error/code").asInt());
+        MockHttpServletResponse put = perform(request("PUT", "objects/" + oid, data));
+        assertEquals(413, put.getStatus());
+        assertFalse(objectStore.contains(oid, data.length));
+
+        MockHttpServletRequest chunked = new MockHttpServletRequest("PUT", LFS + "objects/" + oid) {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent(data);
+        assertEquals(413, perform(chunked).getStatus());
+        assertFalse(objectStore.contains(oid, data.length));
+
+        VcsProperties.ReceiveLimits media = new VcsProperties.ReceiveLimits();
+        media.setMaxObjectSize(DataSize.ofKilobytes(1));
+        props.getReceive().getRepositories().put("media", media);
+        assertEquals(200, perform(request("PUT", "objects/" + oid, data)).getStatus());
+    }
+
+    @Test
+    void otherGitRequestsPassThrough() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/git/media.git/info/refs"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+    }
+
+    private JsonNode batch(String operation, String oid, long size) throws Exception {
+        String body = "{\"operation\":\"" + operation + "\",\"transfers\":[\"basic\"],"
+                + "\"objects\":[{\"oid\":\"" + oid + "\",\"size\":" + size + "}]}";
+        MockHttpServletResponse response = perform(request("POST", "objects/batch", body.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(200, response.getStatus());
+        return objectMapper.readTree(response.getContentAsByteArray());
+    }
+
+    private MockHttpServletRequest request(String method, String resource, byte[] content) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, LFS + resource);
+        if (content != null) {
+            request.setContent(content);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertNull(chain.getRequest());
+        return response;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.minigit.git;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.RefStorageConverter;
+import com.minigit.service.RepositorySizeTracker;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TestProtocol;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.URIish;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pushes through GitReceivePackFactory over JGit's in-process test transport.
+ */
+class GitReceivePackFactoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RepositoryServiceImpl repositoryService;
+    private RepositorySizeTracker sizeTracker;
+    private RefStorageConverter refStorageConverter;
+    private SimpleMeterRegistry meterRegistry;
+    private TestProtocol<HttpServletRequest> protocol;
+
+    @BeforeEach
+    void setUp() {
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        meterRegistry = new SimpleMeterRegistry();
+        sizeTracker = new RepositorySizeTracker(repositoryService, meterRegistry);
+        refStorageConverter = new RefStorageConverter(repositoryService, props);
+        ReachableTipsCache tipsCache = new ReachableTipsCache();
+        GitReceivePackFactory factory = new GitReceivePackFactory(
+                new KnownTipsConnectivityChecker(tipsCache, meterRegistry), tipsCache, props,
+                sizeTracker, refStorageConverter, meterRegistry);
+        protocol = new TestProtocol<>(null, factory);
+        Transport.register(protocol);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Transport.unregister(protocol);
+        refStorageConverter.shutdown();
+        sizeTracker.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void pushIsCheckedFromKnownTips() throws Exception {
+        File repoDir = repositoryService.createRepository("pushed");
+        ObjectId pushed;
+        try (Git work = Git.cloneRepository().setURI(repoDir.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call();
+             Repository remote = repositoryService.openRepository("pushed")) {
+            // Two branches at different commits, pushed without the factory.
+            commit(work, "one");
+            work.push().setRefSpecs(new RefSpec("HEAD:refs/heads/master"), new RefSpec("HEAD:refs/heads/side")).call();
+            commit(work, "two");
+            work.push().setRefSpecs(new RefSpec("HEAD:refs/heads/master")).call();
+
+            pushed = commit(work, "three");
+            URIish uri = protocol.register(null, remote);
+            work.push().setRemote(uri.toString()).setRefSpecs(new RefSpec("HEAD:refs/heads/master")).call();
+
+            assertEquals(pushed, remote.exactRef("refs/heads/master").getObjectId());
+        }
+        assertEquals(1.0, meterRegistry.get("minigit.receive.connectivity.checks").tag("walk", "known-tips").counter().count());
+        assertEquals(0.0, meterRegistry.get("minigit.receive.connectivity.checks").tag("walk", "full").counter().count());
+    }
+
+    private ObjectId commit(Git work, String content) throws Exception {
+        Files.write(tempDir.resolve("work/README.md"), content.getBytes());
+        work.add().addFilepattern("README.md").call();
+        return work.commit().setMessage(content).setAuthor("t", "t@example.com").call().getId();
+    }
+}
@@ -0,0 +1,65 @@
+package com.minigit.git;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReachableTipsCache.
+ */
+class ReachableTipsCacheTest {
+
+    private final ReachableTipsCache cache = new ReachableTipsCache();
+    private final InMemoryRepository repo = new InMemoryRepository(new DfsRepositoryDescription("tips"));
+
+    @Test
+    void recordsOnlySuccessfulNonDeleteCommands() {
+        ObjectId a = id(1);
+        ObjectId b = id(2);
+        ReceiveCommand ok = new ReceiveCommand(ObjectId.zeroId(), a, "refs/heads/main");
+        ok.setResult(ReceiveCommand.Result.OK);
+        ReceiveCommand rejected = new ReceiveCommand(ObjectId.zeroId(), b, "refs/heads/other");
+        rejected.setResult(ReceiveCommand.Result.REJECTED_NONFASTFORWARD);
+        ReceiveCommand delete = new ReceiveCommand(a, ObjectId.zeroId(), "refs/heads/gone");
+        delete.setResult(ReceiveCommand.Result.OK);
+
+        List<ReceiveCommand> commands = new ArrayList<>();
+        commands.add(ok);
+        commands.add(rejected);
+        commands.add(delete);
+        cache.recordPush(repo, commands);
+
+        assertEquals(Collections.singletonList(a), cache.getTips(repo));
+    }
+
+    @Test
+    void keepsOnlyTheNewestTips() {
+        for (int i = 1; i <= ReachableTipsCache.MAX_TIPS_PER_REPOSITORY + 5; i++) {
+            ReceiveCommand cmd = new ReceiveCommand(ObjectId.zeroId(), id(i), "refs/heads/main");
+            cmd.setResult(ReceiveCommand.Result.OK);
+            cache.recordPush(repo, Collections.singletonList(cmd));
+        }
+
+        List<ObjectId> tips = cache.getTips(repo);
+        assertEquals(ReachableTipsCache.MAX_TIPS_PER_REPOSITORY, tips.size());
+        assertFalse(tips.contains(id(1)));
+        assertEquals(id(ReachableTipsCache.MAX_TIPS_PER_REPOSITORY + 5), tips.get(tips.size() - 1));
+    }
+
+    @Test
+    void unknownRepositoryHasNoTips() {
+        assertTrue(cache.getTips(repo).isEmpty());
+    }
+
+    private static ObjectId id(int n) {
+        return ObjectId.fromString(String.format("%040x", n));
+    }
+}
@@ -0,0 +1,159 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ArchiveService.
+ */
+class ArchiveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        props.getArchive().setCacheDir(tempDir.resolve("cache").toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        archiveService = new ArchiveService(repositoryService, props);
+        archiveService.init();
+
+        File repo = repositoryService.createRepository("snap");
+        try (Git work = Git.cloneRepository().setURI(repo.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call()) {
+            Files.createDirectories(tempDir.resolve("work/docs"));
+            Files.write(tempDir.resolve("work/README.md"), "readme".getBytes());
+            Files.write(tempDir.resolve("work/docs/guide.md"), "guide".getBytes());
+            work.add().addFilepattern(".").call();
+            work.commit().setMessage("initial").setAuthor("t", "t@example.com").call();
+            work.push().call();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        archiveService.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void writesZipOfWholeTreeAndCachesIt() throws Exception {
+        ArchiveService.Archive archive = archiveService.resolve("snap", "master", null, ArchiveService.Format.ZIP);
+        assertNotNull(archive);
+        assertEquals("snap-master.zip", archive.getFileName());
+        assertEquals(-1, archiveService.cachedSize(archive));
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        archiveService.write(archive, first);
+
+        assertTrue(zipEntries(first.toByteArray()).contains("snap/docs/guide.md"));
+        assertEquals(first.size(), archiveService.cachedSize(archive));
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        archiveService.write(archive, second);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+    }
+
+    @Test
+    void archivesSubdirectory() throws Exception {
+        ArchiveService.Archive archive = archiveService.resolve("snap", "master", "docs", ArchiveService.Format.ZIP);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.write(archive, out);
+
+        List<String> entries = zipEntries(out.toByteArray());
+        assertTrue(entries.contains("snap/guide.md"));
+        assertFalse(entries.contains("snap/README.md"));
+    }
+
+    @Test
+    void writesTarGz() throws Exception {
+        ArchiveService.Archive archive = archiveService.resolve("snap", "master", null, ArchiveService.Format.TAR_GZ);
+        assertEquals("snap-master.tar.gz", archive.getFileName());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.write(archive, out);
+
+        List<String> entries = new ArrayList<>();
+        try (TarArchiveInputStream in = new TarArchiveInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())))) {
+            TarArchiveEntry entry;
+            while ((entry = in.getNextTarEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        assertTrue(entries.contains("snap/README.md"));
+        assertTrue(entries.contains("snap/docs/guide.md"));
+        assertEquals(out.size(), archiveService.cachedSize(archive));
+    }
+
+    @Test
+    void unknownRefOrPathResolvesToNull() throws Exception {
+        assertNull(archiveService.resolve("snap", "no-such-branch", null, ArchiveService.Format.TAR_GZ));
+        assertNull(archiveService.resolve("snap", "master", "missing", ArchiveService.Format.TAR_GZ));
+        assertNull(archiveService.resolve("snap", "master", "README.md", ArchiveService.Format.TAR_GZ));
+    }
+
+    @Test
+    void evictsBeyondMaxSize() throws Exception {
+        props.getArchive().setCacheMaxSize(DataSize.ofBytes(1));
+        ArchiveService.Archive archive = archiveService.resolve("snap", "master", null, ArchiveService.Format.TAR_GZ);
+
+        archiveService.write(archive, new ByteArrayOutputStream());
+
+        assertEquals(-1, archiveService.cachedSize(archive));
+    }
+
+    @Test
+    void cacheDefaultsNextToStorageDir() throws Exception {
+        props.getArchive().setCacheDir(null);
+        ArchiveService defaults = new ArchiveService(repositoryService, props);
+        defaults.init();
+        try {
+            ArchiveService.Archive archive = defaults.resolve("snap", "master", null, ArchiveService.Format.ZIP);
+            defaults.write(archive, new ByteArrayOutputStream());
+
+            assertTrue(Files.isDirectory(tempDir.resolve("archive-cache")));
+            assertTrue(defaults.cachedSize(archive) > 0);
+        } finally {
+            defaults.shutdown();
+        }
+    }
+
+    private static List<String> zipEntries(byte[] zip) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
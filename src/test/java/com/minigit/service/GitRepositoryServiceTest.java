@@ -0,0 +1,161 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.InMemoryRepositoryService;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GitRepositoryService history queries.
+ */
+class GitRepositoryServiceTest {
+
+    private InMemoryRepositoryService repositoryService;
+    private RefStorageConverter refStorageConverter;
+    private GitRepositoryService gitRepositoryService;
+    private File repoDir;
+
+    @BeforeEach
+    void setUp() {
+        VcsProperties props = new VcsProperties();
+        repositoryService = new InMemoryRepositoryService(props);
+        refStorageConverter = new RefStorageConverter(repositoryService, props);
+        gitRepositoryService = new GitRepositoryService(repositoryService, refStorageConverter);
+        repoDir = repositoryService.createRepository("history");
+    }
+
+    @AfterEach
+    void tearDown() {
+        refStorageConverter.shutdown();
+    }
+
+    @Test
+    void lastCommitsAreFoundForEveryEntryInOneWalk() throws Exception {
+        ObjectId first = commit(null, "a.txt", "1", "dir/x.txt", "1", "dir/y.txt", "1");
+        ObjectId second = commit(first, "a.txt", "1", "b.txt", "1", "dir/x.txt", "1", "dir/y.txt", "1");
+        ObjectId third = commit(second, "a.txt", "2", "b.txt", "1", "dir/x.txt", "2", "dir/y.txt", "1");
+
+        Map<String, GitRepositoryService.CommitInfo> root = gitRepositoryService.getLastCommits(repoDir, "master", null);
+        assertEquals(3, root.size());
+        assertEquals(third.name(), root.get("a.txt").getId());
+        assertEquals(second.name(), root.get("b.txt").getId());
+        assertEquals(third.name(), root.get("dir").getId());
+
+        Map<String, GitRepositoryService.CommitInfo> dir = gitRepositoryService.getLastCommits(repoDir, "master", "dir");
+        assertEquals(third.name(), dir.get("x.txt").getId());
+        assertEquals(first.name(), dir.get("y.txt").getId());
+        assertSame(dir, gitRepositoryService.getLastCommits(repoDir, "master", "/dir/"));
+
+        assertEquals(Arrays.asList(third.name(), first.name()), ids(
+                gitRepositoryService.getCommitLog(repoDir, "master", "dir", 0, 10)));
+        assertEquals(Arrays.asList(first.name()), ids(
+                gitRepositoryService.getCommitLog(repoDir, "master", "dir", 1, 10)));
+    }
+
+    @Test
+    void filePagesAreStableAndFiltered() throws Exception {
+        commit(null, "b.txt", "22", "A.txt", "1", "a.txt", "1", "Readme.md", "x", "lib/x.txt", "1", "docs/y.md", "1");
+
+        GitRepositoryService.FilePage first = gitRepositoryService.getFilePage(repoDir, "master", null, null, 0, 3);
+        assertEquals(6, first.getTotal());
+        assertTrue(first.isHasMore());
+        assertEquals(Arrays.asList("docs", "lib", "A.txt"), names(first));
+        GitRepositoryService.FilePage second = gitRepositoryService.getFilePage(
+                repoDir, first.getCommitId(), null, null, first.getNextOffset(), 3);
+        assertEquals(Arrays.asList("a.txt", "b.txt", "Readme.md"), names(second));
+        assertFalse(second.isHasMore());
+        assertEquals(2, second.getFiles().get(1).getSize());
+
+        GitRepositoryService.FilePage filtered = gitRepositoryService.getFilePage(repoDir, "master", null, "TXT", 0, 10);
+        assertEquals(Arrays.asList("A.txt", "a.txt", "b.txt"), names(filtered));
+        assertEquals("lib/x.txt", gitRepositoryService.getFilePage(repoDir, "master", "lib", "x", 0, 10)
+                .getFiles().get(0).getPath());
+        assertEquals(6, gitRepositoryService.getFileList(repoDir, "master", null).size());
+    }
+
+    private static List<String> ids(List<GitRepositoryService.CommitInfo> commits) {
+        List<String> ids = new ArrayList<>();
+        commits.forEach(commit -> ids.add(commit.getId()));
+        return ids;
+    }
+
+    private static List<String> names(GitRepositoryService.FilePage page) {
+        List<String> names = new ArrayList<>();
+        page.getFiles().forEach(file -> names.add(file.getName()));
+        return names;
+    }
+
+    /**
+     * Commit files given as path/content pairs on top of a parent, and move master to it.
+     */
+    private ObjectId commit(ObjectId parent, String... files) throws Exception {
+        try (Repository db = repositoryService.openRepository("history");
+             ObjectInserter inserter = db.newObjectInserter()) {
+            Map<String, Map<String, ObjectId>> dirs = new TreeMap<>();
+            Map<String, ObjectId> rootFiles = new TreeMap<>();
+            for (int i = 0; i < files.length; i += 2) {
+                ObjectId blob = inserter.insert(Constants.OBJ_BLOB, files[i + 1].getBytes(StandardCharsets.UTF_8));
+                int slash = files[i].indexOf('/');
+                if (slash < 0) {
+                    rootFiles.put(files[i], blob);
+                } else {
+                    dirs.computeIfAbsent(files[i].substring(0, slash), k -> new TreeMap<>())
+                            .put(files[i].substring(slash + 1), blob);
+                }
+            }
+            // Tree entries must be sorted by name, with directories sorting as if followed by '/'.
+            Map<String, Object> entries = new TreeMap<>();
+            rootFiles.forEach(entries::put);
+            for (Map.Entry<String, Map<String, ObjectId>> dir : dirs.entrySet()) {
+                TreeFormatter subtree = new TreeFormatter();
+                dir.getValue().forEach((name, blob) -> subtree.append(name, FileMode.REGULAR_FILE, blob));
+                entries.put(dir.getKey() + "/", inserter.insert(subtree));
+            }
+            TreeFormatter tree = new TreeFormatter();
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                String name = entry.getKey();
+                if (name.endsWith("/")) {
+                    tree.append(name.substring(0, name.length() - 1), FileMode.TREE, (ObjectId) entry.getValue());
+                } else {
+                    tree.append(name, FileMode.REGULAR_FILE, (ObjectId) entry.getValue());
+                }
+            }
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(tree));
+            if (parent != null) {
+                commit.setParentId(parent);
+            }
+            PersonIdent ident = new PersonIdent("t", "t@example.com");
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage("change");
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+            RefUpdate update = db.updateRef("refs/heads/master");
+            update.setNewObjectId(id);
+            update.setForceUpdate(true);
+            update.update();
+            return id;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LfsObjectStore.
+ */
+class LfsObjectStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LfsObjectStore store;
+
+    @BeforeEach
+    void setUp() {
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        store = new LfsObjectStore(props);
+    }
+
+    @Test
+    void storesVerifiedObject() throws Exception {
+        byte[] data = "hello lfs".getBytes(StandardCharsets.UTF_8);
+        String oid = sha256(data);
+
+        store.store(oid, data.length, new ByteArrayInputStream(data));
+
+        assertTrue(store.contains(oid, data.length));
+        assertFalse(store.contains(oid, data.length + 1));
+        assertTrue(store.getObjectFile(oid).getPath().contains(oid.substring(0, 2)));
+    }
+
+    @Test
+    void rejectsHashMismatch() throws Exception {
+        byte[] data = "hello lfs".getBytes(StandardCharsets.UTF_8);
+        String oid = sha256("something else".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> store.store(oid, data.length, new ByteArrayInputStream(data)));
+        assertFalse(store.contains(oid, -1));
+    }
+
+    @Test
+    void rejectsInvalidOid() {
+        assertThrows(IllegalArgumentException.class, () -> store.getObjectFile("../../etc/passwd"));
+    }
+
+    @Test
+    void parsesPointer() {
+        String oid = "4d7a214614ab2935c943f9e0ff69d22eadbb8f32b1258daaa5e2ca24d17e2393";
+        String pointer = "version https://git-lfs.github.com/spec/v1\n"
+                + "oid sha256:" + oid + "\n"
+                + "size 12345\n";
+
+        LfsObjectStore.Pointer parsed = LfsObjectStore.parsePointer(pointer.getBytes(StandardCharsets.UTF_8));
+
+        assertNotNull(parsed);
+        assertEquals(oid, parsed.getOid());
+        assertEquals(12345L, parsed.getSize());
+    }
+
+    @Test
+    void ordinaryContentIsNotAPointer() {
+        assertNull(LfsObjectStore.parsePointer("just some text".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ObjectPoolService.
+ */
+class ObjectPoolServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private RepositorySizeTracker sizeTracker;
+    private ObjectPoolService poolService;
+    private ObjectId head;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        sizeTracker = new RepositorySizeTracker(repositoryService, new SimpleMeterRegistry());
+        poolService = new ObjectPoolService(repositoryService, sizeTracker);
+
+        File source = repositoryService.createRepository("upstream");
+        try (Git work = Git.cloneRepository().setURI(source.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call()) {
+            Files.write(tempDir.resolve("work/README.md"), "hello".getBytes());
+            work.add().addFilepattern("README.md").call();
+            head = work.commit().setMessage("initial").setAuthor("t", "t@example.com").call().getId();
+            work.tag().setName("v1").call();
+            work.push().setPushAll().setPushTags().call();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        poolService.shutdown();
+        sizeTracker.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void forkSharesObjectsThroughPool() throws Exception {
+        File fork = poolService.fork("upstream", "downstream");
+
+        List<File> alternates = ObjectPoolService.readAlternates(new File(fork, "objects"));
+        assertEquals(1, alternates.size());
+        assertTrue(alternates.get(0).getPath().contains(".pools"));
+        try (Repository db = repositoryService.openRepository("downstream")) {
+            assertEquals(head, db.resolve("refs/heads/master"));
+            assertNotNull(db.exactRef("refs/tags/v1"));
+            assertTrue(db.getObjectDatabase().has(head));
+        }
+        assertTrue(repositoryService.listRepositories().contains("downstream.git"));
+        assertFalse(repositoryService.listRepositories().contains(".pools"));
+    }
+
+    @Test
+    void forkSurvivesMovingRepositoryAndStorage() throws Exception {
+        File fork = poolService.fork("upstream", "downstream");
+        List<String> lines = Files.readAllLines(fork.toPath().resolve("objects/info/alternates"));
+        assertFalse(new File(lines.get(0)).isAbsolute());
+
+        props.getStorage().setLayout(VcsProperties.Storage.Layout.SHARDED);
+        assertTrue(repositoryService.relocateRepository("downstream"));
+        try (Repository db = repositoryService.openRepository("downstream")) {
+            assertTrue(db.getObjectDatabase().has(head));
+        }
+
+        repositoryService.shutdown();
+        Files.move(tempDir.resolve("repos"), tempDir.resolve("moved"));
+        props.getStorage().setDir(tempDir.resolve("moved").toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        try (Repository db = repositoryService.openRepository("downstream")) {
+            assertTrue(db.getObjectDatabase().has(head));
+        }
+    }
+
+    @Test
+    void templateCopiesDefaultBranchOnly() throws Exception {
+        poolService.createFromTemplate("upstream", "from-template");
+
+        try (Repository db = repositoryService.openRepository("from-template")) {
+            assertEquals(head, db.resolve("HEAD"));
+            assertNull(db.exactRef("refs/tags/v1"));
+        }
+    }
+
+    @Test
+    void maintenanceMovesSharedPacksIntoPool() throws Exception {
+        poolService.fork("upstream", "downstream");
+
+        poolService.maintainAll();
+
+        String[] packs = new File(repositoryService.getRepositoryPath("upstream"), "objects/pack")
+                .list((dir, name) -> name.endsWith(".pack"));
+        assertNotNull(packs);
+        assertEquals(0, packs.length);
+        try (Repository db = repositoryService.openRepository("upstream")) {
+            assertTrue(db.getObjectDatabase().has(head));
+        }
+    }
+
+    @Test
+    void forkOfMissingRepositoryFails() {
+        assertThrows(IllegalArgumentException.class, () -> poolService.fork("missing", "copy"));
+        assertFalse(repositoryService.repositoryExists("copy"));
+    }
+}
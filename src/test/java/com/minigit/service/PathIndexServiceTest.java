@@ -0,0 +1,169 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.InMemoryRepositoryService;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PathIndex and PathIndexService.
+ */
+class PathIndexServiceTest {
+
+    private InMemoryRepositoryService repositoryService;
+    private PathIndexService pathIndexService;
+
+    @BeforeEach
+    void setUp() {
+        repositoryService = new InMemoryRepositoryService(new VcsProperties());
+        pathIndexService = new PathIndexService(repositoryService);
+        repositoryService.createRepository("paths");
+    }
+
+    @Test
+    void fileNameMatchesRankFirst() {
+        PathIndex index = new PathIndex(new String[] {
+                "docs/readme.md",
+                "src/main/java/com/example/UserController.java",
+                "src/main/java/com/example/UserService.java",
+                "src/main/java/com/example/user/Controller.java",
+                "src/test/java/com/example/UserServiceTest.java"});
+
+        List<String> found = index.find("usersvc", 10);
+        assertEquals(Arrays.asList(
+                "src/main/java/com/example/UserService.java",
+                "src/test/java/com/example/UserServiceTest.java"), found);
+        assertEquals("src/main/java/com/example/UserController.java", index.find("UserCon", 1).get(0));
+        assertTrue(index.find("zzz", 10).isEmpty());
+        assertTrue(index.find(" ", 10).isEmpty());
+    }
+
+    @Test
+    void rangeOfCoversExactlyTheDirectory() {
+        // Git order: "dir-2/" and "dir.txt" sort before "dir/", "dir0" after.
+        PathIndex index = new PathIndex(new String[] {"a.txt", "dir-2/w", "dir.txt", "dir/x", "dir/y/z", "dir0"});
+        assertArrayEquals(new int[] {3, 5}, index.rangeOf("dir"));
+        assertArrayEquals(new int[] {4, 5}, index.rangeOf("dir/y"));
+        assertArrayEquals(new int[] {6, 6}, index.rangeOf("zzz"));
+    }
+
+    @Test
+    void newCommitReusesUnchangedSubtrees() throws Exception {
+        ObjectId first = commit(null,
+                "README.md", "a",
+                "lib/core/Parser.java", "1",
+                "lib/core/Lexer.java", "1",
+                "lib/util/Strings.java", "1",
+                "app/Main.java", "1");
+        PathIndex before = pathIndexService.getIndex("paths", "master");
+        assertEquals(5, before.size());
+
+        commit(first,
+                "README.md", "a",
+                "lib/core/Parser.java", "2",
+                "lib/core/Lexer.java", "1",
+                "lib/core/Ast.java", "1",
+                "lib/util/Strings.java", "1",
+                "tools/Gen.java", "1");
+        PathIndex after = pathIndexService.getIndex("paths", "master");
+        assertEquals(Arrays.asList(
+                "README.md",
+                "lib/core/Ast.java",
+                "lib/core/Lexer.java",
+                "lib/core/Parser.java",
+                "lib/util/Strings.java",
+                "tools/Gen.java"), paths(after));
+        assertSame(after, pathIndexService.getIndex("paths", "HEAD"));
+        assertEquals(Arrays.asList("lib/core/Parser.java"), pathIndexService.find("paths", null, "parser", 5));
+
+        // The older tree is still cached.
+        assertSame(before, pathIndexService.getIndex("paths", first.name()));
+        assertNull(pathIndexService.getIndex("paths", "no-such-branch"));
+    }
+
+    private static List<String> paths(PathIndex index) {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            paths.add(index.get(i));
+        }
+        return paths;
+    }
+
+    /**
+     * Commit files given as path/content pairs on top of a parent, and move master to it.
+     */
+    private ObjectId commit(ObjectId parent, String... files) throws Exception {
+        try (Repository db = repositoryService.openRepository("paths");
+             ObjectInserter inserter = db.newObjectInserter()) {
+            Map<String, Object> root = new TreeMap<>();
+            for (int i = 0; i < files.length; i += 2) {
+                ObjectId blob = inserter.insert(Constants.OBJ_BLOB, files[i + 1].getBytes(StandardCharsets.UTF_8));
+                put(root, files[i], blob);
+            }
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(insertTree(inserter, root));
+            if (parent != null) {
+                commit.setParentId(parent);
+            }
+            PersonIdent ident = new PersonIdent("t", "t@example.com");
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage("change");
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+            RefUpdate update = db.updateRef("refs/heads/master");
+            update.setNewObjectId(id);
+            update.setForceUpdate(true);
+            update.update();
+            return id;
+        }
+    }
+
+    /**
+     * Directories are keyed by name plus '/', which gives the tree entry order Git requires.
+     */
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> dir, String path, ObjectId blob) {
+        int slash = path.indexOf('/');
+        if (slash < 0) {
+            dir.put(path, blob);
+        } else {
+            Map<String, Object> child = (Map<String, Object>) dir.computeIfAbsent(
+                    path.substring(0, slash + 1), k -> new TreeMap<String, Object>());
+            put(child, path.substring(slash + 1), blob);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectId insertTree(ObjectInserter inserter, Map<String, Object> dir) throws Exception {
+        TreeFormatter tree = new TreeFormatter();
+        for (Map.Entry<String, Object> entry : dir.entrySet()) {
+            String name = entry.getKey();
+            if (name.endsWith("/")) {
+                ObjectId subtree = insertTree(inserter, (Map<String, Object>) entry.getValue());
+                tree.append(name.substring(0, name.length() - 1), FileMode.TREE, subtree);
+            } else {
+                tree.append(name, FileMode.REGULAR_FILE, (ObjectId) entry.getValue());
+            }
+        }
+        return inserter.insert(tree);
+    }
+}
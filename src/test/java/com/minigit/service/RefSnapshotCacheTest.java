@@ -0,0 +1,125 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RefSnapshotCache.
+ */
+class RefSnapshotCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RepositoryServiceImpl repositoryService;
+    private RefSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        // Long enough that only a ref change can make the test see new refs.
+        props.getApi().setRefSnapshotTtl(Duration.ofHours(1));
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        repositoryService.createRepository("refs");
+        cache = new RefSnapshotCache(repositoryService, props);
+        cache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void snapshotResolvesRefsAndIsReusedUntilARefChanges() throws Exception {
+        ObjectId first = commit(null);
+        ObjectId tag = tag("v1", first);
+
+        RefSnapshotCache.Snapshot snapshot = cache.get("refs");
+        assertEquals("refs/heads/master", snapshot.getHead());
+        assertEquals(first, snapshot.resolve(null));
+        assertEquals(first, snapshot.resolve("master"));
+        assertEquals(first, snapshot.resolve("refs/heads/master"));
+        assertEquals(first, snapshot.resolve("v1"));
+        assertEquals(tag, snapshot.getRefs().get("refs/tags/v1"));
+        assertEquals(first, snapshot.resolve(first.name()));
+        assertEquals(first, snapshot.resolve(tag.name()));
+        // Ids no ref points to are left to the repository, which knows whether they exist.
+        assertNull(snapshot.resolve(ObjectId.zeroId().name()));
+        assertNull(snapshot.resolve("no-such-branch"));
+        assertSame(snapshot, cache.get("refs"));
+
+        ObjectId second = commit(first);
+        RefSnapshotCache.Snapshot updated = cache.get("refs");
+        assertNotSame(snapshot, updated);
+        assertEquals(second, updated.resolve("master"));
+        assertNotEquals(snapshot.getEtag(), updated.getEtag());
+
+        cache.invalidate("refs");
+        RefSnapshotCache.Snapshot reread = cache.get("refs");
+        assertNotSame(updated, reread);
+        assertEquals(updated.getEtag(), reread.getEtag());
+    }
+
+    private ObjectId commit(ObjectId parent) throws Exception {
+        try (Repository db = repositoryService.openRepository("refs");
+             ObjectInserter inserter = db.newObjectInserter()) {
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(new TreeFormatter()));
+            if (parent != null) {
+                commit.setParentId(parent);
+            }
+            PersonIdent ident = new PersonIdent("t", "t@example.com");
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(parent == null ? "first" : "next");
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+            update(db, "refs/heads/master", id);
+            return id;
+        }
+    }
+
+    private ObjectId tag(String name, ObjectId target) throws Exception {
+        try (Repository db = repositoryService.openRepository("refs");
+             ObjectInserter inserter = db.newObjectInserter()) {
+            TagBuilder tag = new TagBuilder();
+            tag.setTag(name);
+            tag.setObjectId(target, Constants.OBJ_COMMIT);
+            tag.setTagger(new PersonIdent("t", "t@example.com"));
+            tag.setMessage("release");
+            ObjectId id = inserter.insert(tag);
+            inserter.flush();
+            update(db, Constants.R_TAGS + name, id);
+            return id;
+        }
+    }
+
+    private static void update(Repository db, String refName, ObjectId id) throws Exception {
+        RefUpdate update = db.updateRef(refName);
+        update.setNewObjectId(id);
+        update.setForceUpdate(true);
+        update.update();
+    }
+}
@@ -0,0 +1,121 @@
+package com.minigit.service;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the file ref database (loose refs + packed-refs) with reftable on a repository
+ * with many refs. Skipped unless run with {@code -Dbenchmark=true}; the ref count is set
+ * with {@code -Dbenchmark.refs} (default 100000).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RefStorageBenchmarkTest {
+
+    private static final int ROUNDS = 20;
+    private static final int UPDATES = 200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compareRefStorage() throws Exception {
+        int refCount = Integer.getInteger("benchmark.refs", 100_000);
+        System.out.printf("%-10s %14s %14s %14s %14s%n", "storage", "list all (ms)", "prefix (ms)", "exact (us)", "update (us)");
+        for (boolean reftable : new boolean[]{false, true}) {
+            File dir = tempDir.resolve(reftable ? "reftable.git" : "files.git").toFile();
+            try (FileRepository repo = populate(dir, refCount, reftable)) {
+                long listAll = median(() -> assertTrue(repo.getRefDatabase().getRefs().size() >= refCount));
+                long prefix = median(() -> assertEquals(1, repo.getRefDatabase().getRefsByPrefix(Constants.R_HEADS).size()));
+                long exact = median(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        assertNotNull(repo.exactRef("refs/tags/ci/build-" + (i * 97 % refCount)));
+                    }
+                });
+                ObjectId head = repo.resolve(Constants.R_HEADS + Constants.MASTER);
+                long start = System.nanoTime();
+                for (int i = 0; i < UPDATES; i++) {
+                    RefUpdate update = repo.updateRef("refs/heads/bench-" + i);
+                    update.setNewObjectId(head);
+                    assertEquals(RefUpdate.Result.NEW, update.update());
+                }
+                long update = (System.nanoTime() - start) / UPDATES / 1000;
+                System.out.printf("%-10s %14.2f %14.3f %14.2f %14d%n", reftable ? "reftable" : "files",
+                        listAll / 1e6, prefix / 1e6, exact / 1000 / 1e3, update);
+            }
+        }
+    }
+
+    private static FileRepository populate(File dir, int refCount, boolean reftable) throws Exception {
+        FileRepository repo;
+        try (Git git = Git.init().setDirectory(dir).setBare(true).call()) {
+            repo = (FileRepository) git.getRepository();
+            repo.incrementOpen();
+        }
+        if (reftable) {
+            repo.convertRefStorage(ConfigConstants.CONFIG_REF_STORAGE_REFTABLE, false, false);
+        }
+        ObjectId commit;
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            CommitBuilder builder = new CommitBuilder();
+            builder.setTreeId(inserter.insert(new TreeFormatter()));
+            PersonIdent ident = new PersonIdent("bench", "bench@example.com");
+            builder.setAuthor(ident);
+            builder.setCommitter(ident);
+            builder.setMessage("bench");
+            commit = inserter.insert(builder);
+            inserter.flush();
+        }
+        RefUpdate master = repo.updateRef(Constants.R_HEADS + Constants.MASTER);
+        master.setNewObjectId(commit);
+        master.update();
+        BatchRefUpdate batch = repo.getRefDatabase().newBatchUpdate();
+        for (int i = 0; i < refCount; i++) {
+            batch.addCommand(new ReceiveCommand(ObjectId.zeroId(), commit, "refs/tags/ci/build-" + i));
+        }
+        try (RevWalk walk = new RevWalk(repo)) {
+            batch.execute(walk, NullProgressMonitor.INSTANCE);
+        }
+        if (!reftable) {
+            // The usual steady state: everything in packed-refs after a gc.
+            new GC(repo).packRefs();
+        }
+        return repo;
+    }
+
+    private static long median(ThrowingRunnable body) throws Exception {
+        long[] samples = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            body.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[ROUNDS / 2];
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
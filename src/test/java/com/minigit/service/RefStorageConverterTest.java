@@ -0,0 +1,124 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileReftableDatabase;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RefStorageConverter.
+ */
+class RefStorageConverterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private RefStorageConverter converter;
+    private ObjectId head;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        converter = new RefStorageConverter(repositoryService, props);
+
+        File repo = repositoryService.createRepository("repo");
+        try (Git work = Git.cloneRepository().setURI(repo.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call()) {
+            Files.write(tempDir.resolve("work/README.md"), "hello".getBytes());
+            work.add().addFilepattern("README.md").call();
+            head = work.commit().setMessage("initial").setAuthor("t", "t@example.com").call().getId();
+            work.tag().setName("v1").call();
+            work.push().setPushAll().setPushTags().call();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        converter.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void convertsBothWaysKeepingRefs() throws Exception {
+        File repoDir = repositoryService.getRepositoryPath("repo");
+        assertEquals(VcsProperties.Storage.RefFormat.FILES, RefStorageConverter.formatOf(repoDir));
+
+        assertTrue(converter.convert("repo", VcsProperties.Storage.RefFormat.REFTABLE));
+        assertFalse(converter.convert("repo", VcsProperties.Storage.RefFormat.REFTABLE));
+        assertEquals(VcsProperties.Storage.RefFormat.REFTABLE, RefStorageConverter.formatOf(repoDir));
+        try (Repository db = repositoryService.openRepository("repo")) {
+            assertEquals(head, db.resolve("refs/heads/master"));
+            assertNotNull(db.exactRef("refs/tags/v1"));
+            RefUpdate update = db.updateRef("refs/heads/feature");
+            update.setNewObjectId(head);
+            assertEquals(RefUpdate.Result.NEW, update.update());
+        }
+
+        assertTrue(converter.convert("repo", VcsProperties.Storage.RefFormat.FILES));
+        assertEquals(VcsProperties.Storage.RefFormat.FILES, RefStorageConverter.formatOf(repoDir));
+        try (Repository db = repositoryService.openRepository("repo")) {
+            assertEquals(head, db.resolve("refs/heads/feature"));
+            assertEquals(head, db.resolve("refs/heads/master"));
+        }
+    }
+
+    @Test
+    void createsReftableRepositoriesWhenConfigured() throws Exception {
+        props.getStorage().setRefFormat(VcsProperties.Storage.RefFormat.REFTABLE);
+
+        File repoDir = repositoryService.createRepository("tabled");
+
+        assertTrue(FileReftableDatabase.isReftable(repoDir));
+        try (Repository db = repositoryService.openRepository("tabled")) {
+            Ref headRef = db.exactRef(Constants.HEAD);
+            assertTrue(headRef.isSymbolic());
+            assertEquals("refs/heads/master", headRef.getTarget().getName());
+        }
+    }
+
+    @Test
+    void conversionWaitsForRefUpdatesInProgress() throws Exception {
+        Lock refUpdateLock = converter.refUpdateLock("repo");
+        refUpdateLock.lock();
+        Thread conversion = new Thread(() -> {
+            try {
+                converter.convert("repo", VcsProperties.Storage.RefFormat.REFTABLE);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            conversion.start();
+            conversion.join(300);
+            assertTrue(conversion.isAlive());
+            assertEquals(VcsProperties.Storage.RefFormat.FILES,
+                    RefStorageConverter.formatOf(repositoryService.getRepositoryPath("repo")));
+        } finally {
+            refUpdateLock.unlock();
+        }
+        conversion.join(10_000);
+        assertEquals(VcsProperties.Storage.RefFormat.REFTABLE,
+                RefStorageConverter.formatOf(repositoryService.getRepositoryPath("repo")));
+    }
+}
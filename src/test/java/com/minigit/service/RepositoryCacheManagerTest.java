@@ -0,0 +1,102 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.util.FS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RepositoryCacheManager.
+ */
+class RepositoryCacheManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private RepositoryCacheManager manager;
+
+    @BeforeEach
+    void setUp() {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        props.getCache().setActivityFile(tempDir.resolve("activity").toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        manager = new RepositoryCacheManager(repositoryService, props);
+        manager.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void ranksByTrafficAcrossRestarts() {
+        repositoryService.createRepository("busy");
+        repositoryService.createRepository("quiet");
+        for (int i = 0; i < 3; i++) {
+            manager.recordAccess("busy");
+        }
+        manager.recordAccess("quiet");
+        manager.recordAccess("gone");
+
+        assertEquals(Arrays.asList("busy.git", "quiet.git"), manager.hottest(5));
+        assertEquals(Collections.singletonList("busy.git"), manager.hottest(1));
+
+        manager.shutdown();
+        RepositoryCacheManager restarted = new RepositoryCacheManager(repositoryService, props);
+        restarted.init();
+        try {
+            assertEquals(Arrays.asList("busy.git", "quiet.git"), restarted.hottest(5));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void warmupLeavesHottestRepositoriesCached() {
+        File hot = repositoryService.createRepository("hot");
+        File cold = repositoryService.createRepository("cold");
+        RepositoryCache.FileKey hotKey = RepositoryCache.FileKey.exact(hot, FS.DETECTED);
+        RepositoryCache.FileKey coldKey = RepositoryCache.FileKey.exact(cold, FS.DETECTED);
+        RepositoryCache.unregister(hotKey);
+        RepositoryCache.unregister(coldKey);
+        manager.recordAccess("hot");
+        manager.recordAccess("hot");
+        manager.recordAccess("cold");
+
+        assertEquals(1, manager.warmup(1));
+
+        assertTrue(RepositoryCache.getRegisteredKeys().contains(hotKey));
+        assertFalse(RepositoryCache.getRegisteredKeys().contains(coldKey));
+        RepositoryCache.unregister(hotKey);
+    }
+
+    @Test
+    void sweepForgetsDeletedRepositories() throws Exception {
+        repositoryService.createRepository("doomed");
+        manager.recordAccess("doomed");
+        repositoryService.deleteRepository("doomed");
+
+        manager.sweep();
+
+        assertTrue(manager.hottest(5).isEmpty());
+        assertFalse(new String(Files.readAllBytes(tempDir.resolve("activity"))).contains("doomed"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RepositoryLayoutMigrator.
+ */
+class RepositoryLayoutMigratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private RefStorageConverter refStorageConverter;
+    private RepositoryLayoutMigrator migrator;
+
+    @BeforeEach
+    void setUp() {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        props.getStorage().setMigrationPause(Duration.ZERO);
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        refStorageConverter = new RefStorageConverter(repositoryService, props);
+        migrator = new RepositoryLayoutMigrator(repositoryService, refStorageConverter, props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        migrator.shutdown();
+        refStorageConverter.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void moveWaitsForRefUpdatesInProgress() throws Exception {
+        File flat = repositoryService.createRepository("busy");
+        props.getStorage().setLayout(VcsProperties.Storage.Layout.SHARDED);
+
+        Lock push = refStorageConverter.refUpdateLock("busy");
+        push.lock();
+        try {
+            assertTrue(migrator.start());
+            Thread.sleep(200);
+            assertTrue(flat.isDirectory());
+            assertEquals(flat, repositoryService.getRepositoryPath("busy"));
+        } finally {
+            push.unlock();
+        }
+
+        for (int i = 0; i < 100 && migrator.getStatus().isRunning(); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, migrator.getStatus().getMoved());
+        assertFalse(flat.exists());
+        assertTrue(repositoryService.getRepositoryPath("busy").isDirectory());
+    }
+}
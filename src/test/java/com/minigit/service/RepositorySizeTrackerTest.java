@@ -0,0 +1,101 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RepositorySizeTracker.
+ */
+class RepositorySizeTrackerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RepositoryServiceImpl repositoryService;
+    private RepositorySizeTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        tracker = new RepositorySizeTracker(repositoryService, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void reconcileMeasuresRepositories() throws Exception {
+        repositoryService.createRepository("sized");
+
+        tracker.reconcileAll();
+
+        long size = tracker.getSize("sized");
+        assertTrue(size > 0);
+        assertEquals(RepositorySizeTracker.measure(repositoryService.getRepositoryPath("sized").toPath()), size);
+    }
+
+    @Test
+    void pushAddsPackSize() throws Exception {
+        repositoryService.createRepository("pushed");
+        tracker.reconcileAll();
+        long before = tracker.getSize("pushed");
+
+        try (Repository db = repositoryService.openRepository("pushed")) {
+            tracker.recordPush(db, 1000);
+        }
+
+        assertEquals(before + 1000, tracker.getSize("pushed"));
+    }
+
+    @Test
+    void pushAddsIndexOfReceivedPack() throws Exception {
+        File repoDir = repositoryService.createRepository("indexed");
+        tracker.reconcileAll();
+        long before = tracker.getSize("indexed");
+
+        try (Git work = Git.cloneRepository().setURI(repoDir.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call()) {
+            Files.write(tempDir.resolve("work/README.md"), "hello".getBytes());
+            work.add().addFilepattern("README.md").call();
+            work.commit().setMessage("initial").setAuthor("t", "t@example.com").call();
+            work.push().call();
+        }
+        File[] packs = new File(repoDir, "objects/pack").listFiles((dir, name) -> name.endsWith(".pack"));
+        assertEquals(1, packs.length);
+        File index = new File(packs[0].getPath().replaceAll("\\.pack$", ".idx"));
+        assertTrue(index.isFile());
+
+        try (Repository db = repositoryService.openRepository("indexed")) {
+            tracker.recordPush(db, packs[0].length());
+        }
+
+        assertEquals(before + packs[0].length() + index.length(), tracker.getSize("indexed"));
+    }
+
+    @Test
+    void forgottenRepositoryIsUnknown() {
+        repositoryService.createRepository("gone");
+        tracker.reconcileAll();
+        tracker.forget("gone");
+        assertEquals(RepositorySizeTracker.UNKNOWN, tracker.getSize("gone"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RepositoryTrashReaper.
+ */
+class RepositoryTrashReaperTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private RepositoryTrashReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.init();
+        reaper = new RepositoryTrashReaper(repositoryService, props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reaper.shutdown();
+        repositoryService.shutdown();
+    }
+
+    @Test
+    void keepsEntriesWithinRetention() {
+        repositoryService.createRepository("recent");
+        repositoryService.deleteRepository("recent");
+
+        reaper.reapAll();
+
+        assertEquals(1, repositoryService.listTrash().size());
+    }
+
+    @Test
+    void reclaimsExpiredEntries() {
+        props.getStorage().setTrashRetention(Duration.ZERO);
+        repositoryService.createRepository("expired");
+        repositoryService.deleteRepository("expired");
+
+        reaper.reapAll();
+
+        assertTrue(repositoryService.listTrash().isEmpty());
+        String[] left = repositoryService.getTrashDir().list();
+        assertNotNull(left);
+        assertEquals(0, left.length);
+        assertFalse(reaper.getStatus().isRunning());
+    }
+
+    @Test
+    void resumesInterruptedReclamation() {
+        File leftover = new File(repositoryService.getTrashDir(), "old.git~1" + RepositoryTrashReaper.REAPING_SUFFIX);
+        assertTrue(new File(leftover, "objects").mkdirs());
+
+        reaper.reapAll();
+
+        assertFalse(leftover.exists());
+    }
+
+    @Test
+    void scheduledRunDoesNotWaitForThrottledPurge() throws Exception {
+        props.getStorage().setTrashRetention(Duration.ZERO);
+        props.getStorage().setReaperMaxFilesPerSecond(1);
+        repositoryService.createRepository("slow");
+        repositoryService.deleteRepository("slow");
+
+        long start = System.currentTimeMillis();
+        reaper.reap();
+        assertTrue(System.currentTimeMillis() - start < 500);
+
+        for (int i = 0; i < 100 && !reaper.getStatus().isRunning(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals("slow.git", reaper.getStatus().getCurrent());
+    }
+}
@@ -0,0 +1,279 @@
+package com.minigit.service;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.dto.ShareLink;
+import com.minigit.dto.ShareLinkStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ShareLinkService persistence.
+ */
+class ShareLinkServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private ShareLinkService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        props = new VcsProperties();
+        props.getShare().setJournalFile(tempDir.resolve("share-links.journal").toString());
+        service = new ShareLinkService(props);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void linksSurviveRestart() throws Exception {
+        ShareLink file = service.createShareLink("repo.git", "src/App.java", "main", "App.java", 24, "secret");
+        ShareLink archive = service.createArchiveShareLink("repo.git", "docs", null, "docs.zip", "zip", 0, null);
+        ShareLink pinned = service.createPinnedShareLink("repo.git", "lib/a.js", "main", "a.js",
+                "2c1743a391305fbf367df8e4f069f9f9c3a1ae6a", 0, null);
+        ShareLink revoked = service.createShareLink("repo.git", "README.md", null, "README.md", 0, null);
+        service.revokeToken(revoked.getToken());
+
+        restart();
+
+        ShareLink reloaded = service.getByToken(file.getToken());
+        assertEquals("src/App.java", reloaded.getFilePath());
+        assertEquals("main", reloaded.getBranch());
+        assertEquals(file.getCreatedAt(), reloaded.getCreatedAt());
+        assertEquals(file.getExpiresAt(), reloaded.getExpiresAt());
+        assertTrue(service.validateAccess(file.getToken(), "secret"));
+        assertFalse(service.validateAccess(file.getToken(), "wrong"));
+        assertEquals("zip", service.getByToken(archive.getToken()).getArchiveFormat());
+        assertNull(service.getByToken(archive.getToken()).getExpiresAt());
+        assertFalse(reloaded.isPinned());
+        assertEquals(pinned.getObjectId(), service.getByToken(pinned.getToken()).getObjectId());
+        assertNull(service.getByToken(revoked.getToken()));
+        assertEquals(3, service.size());
+    }
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws Exception {
+        ShareLink first = service.createShareLink("repo.git", "a.txt", null, "a.txt", 0, null);
+        service.shutdown();
+        // A record cut off halfway: a length prefix promising more bytes than follow.
+        Files.write(tempDir.resolve("share-links.journal"), new byte[] {0, 0, 1, 0, 7, 7},
+                StandardOpenOption.APPEND);
+
+        service = new ShareLinkService(props);
+        service.init();
+        assertNotNull(service.getByToken(first.getToken()));
+        ShareLink second = service.createShareLink("repo.git", "b.txt", null, "b.txt", 0, null);
+
+        restart();
+        assertNotNull(service.getByToken(first.getToken()));
+        assertNotNull(service.getByToken(second.getToken()));
+    }
+
+    @Test
+    void compactionDropsSupersededRecords() throws Exception {
+        ShareLink kept = service.createShareLink("repo.git", "a.txt", null, "a.txt", 0, null);
+        assertFalse(service.compactJournal());
+        String revoked = null;
+        for (int i = 0; i < ShareLinkService.COMPACT_MIN_DEAD_RECORDS / 2; i++) {
+            revoked = service.createShareLink("repo.git", "b.txt", null, "b.txt", 0, null).getToken();
+            service.revokeToken(revoked);
+        }
+        long before = Files.size(tempDir.resolve("share-links.journal"));
+
+        assertTrue(service.compactJournal());
+
+        assertTrue(Files.size(tempDir.resolve("share-links.journal")) < before);
+        ShareLink added = service.createShareLink("repo.git", "c.txt", null, "c.txt", 0, null);
+        restart();
+        assertTrue(service.getByToken(kept.getToken()).isActive());
+        assertNull(service.getByToken(revoked));
+        assertEquals(2, service.size());
+        assertNotNull(service.getByToken(added.getToken()));
+    }
+
+    @Test
+    void accessCountersAreSavedAndCompacted() throws Exception {
+        ShareLink link = service.createShareLink("repo.git", "a.txt", null, "a.txt", 0, null);
+        ShareLink unused = service.createShareLink("repo.git", "b.txt", null, "b.txt", 0, null);
+        link.getStats().recordView();
+        link.getStats().recordRaw(100);
+        link.getStats().recordDownload(100);
+        link.getStats().recordDownload(50);
+        assertEquals(1, service.flushStats());
+        assertEquals(0, service.flushStats());
+
+        restart();
+        ShareLinkStats stats = service.getByToken(link.getToken()).getStats();
+        assertEquals(1, stats.getViews());
+        assertEquals(1, stats.getRawHits());
+        assertEquals(2, stats.getDownloads());
+        assertEquals(250, stats.getBytesServed());
+        assertNotNull(stats.getLastAccessedAt());
+        assertNull(service.getByToken(unused.getToken()).getStats().getLastAccessedAt());
+
+        for (int i = 0; i < ShareLinkService.COMPACT_MIN_DEAD_RECORDS; i++) {
+            stats.recordView();
+            service.flushStats();
+        }
+        assertTrue(service.compactJournal());
+        // Compacted to a create record per link and a counter record for the used one.
+        assertFalse(service.compactJournal());
+        restart();
+        assertEquals(1 + ShareLinkService.COMPACT_MIN_DEAD_RECORDS,
+                service.getByToken(link.getToken()).getStats().getViews());
+    }
+
+    @Test
+    void concurrentCreationsAreAllRecorded() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> tokens = new ArrayList<>();
+        try {
+            for (int i = 0; i < 800; i++) {
+                String path = "file-" + i;
+                tokens.add(executor.submit(() ->
+                        service.createShareLink("repo.git", path, null, path, 0, null).getToken()));
+            }
+            for (Future<String> token : tokens) {
+                token.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        restart();
+        assertEquals(800, service.size());
+        for (Future<String> token : tokens) {
+            assertNotNull(service.getByToken(token.get()));
+        }
+    }
+
+    @Test
+    void expiredLinksArePurged() throws Exception {
+        service.shutdown();
+        LocalDateTime now = LocalDateTime.now();
+        try (ShareLinkJournal journal = new ShareLinkJournal(tempDir.resolve("share-links.journal"))) {
+            journal.replay();
+            journal.appendCreate(new ShareLink("expired", "repo.git", "a.txt", null, "a.txt",
+                    now.minusHours(2), now.minusHours(1), null, null));
+            journal.appendCreate(new ShareLink("expiring", "repo.git", "b.txt", null, "b.txt",
+                    now, now.plus(300, ChronoUnit.MILLIS), null, null));
+        }
+
+        service = new ShareLinkService(props);
+        service.init();
+        assertNull(service.getByToken("expired"));
+        assertNotNull(service.getByToken("expiring"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getByToken("expiring") != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNull(service.getByToken("expiring"));
+        assertEquals(0, service.list(null, 10).getLinks().size());
+    }
+
+    @Test
+    void listPagesNewestFirst() {
+        Set<String> created = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            created.add(service.createShareLink("repo.git", "f" + i, null, "f" + i, 0, null).getToken());
+        }
+
+        List<ShareLink> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ShareLinkService.Page page = service.list(cursor, 10);
+            seen.addAll(page.getLinks());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < seen.size(); i++) {
+            tokens.add(seen.get(i).getToken());
+            if (i > 0) {
+                assertTrue(seen.get(i).getCreatedAtMillis() <= seen.get(i - 1).getCreatedAtMillis());
+            }
+        }
+        assertEquals(created, tokens);
+    }
+
+    @Test
+    void signedLinksResolveOnAnyInstanceWithTheKey() throws Exception {
+        service.shutdown();
+        service = signedInstance("a");
+        ShareLinkService other = signedInstance("b");
+        try {
+            ShareLink link = service.createPinnedShareLink("repo.git", "src/App.java", "main", "App.java",
+                    "2c1743a391305fbf367df8e4f069f9f9c3a1ae6a", 24, "secret");
+            assertEquals(0, service.size());
+
+            ShareLink resolved = other.getByToken(link.getToken());
+            assertEquals("src/App.java", resolved.getFilePath());
+            assertEquals(link.getObjectId(), resolved.getObjectId());
+            assertEquals(link.getCreatedAt(), resolved.getCreatedAt());
+            assertEquals(link.getExpiresAt(), resolved.getExpiresAt());
+            assertTrue(other.validateAccess(link.getToken(), "secret"));
+            assertFalse(other.validateAccess(link.getToken(), "wrong"));
+
+            String token = link.getToken();
+            // Another repository name in an otherwise unchanged token.
+            String payload = token.substring(0, token.indexOf('.'));
+            String tampered = new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.ISO_8859_1)
+                    .replace("repo.git", "repx.git");
+            assertNull(other.getByToken(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(tampered.getBytes(StandardCharsets.ISO_8859_1)) + token.substring(token.indexOf('.'))));
+
+            other.revokeToken(token);
+            assertNull(other.getByToken(token));
+            assertNotNull(service.getByToken(token));
+            service.refreshRevocations();
+            assertNull(service.getByToken(token));
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    private ShareLinkService signedInstance(String name) throws Exception {
+        VcsProperties signed = new VcsProperties();
+        signed.getShare().setJournalFile(tempDir.resolve(name + ".journal").toString());
+        signed.getShare().setRevocationFile(tempDir.resolve("revocations").toString());
+        signed.getShare().setSigningKey("0123456789abcdef0123456789abcdef");
+        ShareLinkService instance = new ShareLinkService(signed);
+        instance.init();
+        return instance;
+    }
+
+    private void restart() throws Exception {
+        service.shutdown();
+        service = new ShareLinkService(props);
+        service.init();
+    }
+}
@@ -0,0 +1,174 @@
+package com.minigit.service.dfs;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.service.ObjectPoolService;
+import com.minigit.service.RepositorySizeTracker;
+import com.minigit.service.RepositoryTrashReaper;
+import com.minigit.service.impl.RepositoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for repositories on the DFS backend with the local blob store.
+ */
+class BlobRepositoryManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VcsProperties props;
+    private RepositoryServiceImpl repositoryService;
+    private RepositorySizeTracker sizeTracker;
+    private BlobRepositoryManager manager;
+    private ObjectId head;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        props = new VcsProperties();
+        props.getStorage().setDir(tempDir.resolve("repos").toString());
+        props.getDfs().setLocalDir(tempDir.resolve("blobs").toString());
+        manager = new BlobRepositoryManager(props);
+        repositoryService = new RepositoryServiceImpl(props);
+        repositoryService.setBlobRepositoryManager(manager);
+        repositoryService.init();
+        sizeTracker = new RepositorySizeTracker(repositoryService, new SimpleMeterRegistry());
+
+        // A regular file repository to copy from.
+        File source = repositoryService.createRepository("upstream");
+        try (Git work = Git.cloneRepository().setURI(source.toURI().toString())
+                .setDirectory(tempDir.resolve("work").toFile()).call()) {
+            Files.write(tempDir.resolve("work/README.md"), "hello".getBytes());
+            work.add().addFilepattern("README.md").call();
+            head = work.commit().setMessage("initial").setAuthor("t", "t@example.com").call().getId();
+            work.push().call();
+        }
+        props.getStorage().setBackend(VcsProperties.Storage.Backend.DFS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sizeTracker.shutdown();
+        repositoryService.shutdown();
+        manager.shutdown();
+    }
+
+    @Test
+    void createKeepsOnlyTheIdLocally() throws Exception {
+        File repoDir = repositoryService.createRepository("dfsrepo");
+
+        String id = BlobRepositoryManager.readDfsId(repoDir);
+        assertNotNull(id);
+        assertTrue(id.startsWith("dfsrepo-"));
+        assertFalse(new File(repoDir, "objects").exists());
+        assertNotNull(manager.getBlobStore().get(id + "/manifest"));
+        try (Repository db = repositoryService.openRepository("dfsrepo")) {
+            assertTrue(db instanceof BlobRepository);
+            assertEquals(repoDir, db.getDirectory());
+            Ref headRef = db.exactRef(Constants.HEAD);
+            assertTrue(headRef.isSymbolic());
+            assertEquals("refs/heads/master", headRef.getTarget().getName());
+        }
+        assertNull(BlobRepositoryManager.readDfsId(repositoryService.getRepositoryPath("upstream")));
+    }
+
+    @Test
+    void forkIntoDfsIsReadableAfterReopen() throws Exception {
+        new ObjectPoolService(repositoryService, sizeTracker).fork("upstream", "copy");
+        String id = BlobRepositoryManager.readDfsId(repositoryService.getRepositoryPath("copy"));
+        assertNotNull(id);
+
+        // Drop the cached instance so that everything is read back from the blob store.
+        manager.evict(id);
+        try (Repository db = repositoryService.openRepository("copy");
+             RevWalk walk = new RevWalk(db)) {
+            assertEquals(head, db.resolve("refs/heads/master"));
+            try (TreeWalk treeWalk = TreeWalk.forPath(db, "README.md", walk.parseCommit(head).getTree())) {
+                assertNotNull(treeWalk);
+                assertEquals("hello", new String(db.open(treeWalk.getObjectId(0)).getBytes()));
+            }
+        }
+        assertTrue(manager.getBlobStore().list(id + "/").stream().anyMatch(key -> key.endsWith(".pack")));
+    }
+
+    @Test
+    void packsAreCompactedOnceThereAreEnough() throws Exception {
+        repositoryService.createRepository("busy");
+        List<ObjectId> blobs = new ArrayList<>();
+        try (Repository db = repositoryService.openRepository("busy")) {
+            for (int i = 0; i < props.getDfs().getCompactPackCount(); i++) {
+                try (ObjectInserter inserter = db.newObjectInserter()) {
+                    blobs.add(inserter.insert(Constants.OBJ_BLOB, ("blob " + i).getBytes()));
+                    inserter.flush();
+                }
+            }
+            BlobRepository blobRepository = (BlobRepository) db;
+            for (int i = 0; i < 100 && blobRepository.getObjectDatabase().getPacks().length > 1; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, blobRepository.getObjectDatabase().getPacks().length);
+        }
+
+        manager.evict(BlobRepositoryManager.readDfsId(repositoryService.getRepositoryPath("busy")));
+        try (Repository db = repositoryService.openRepository("busy")) {
+            assertEquals(1, ((BlobRepository) db).getObjectDatabase().getPacks().length);
+            for (ObjectId blob : blobs) {
+                assertTrue(db.getObjectDatabase().has(blob));
+            }
+        }
+    }
+
+    @Test
+    void idleSweepKeepsInstancesInUse() throws Exception {
+        repositoryService.createRepository("idle");
+
+        Repository held = repositoryService.openRepository("idle");
+        assertEquals(0, manager.evictIdle(0));
+        try (Repository again = repositoryService.openRepository("idle")) {
+            assertSame(held, again);
+        }
+        held.close();
+
+        Thread.sleep(5);
+        assertEquals(1, manager.evictIdle(0));
+        try (Repository reopened = repositoryService.openRepository("idle")) {
+            assertNotSame(held, reopened);
+            assertNotNull(reopened.exactRef(Constants.HEAD));
+        }
+    }
+
+    @Test
+    void reaperDeletesBlobsOfPurgedRepository() throws Exception {
+        File repoDir = repositoryService.createRepository("doomed");
+        String id = BlobRepositoryManager.readDfsId(repoDir);
+        props.getStorage().setTrashRetention(Duration.ZERO);
+        repositoryService.deleteRepository("doomed");
+        assertFalse(manager.getBlobStore().list(id + "/").isEmpty());
+
+        RepositoryTrashReaper reaper = new RepositoryTrashReaper(repositoryService, props);
+        reaper.setBlobRepositoryManager(manager);
+        reaper.reapAll();
+
+        assertTrue(manager.getBlobStore().list(id + "/").isEmpty());
+        assertTrue(repositoryService.listTrash().isEmpty());
+    }
+}
@@ -0,0 +1,177 @@
+package com.minigit.service.dfs;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for S3BlobStore against a minimal in-process stand-in for an S3 service.
+ */
+class S3BlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+    private HttpServer server;
+    private S3BlobStore store;
+    private volatile boolean ignoreRange;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bucket/", this::handle);
+        server.start();
+        store = new S3BlobStore("http://127.0.0.1:" + server.getAddress().getPort(), "bucket", "us-east-1",
+                "access", "secret");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void putGetAndDelete() throws IOException {
+        store.put("repo/manifest", "line\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("line\n", new String(store.get("repo/manifest"), StandardCharsets.UTF_8));
+        assertNull(store.get("repo/missing"));
+        store.delete("repo/manifest");
+        store.delete("repo/manifest");
+        assertNull(store.get("repo/manifest"));
+    }
+
+    @Test
+    void rangedReads() throws IOException {
+        Path file = tempDir.resolve("pack");
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        Files.write(file, data);
+        store.upload("repo/pack-1.pack", file);
+
+        try (BlobStore.BlobReader reader = store.open("repo/pack-1.pack")) {
+            assertEquals(10000, reader.size());
+            ByteBuffer buf = ByteBuffer.allocate(100);
+            assertEquals(100, reader.read(5000, buf));
+            assertArrayEquals(Arrays.copyOfRange(data, 5000, 5100), buf.array());
+            ByteBuffer tail = ByteBuffer.allocate(100);
+            assertEquals(50, reader.read(9950, tail));
+            assertEquals(-1, reader.read(10000, ByteBuffer.allocate(10)));
+        }
+        assertThrows(FileNotFoundException.class, () -> store.open("repo/none.pack"));
+    }
+
+    @Test
+    void readFailsWhenRangeIsIgnored() throws IOException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        store.put("repo/pack-2.pack", data);
+        ignoreRange = true;
+
+        try (BlobStore.BlobReader reader = store.open("repo/pack-2.pack")) {
+            assertThrows(IOException.class, () -> reader.read(500, ByteBuffer.allocate(100)));
+            ByteBuffer head = ByteBuffer.allocate(100);
+            assertEquals(100, reader.read(0, head));
+            assertArrayEquals(Arrays.copyOfRange(data, 0, 100), head.array());
+        }
+    }
+
+    @Test
+    void listByPrefix() throws IOException {
+        store.put("a-1/manifest", new byte[1]);
+        store.put("a-1/pack-x.pack", new byte[1]);
+        store.put("a-10/manifest", new byte[1]);
+
+        List<String> keys = store.list("a-1/");
+        assertEquals(Arrays.asList("a-1/manifest", "a-1/pack-x.pack"), keys);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("AWS4-HMAC-SHA256 Credential=access/")) {
+            respond(exchange, 403, new byte[0]);
+            return;
+        }
+        String key = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring("/bucket/".length()), "UTF-8");
+        String method = exchange.getRequestMethod();
+        if (key.isEmpty() && "GET".equals(method)) {
+            String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), "UTF-8");
+            String prefix = query.replaceAll(".*prefix=([^&]*).*", "$1");
+            StringBuilder xml = new StringBuilder("<ListBucketResult><IsTruncated>false</IsTruncated>");
+            objects.keySet().stream().filter(k -> k.startsWith(prefix))
+                    .forEach(k -> xml.append("<Contents><Key>").append(k).append("</Key></Contents>"));
+            respond(exchange, 200, xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        byte[] data = objects.get(key);
+        switch (method) {
+            case "PUT":
+                try (InputStream in = exchange.getRequestBody()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                    objects.put(key, out.toByteArray());
+                }
+                respond(exchange, 200, new byte[0]);
+                break;
+            case "DELETE":
+                objects.remove(key);
+                respond(exchange, 204, null);
+                break;
+            case "HEAD":
+                if (data == null) {
+                    respond(exchange, 404, null);
+                } else {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                }
+                break;
+            default:
+                if (data == null) {
+                    respond(exchange, 404, new byte[0]);
+                    return;
+                }
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (range != null && !ignoreRange) {
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    respond(exchange, 206, Arrays.copyOfRange(data, Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]) + 1));
+                } else {
+                    respond(exchange, 200, data);
+                }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null || body.length == 0 ? -1 : body.length);
+        if (body != null && body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+}
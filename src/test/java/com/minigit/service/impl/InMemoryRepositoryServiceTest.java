@@ -0,0 +1,132 @@
+package com.minigit.service.impl;
+
+import com.minigit.config.VcsProperties;
+import com.minigit.dto.TrashEntry;
+import com.minigit.service.GitRepositoryService;
+import com.minigit.service.ObjectPoolService;
+import com.minigit.service.RefStorageConverter;
+import com.minigit.service.RepositorySizeTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InMemoryRepositoryService.
+ */
+class InMemoryRepositoryServiceTest {
+
+    private VcsProperties props;
+    private InMemoryRepositoryService repositoryService;
+    private RefStorageConverter refStorageConverter;
+    private GitRepositoryService gitRepositoryService;
+
+    @BeforeEach
+    void setUp() {
+        props = new VcsProperties();
+        repositoryService = new InMemoryRepositoryService(props);
+        refStorageConverter = new RefStorageConverter(repositoryService, props);
+        gitRepositoryService = new GitRepositoryService(repositoryService, refStorageConverter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refStorageConverter.shutdown();
+    }
+
+    @Test
+    void createdRepositoriesCanBeBrowsedWithoutTouchingDisk() throws Exception {
+        File repoDir = repositoryService.createRepository("mem");
+        assertFalse(repoDir.exists());
+        assertEquals(Collections.singletonList("mem.git"), repositoryService.listRepositories());
+        assertTrue(gitRepositoryService.isEmptyRepository(repoDir));
+
+        commit("mem", "README.md", "hello");
+
+        assertFalse(gitRepositoryService.isEmptyRepository(repoDir));
+        assertEquals(Collections.singletonList("master"), gitRepositoryService.getBranches(repoDir).stream()
+                .map(GitRepositoryService.BranchInfo::getShortName).collect(Collectors.toList()));
+        assertEquals("hello", new String(gitRepositoryService.getFileContent(repoDir, "master", "README.md"),
+                StandardCharsets.UTF_8));
+        String blobId = gitRepositoryService.getFileObjectId(repoDir, "master", "README.md");
+        assertEquals("hello", new String(gitRepositoryService.getBlobContent(repoDir, blobId), StandardCharsets.UTF_8));
+        assertFalse(repoDir.exists());
+    }
+
+    @Test
+    void deletedRepositoriesCanBeRestoredUntilRetentionPasses() throws Exception {
+        repositoryService.createRepository("undo");
+        ObjectId head = commit("undo", "a.txt", "a");
+
+        repositoryService.deleteRepository("undo");
+        assertFalse(repositoryService.repositoryExists("undo"));
+        List<TrashEntry> trash = repositoryService.listTrash();
+        assertEquals(1, trash.size());
+
+        assertEquals("undo.git", repositoryService.restoreRepository(trash.get(0).getId()));
+        try (Repository db = repositoryService.openRepository("undo")) {
+            assertEquals(head, db.resolve("refs/heads/master"));
+        }
+
+        props.getStorage().setTrashRetention(Duration.ZERO);
+        repositoryService.deleteRepository("undo");
+        assertTrue(repositoryService.listTrash().isEmpty());
+    }
+
+    @Test
+    void forkCopiesObjectsAndRefs() throws Exception {
+        repositoryService.createRepository("origin");
+        ObjectId head = commit("origin", "a.txt", "a");
+        RepositorySizeTracker sizeTracker = new RepositorySizeTracker(repositoryService, new SimpleMeterRegistry());
+        try {
+            new ObjectPoolService(repositoryService, sizeTracker).fork("origin", "copy");
+        } finally {
+            sizeTracker.shutdown();
+        }
+
+        try (Repository db = repositoryService.openRepository("copy")) {
+            assertEquals(head, db.resolve("refs/heads/master"));
+            assertTrue(db.getObjectDatabase().has(head));
+        }
+        assertFalse(refStorageConverter.convert("copy", VcsProperties.Storage.RefFormat.REFTABLE));
+    }
+
+    private ObjectId commit(String repo, String path, String content) throws Exception {
+        try (Repository db = repositoryService.openRepository(repo);
+             ObjectInserter inserter = db.newObjectInserter()) {
+            ObjectId blob = inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+            TreeFormatter tree = new TreeFormatter();
+            tree.append(path, FileMode.REGULAR_FILE, blob);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(tree));
+            PersonIdent ident = new PersonIdent("t", "t@example.com");
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage("add " + path);
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+            RefUpdate update = db.updateRef("refs/heads/master");
+            update.setNewObjectId(id);
+            assertEquals(RefUpdate.Result.NEW, update.update());
+            return id;
+        }
+    }
+}
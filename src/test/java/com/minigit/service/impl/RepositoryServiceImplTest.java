@@ -1,6 +1,9 @@
 package com.minigit.service.impl;
 
 import com.minigit.config.VcsProperties;
+import com.minigit.dto.TrashEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -8,6 +11,8 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +34,11 @@ class RepositoryServiceImplTest {
         service.init();
     }
 
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
     // --- normalizeRepositoryName ---
 
     @Test
@@ -146,4 +156,204 @@ class RepositoryServiceImplTest {
         assertFalse(list.contains("list-repo.git"));
         assertTrue(list.contains("keep-repo.git"));
     }
+
+    @Test
+    void deleteRepositoryMovesToTrash() {
+        service.createRepository("trashed");
+        service.deleteRepository("trashed");
+
+        List<TrashEntry> trash = service.listTrash();
+        assertEquals(1, trash.size());
+        assertEquals("trashed.git", trash.get(0).getRepoName());
+        assertFalse(trash.get(0).isPurgeable());
+        assertTrue(new File(service.getTrashDir(), trash.get(0).getId()).isDirectory());
+        assertFalse(service.listRepositories().contains(".trash"));
+    }
+
+    @Test
+    void restoreRepositoryBringsItBack() {
+        service.createRepository("undo-me");
+        service.deleteRepository("undo-me");
+        String id = service.listTrash().get(0).getId();
+
+        assertEquals("undo-me.git", service.restoreRepository(id));
+
+        assertTrue(service.repositoryExists("undo-me"));
+        assertTrue(service.getRepositoryPath("undo-me").isDirectory());
+        assertTrue(service.listTrash().isEmpty());
+    }
+
+    @Test
+    void restoreRepositoryRejectsTakenName() {
+        service.createRepository("reused");
+        service.deleteRepository("reused");
+        service.createRepository("reused");
+        String id = service.listTrash().get(0).getId();
+
+        assertThrows(IllegalArgumentException.class, () -> service.restoreRepository(id));
+        assertEquals(1, service.listTrash().size());
+    }
+
+    @Test
+    void restoreRepositoryRejectsInvalidId() {
+        assertThrows(IllegalArgumentException.class, () -> service.restoreRepository("../x.git~1"));
+        assertThrows(IllegalArgumentException.class, () -> service.restoreRepository("missing.git~1"));
+    }
+
+    // --- openRepository / public flag ---
+
+    @Test
+    void openRepositoryReusesCachedInstance() throws Exception {
+        service.createRepository("cached");
+        try (Repository first = service.openRepository("cached");
+             Repository second = service.openRepository("cached.git")) {
+            assertSame(first, second);
+            assertTrue(first.isBare());
+        }
+    }
+
+    @Test
+    void repositoriesArePrivateByDefault() {
+        service.createRepository("private-repo");
+        assertFalse(service.isPublicRepository("private-repo"));
+    }
+
+    @Test
+    void setPublicRepositoryTogglesFlag() {
+        service.createRepository("public-repo");
+        service.setPublicRepository("public-repo", true);
+        assertTrue(service.isPublicRepository("public-repo.git"));
+        service.setPublicRepository("public-repo", false);
+        assertFalse(service.isPublicRepository("public-repo"));
+    }
+
+    @Test
+    void setPublicRepositoryThrowsWhenNotFound() {
+        assertThrows(IllegalArgumentException.class, () -> service.setPublicRepository("nonexistent", true));
+    }
+
+    // --- catalog ---
+
+    @Test
+    void getRepositoryCountTracksCreateAndDelete() {
+        service.createRepository("count-a");
+        service.createRepository("count-b");
+        assertEquals(2, service.getRepositoryCount());
+        service.deleteRepository("count-a");
+        assertEquals(1, service.getRepositoryCount());
+    }
+
+    @Test
+    void reconcilePicksUpExternallyCreatedRepositories() {
+        assertTrue(new File(tempDir.toFile(), "added-externally.git").mkdirs());
+
+        service.reconcileCatalog();
+
+        assertTrue(service.repositoryExists("added-externally"));
+        assertTrue(service.listRepositories().contains("added-externally.git"));
+    }
+
+    @Test
+    void reconcileKeepsRepositoryCreatedDuringScan() {
+        AtomicReference<Runnable> duringScan = new AtomicReference<>();
+        RepositoryServiceImpl scanning = serviceWithScanHook(duringScan);
+        duringScan.set(() -> scanning.createRepository("created-meanwhile"));
+
+        scanning.reconcileCatalog();
+
+        assertTrue(scanning.repositoryExists("created-meanwhile"));
+    }
+
+    @Test
+    void reconcileDoesNotRestoreRepositoryDeletedDuringScan() {
+        AtomicReference<Runnable> duringScan = new AtomicReference<>();
+        RepositoryServiceImpl scanning = serviceWithScanHook(duringScan);
+        scanning.createRepository("deleted-meanwhile");
+        duringScan.set(() -> scanning.deleteRepository("deleted-meanwhile"));
+
+        scanning.reconcileCatalog();
+
+        assertFalse(scanning.repositoryExists("deleted-meanwhile"));
+        assertFalse(scanning.listRepositories().contains("deleted-meanwhile.git"));
+    }
+
+    /**
+     * Replace the service with one that runs {@code duringScan} (once) right after scanning the storage directory.
+     */
+    private RepositoryServiceImpl serviceWithScanHook(AtomicReference<Runnable> duringScan) {
+        service.shutdown();
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        service = new RepositoryServiceImpl(props) {
+            @Override
+            Map<String, File> scanStorageDir() {
+                Map<String, File> found = super.scanStorageDir();
+                Runnable hook = duringScan.getAndSet(null);
+                if (hook != null) {
+                    hook.run();
+                }
+                return found;
+            }
+        };
+        service.init();
+        return service;
+    }
+
+    @Test
+    void catalogIsLoadedAtStartup() {
+        assertTrue(new File(tempDir.toFile(), "preexisting.git").mkdirs());
+        assertTrue(new File(tempDir.toFile(), "not-a-repo").mkdirs());
+        service.shutdown();
+
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        service = new RepositoryServiceImpl(props);
+        service.init();
+
+        assertEquals(1, service.getRepositoryCount());
+        assertTrue(service.repositoryExists("preexisting"));
+    }
+
+    // --- storage layout ---
+
+    @Test
+    void shardedLayoutPlacesRepositoryInShardDirectories() {
+        RepositoryServiceImpl sharded = newService(VcsProperties.Storage.Layout.SHARDED);
+        try {
+            File repoDir = sharded.createRepository("sharded");
+            File shard = repoDir.getParentFile();
+            assertEquals("sharded.git", repoDir.getName());
+            assertEquals(2, shard.getName().length());
+            assertEquals(tempDir.toFile(), shard.getParentFile().getParentFile());
+            assertEquals(repoDir, sharded.getRepositoryPath("sharded"));
+            assertTrue(sharded.listRepositories().contains("sharded.git"));
+        } finally {
+            sharded.shutdown();
+        }
+    }
+
+    @Test
+    void relocateMovesFlatRepositoryIntoShard() {
+        service.createRepository("move-me");
+        service.shutdown();
+
+        service = newService(VcsProperties.Storage.Layout.SHARDED);
+        assertEquals(new File(tempDir.toFile(), "move-me.git"), service.getRepositoryPath("move-me"));
+
+        assertTrue(service.relocateRepository("move-me"));
+        File moved = service.getRepositoryPath("move-me");
+        assertNotEquals(new File(tempDir.toFile(), "move-me.git"), moved);
+        assertTrue(new File(moved, "HEAD").isFile());
+        assertTrue(service.repositoryExists("move-me"));
+        assertFalse(service.relocateRepository("move-me"));
+    }
+
+    private RepositoryServiceImpl newService(VcsProperties.Storage.Layout layout) {
+        VcsProperties props = new VcsProperties();
+        props.getStorage().setDir(tempDir.toString());
+        props.getStorage().setLayout(layout);
+        RepositoryServiceImpl created = new RepositoryServiceImpl(props);
+        created.init();
+        return created;
+    }
 }